@@ -0,0 +1,97 @@
+package com.bkb.scanner.config;
+
+import jakarta.servlet.MultipartConfigElement;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.multipart.MultipartHttpServletRequest;
+import org.springframework.web.multipart.MultipartResolver;
+import org.springframework.web.multipart.support.StandardServletMultipartResolver;
+import org.springframework.web.servlet.DispatcherServlet;
+
+import java.util.List;
+
+/**
+ * Multipart limits per endpoint. The servlet container only knows one request size limit,
+ * so it is raised to the batch upload limit and the resolver holds every other request to
+ * spring.servlet.multipart.max-request-size. Each file is still limited by max-file-size.
+ */
+@Configuration
+@EnableConfigurationProperties(MultipartProperties.class)
+public class MultipartConfig {
+
+    static final String BATCH_UPLOAD_PATTERN = "/documents/upload/*/*/batch";
+
+    @Value("${documents.batch-upload.max-request-size:200MB}")
+    private DataSize batchMaxRequestSize;
+
+    @Bean
+    public MultipartConfigElement multipartConfigElement(MultipartProperties properties) {
+        MultipartConfigElement config = properties.createMultipartConfig();
+        return new MultipartConfigElement(config.getLocation(), config.getMaxFileSize(),
+                containerLimit(config.getMaxRequestSize(), batchMaxRequestSize.toBytes()),
+                config.getFileSizeThreshold());
+    }
+
+    @Bean(name = DispatcherServlet.MULTIPART_RESOLVER_BEAN_NAME)
+    public MultipartResolver multipartResolver(MultipartProperties properties) {
+        RequestSizeLimitingMultipartResolver resolver = new RequestSizeLimitingMultipartResolver(
+                properties.getMaxRequestSize().toBytes(), batchMaxRequestSize.toBytes());
+        resolver.setResolveLazily(properties.isResolveLazily());
+        return resolver;
+    }
+
+    private static long containerLimit(long maxRequestSize, long batchMaxRequestSize) {
+        // Negative means unlimited
+        return maxRequestSize < 0 || batchMaxRequestSize < 0 ? -1 : Math.max(maxRequestSize, batchMaxRequestSize);
+    }
+
+    /**
+     * Rejects multipart requests above the limit of their endpoint: up front when the
+     * request declares its length, otherwise once the parts have been read.
+     */
+    static class RequestSizeLimitingMultipartResolver extends StandardServletMultipartResolver {
+
+        private final AntPathMatcher pathMatcher = new AntPathMatcher();
+        private final long maxRequestSize;
+        private final long batchMaxRequestSize;
+
+        RequestSizeLimitingMultipartResolver(long maxRequestSize, long batchMaxRequestSize) {
+            this.maxRequestSize = maxRequestSize;
+            this.batchMaxRequestSize = batchMaxRequestSize;
+        }
+
+        @Override
+        public MultipartHttpServletRequest resolveMultipart(HttpServletRequest request) {
+            long limit = limitFor(request);
+            long length = request.getContentLengthLong();
+            if (limit >= 0 && length > limit) {
+                throw new MaxUploadSizeExceededException(limit);
+            }
+            MultipartHttpServletRequest multipart = super.resolveMultipart(request);
+            if (limit >= 0 && length < 0) {
+                long total = multipart.getMultiFileMap().values().stream()
+                        .flatMap(List::stream)
+                        .mapToLong(MultipartFile::getSize)
+                        .sum();
+                if (total > limit) {
+                    cleanupMultipart(multipart);
+                    throw new MaxUploadSizeExceededException(limit);
+                }
+            }
+            return multipart;
+        }
+
+        private long limitFor(HttpServletRequest request) {
+            String path = request.getRequestURI().substring(request.getContextPath().length());
+            return pathMatcher.match(BATCH_UPLOAD_PATTERN, path) ? batchMaxRequestSize : maxRequestSize;
+        }
+    }
+}
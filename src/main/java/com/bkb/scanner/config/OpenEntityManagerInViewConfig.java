@@ -0,0 +1,28 @@
+package com.bkb.scanner.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Keeps the JPA EntityManager open for the whole request, as Spring Boot does by default,
+ * except on the upload endpoints. An open EntityManager holds on to its JDBC connection
+ * from the first query until the request ends, which on uploads would include the time
+ * a client takes to send the file. Their services only use short transactions instead.
+ */
+@Configuration
+public class OpenEntityManagerInViewConfig implements WebMvcConfigurer {
+
+    @Bean
+    public OpenEntityManagerInViewInterceptor openEntityManagerInViewInterceptor() {
+        return new OpenEntityManagerInViewInterceptor();
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addWebRequestInterceptor(openEntityManagerInViewInterceptor())
+                .excludePathPatterns("/documents/upload/**", "/documents/stream/**", "/documents/uploads/**");
+    }
+}
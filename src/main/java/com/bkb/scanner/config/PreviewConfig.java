@@ -0,0 +1,31 @@
+package com.bkb.scanner.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor that renders document previews in the background. The queue is bounded and
+ * rejects work when full; those previews are rendered when they are first requested.
+ */
+@Configuration
+public class PreviewConfig {
+
+    @Value("${preview.executor.pool-size:2}")
+    private int poolSize;
+
+    @Value("${preview.executor.queue-capacity:500}")
+    private int queueCapacity;
+
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService previewExecutor() {
+        return new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("preview-"));
+    }
+}
@@ -0,0 +1,45 @@
+package com.bkb.scanner.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor for scan jobs. pool-size bounds how many scanner profiles scan at the same
+ * time. ScanJobService keeps the waiting jobs in per-profile queues and hands the
+ * executor at most one task per profile, so its own queue never grows beyond the
+ * number of profiles. The pages of a scan are processed on a separate fork-join pool.
+ */
+@Configuration
+public class ScanJobConfig {
+
+    @Value("${scan.executor.pool-size:2}")
+    private int poolSize;
+
+    // Threads for CPU bound page work such as splitting batch scans; 0 means one per core
+    @Value("${scan.pages.parallelism:0}")
+    private int pageParallelism;
+
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService scanExecutor() {
+        return new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new CustomizableThreadFactory("scan-"));
+    }
+
+    /**
+     * Fork-join pool for processing the pages of a scan in parallel. Kept apart from the
+     * common pool so page work cannot starve, or be starved by, unrelated parallel streams.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ForkJoinPool scanPagePool() {
+        int parallelism = pageParallelism > 0 ? pageParallelism : Runtime.getRuntime().availableProcessors();
+        return new ForkJoinPool(parallelism);
+    }
+}
@@ -0,0 +1,12 @@
+package com.bkb.scanner.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables @Scheduled housekeeping jobs such as the upload session cleanup.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
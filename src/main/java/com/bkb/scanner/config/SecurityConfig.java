@@ -2,6 +2,7 @@ package com.bkb.scanner.config;
 
 import com.bkb.scanner.config.JwtAuthenticationFilter;
 import com.bkb.scanner.service.JpaUserDetailsService;
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -62,6 +63,8 @@ public class SecurityConfig {
                 .authorizeHttpRequests(authz -> authz
                         // Allow all preflight OPTIONS requests
                         .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
+                        // Async dispatches (e.g. a completing scan job event stream) were authorized on the original request
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         // Public endpoints
                         .requestMatchers("/auth").permitAll()
                         .requestMatchers("/enums").permitAll()
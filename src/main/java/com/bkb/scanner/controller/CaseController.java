@@ -221,15 +221,21 @@ package com.bkb.scanner.controller;
 
 import com.bkb.scanner.dto.*;
 import com.bkb.scanner.entity.Document;
+import com.bkb.scanner.exception.BadRequestException;
 import com.bkb.scanner.service.CaseService;
+import com.bkb.scanner.service.ChecklistService;
+import com.bkb.scanner.service.DocumentExportService;
 import com.bkb.scanner.service.DocumentService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -246,9 +252,15 @@ public class CaseController {
     @Autowired
     private DocumentService documentService;
 
+    @Autowired
+    private DocumentExportService documentExportService;
+
+    @Autowired
+    private ChecklistService checklistService;
+
     @GetMapping
     @PreAuthorize("hasAuthority('case:read')")
-    public ResponseEntity<List<CaseDto>> getAllCases() {
+    public ResponseEntity<List<CaseSummaryDto>> getAllCases() {
         return ResponseEntity.ok(caseService.getAllCases());
     }
 
@@ -436,6 +448,39 @@ public class CaseController {
         return ResponseEntity.noContent().build();
     }
 
+    /**
+     * The case's KYC checklist: required documents of the case and its related parties
+     * with their current state, progress, and missing and expiring documents
+     */
+    @GetMapping("/{caseId}/checklist")
+    @PreAuthorize("hasAuthority('case:read')")
+    public ResponseEntity<ChecklistDto> getChecklist(@PathVariable String caseId) {
+        return ResponseEntity.ok(checklistService.getChecklist(caseId));
+    }
+
+    /**
+     * Download all documents of a case and its related parties as one ZIP.
+     * By default only current versions are included; includeHistory adds all versions.
+     * The archive is streamed, so its size does not affect server memory.
+     */
+    @GetMapping("/{caseId}/documents/export")
+    @PreAuthorize("hasAuthority('document:read')")
+    public void exportCaseDocuments(
+            @PathVariable String caseId,
+            @RequestParam(defaultValue = "false") boolean includeHistory,
+            @RequestParam(defaultValue = "true") boolean includeManifest,
+            HttpServletResponse response) throws IOException {
+
+        DocumentExportService.ExportPlan plan = documentExportService.planCaseExport(caseId, includeHistory);
+        log.info("Exporting {} documents of case {} (history: {})", plan.getItems().size(), caseId, includeHistory);
+
+        response.setContentType("application/zip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"" + caseId + "-documents.zip\"");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        documentExportService.writeZip(plan, includeManifest, response.getOutputStream());
+    }
+
     // =====================================================================
     // NEW ENDPOINT FOR OPTIMIZED CASE SEARCH
     // =====================================================================
@@ -448,8 +493,14 @@ public class CaseController {
      * @param search Search term for entity name or case ID
      * @param riskLevel Comma-separated risk levels (e.g., "High,Medium")
      * @param status Comma-separated statuses (e.g., "KYC Review,Pending Approval")
-     * @param sortBy Field to sort by (entityName, caseId, riskLevel, status, createdDate)
+     * @param sortBy Field to sort by (entityName, caseId, riskLevel, status, createdDate or relevance);
+     *               searches default to relevance in offset mode, everything else to createdDate
      * @param sortOrder Sort direction (asc or desc)
+     * @param pagination offset (default) or cursor; cursor mode ignores page and returns nextCursor
+     * @param cursor nextCursor of the previous page, cursor mode only
+     * @param total exact, estimate or none; defaults to exact for offset and none for cursor mode
+     * @param facets adds the case counts per risk level, status, workflow stage, entity type and
+     *               assignee for the search term to meta.facets
      */
     @GetMapping("/search")
     @PreAuthorize("hasAuthority('case:read')")
@@ -459,21 +510,43 @@ public class CaseController {
             @RequestParam(required = false) String search,
             @RequestParam(required = false) String riskLevel,
             @RequestParam(required = false) String status,
-            @RequestParam(defaultValue = "createdDate") String sortBy,
-            @RequestParam(defaultValue = "desc") String sortOrder) {
+            @RequestParam(required = false) String sortBy,
+            @RequestParam(defaultValue = "desc") String sortOrder,
+            @RequestParam(defaultValue = "offset") String pagination,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String total,
+            @RequestParam(defaultValue = "false") boolean facets) {
 
-        log.info("Searching cases - page: {}, limit: {}, search: {}, riskLevel: {}, status: {}",
-                page, limit, search, riskLevel, status);
+        log.info("Searching cases - page: {}, limit: {}, search: {}, riskLevel: {}, status: {}, pagination: {}",
+                page, limit, search, riskLevel, status, pagination);
 
         // Validate pagination parameters
         if (page < 1) page = 1;
         if (limit < 1) limit = 1;
         if (limit > 100) limit = 100;
 
-        CasesPageDto result = caseService.getCasesWithFilters(
-                page, limit, search, riskLevel, status, sortBy, sortOrder
-        );
+        boolean cursorMode = cursor != null || "cursor".equalsIgnoreCase(pagination);
+        CasesPageDto.TotalMode totalMode = parseTotalMode(total,
+                cursorMode ? CasesPageDto.TotalMode.NONE : CasesPageDto.TotalMode.EXACT);
+
+        CasesPageDto result = cursorMode
+                ? caseService.getCasesAfterCursor(cursor, limit, search, riskLevel, status, sortBy, sortOrder, totalMode)
+                : caseService.getCasesWithFilters(page, limit, search, riskLevel, status, sortBy, sortOrder, totalMode);
+        if (facets) {
+            result.getMeta().setFacets(caseService.getSearchFacets(search));
+        }
 
         return ResponseEntity.ok(result);
     }
+
+    private static CasesPageDto.TotalMode parseTotalMode(String total, CasesPageDto.TotalMode defaultMode) {
+        if (total == null || total.isEmpty()) {
+            return defaultMode;
+        }
+        try {
+            return CasesPageDto.TotalMode.valueOf(total.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("total must be exact, estimate or none");
+        }
+    }
 }
\ No newline at end of file
@@ -1,28 +1,73 @@
 package com.bkb.scanner.controller;
 
+import com.bkb.scanner.dto.BatchUploadItem;
+import com.bkb.scanner.dto.BatchUploadResultDto;
+import com.bkb.scanner.dto.DocumentContentRef;
 import com.bkb.scanner.dto.DocumentDto;
-import com.bkb.scanner.entity.Document;
+import com.bkb.scanner.dto.DocumentsPageDto;
+import com.bkb.scanner.dto.StorageStatsDto;
+import com.bkb.scanner.dto.UploadSessionDto;
+import com.bkb.scanner.dto.UploadSessionRequest;
+import com.bkb.scanner.exception.BadRequestException;
+import com.bkb.scanner.exception.NotFoundException;
+import com.bkb.scanner.service.ChunkedUploadService;
+import com.bkb.scanner.service.DocumentBatchUploadService;
+import com.bkb.scanner.service.DocumentBlobMigrationService;
+import com.bkb.scanner.service.DocumentPreviewService;
 import com.bkb.scanner.service.DocumentService;
+import com.bkb.scanner.service.DocumentStorageService;
 import com.bkb.scanner.service.DocumentService.DocumentStatusSummary;
+import com.bkb.scanner.storage.PreviewSize;
+import com.bkb.scanner.util.HttpRangeSupport;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/documents")
 public class DocumentController {
 
+    private static final Duration PREVIEW_MAX_AGE = Duration.ofDays(1);
+
     @Autowired
     private DocumentService documentService;
 
+    @Autowired
+    private DocumentPreviewService documentPreviewService;
+
+    @Autowired
+    private DocumentBlobMigrationService documentBlobMigrationService;
+
+    @Autowired
+    private DocumentStorageService documentStorageService;
+
+    @Autowired
+    private ChunkedUploadService chunkedUploadService;
+
+    @Autowired
+    private DocumentBatchUploadService documentBatchUploadService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     /**
      * Upload document for a case with metadata
      */
@@ -59,6 +104,127 @@ public class DocumentController {
         return new ResponseEntity<>(dto, HttpStatus.CREATED);
     }
 
+    /**
+     * Upload many documents for a case in one request. The metadata part is a JSON array
+     * with one entry per file, in the same order as the files.
+     */
+    @PostMapping(value = "/upload/case/{caseId}/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasAuthority('document:upload')")
+    public ResponseEntity<BatchUploadResultDto> uploadDocumentsForCase(
+            @PathVariable String caseId,
+            @RequestParam("files") List<MultipartFile> files,
+            @RequestParam("metadata") String metadata) {
+
+        return ResponseEntity.ok(documentBatchUploadService.uploadForCase(caseId, files, parseBatchMetadata(metadata)));
+    }
+
+    /**
+     * Upload many documents for a party in one request, with the same format as for cases
+     */
+    @PostMapping(value = "/upload/party/{partyId}/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasAuthority('document:upload')")
+    public ResponseEntity<BatchUploadResultDto> uploadDocumentsForParty(
+            @PathVariable String partyId,
+            @RequestParam("files") List<MultipartFile> files,
+            @RequestParam("metadata") String metadata) {
+
+        return ResponseEntity.ok(documentBatchUploadService.uploadForParty(partyId, files, parseBatchMetadata(metadata)));
+    }
+
+    /**
+     * Streaming upload for a case: the request body is the raw file and is written
+     * straight to storage without being buffered in memory
+     */
+    @PostMapping(value = "/stream/case/{caseId}",
+            consumes = {MediaType.APPLICATION_OCTET_STREAM_VALUE, MediaType.APPLICATION_PDF_VALUE, "image/*"})
+    @PreAuthorize("hasAuthority('document:upload')")
+    public ResponseEntity<DocumentDto> streamDocumentForCase(
+            @PathVariable String caseId,
+            @RequestParam("documentType") String documentType,
+            @RequestParam(value = "filename", required = false) String filename,
+            @RequestParam(value = "expiryDate", required = false) String expiryDate,
+            @RequestParam(value = "comments", required = false) String comments,
+            @RequestParam(defaultValue = "false") Boolean isAdHoc,
+            HttpServletRequest request) throws IOException {
+
+        DocumentDto dto = documentService.uploadDocumentForCase(caseId, documentType, request.getInputStream(),
+                filename, request.getContentType(), expiryDate, comments, isAdHoc);
+        return new ResponseEntity<>(dto, HttpStatus.CREATED);
+    }
+
+    /**
+     * Streaming upload for a party: the request body is the raw file and is written
+     * straight to storage without being buffered in memory
+     */
+    @PostMapping(value = "/stream/party/{partyId}",
+            consumes = {MediaType.APPLICATION_OCTET_STREAM_VALUE, MediaType.APPLICATION_PDF_VALUE, "image/*"})
+    @PreAuthorize("hasAuthority('document:upload')")
+    public ResponseEntity<DocumentDto> streamDocumentForParty(
+            @PathVariable String partyId,
+            @RequestParam("documentType") String documentType,
+            @RequestParam(value = "filename", required = false) String filename,
+            @RequestParam(value = "expiryDate", required = false) String expiryDate,
+            @RequestParam(value = "comments", required = false) String comments,
+            @RequestParam(defaultValue = "false") Boolean isAdHoc,
+            HttpServletRequest request) throws IOException {
+
+        DocumentDto dto = documentService.uploadDocumentForParty(partyId, documentType, request.getInputStream(),
+                filename, request.getContentType(), expiryDate, comments, isAdHoc);
+        return new ResponseEntity<>(dto, HttpStatus.CREATED);
+    }
+
+    /**
+     * Open a resumable chunked upload session for a case or party document
+     */
+    @PostMapping("/uploads")
+    @PreAuthorize("hasAuthority('document:upload')")
+    public ResponseEntity<UploadSessionDto> createUploadSession(@RequestBody UploadSessionRequest request) {
+        return new ResponseEntity<>(chunkedUploadService.createSession(request), HttpStatus.CREATED);
+    }
+
+    /**
+     * Get the state of an upload session, including the chunks still missing
+     */
+    @GetMapping("/uploads/{sessionId}")
+    @PreAuthorize("hasAuthority('document:upload')")
+    public ResponseEntity<UploadSessionDto> getUploadSession(@PathVariable String sessionId) {
+        return ResponseEntity.ok(chunkedUploadService.getSession(sessionId));
+    }
+
+    /**
+     * Upload one chunk of a session. The body is the raw chunk; X-Chunk-SHA256 optionally
+     * carries its checksum. Chunks can be sent in any order and re-sent after a failure.
+     */
+    @PutMapping(value = "/uploads/{sessionId}/chunks/{index}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @PreAuthorize("hasAuthority('document:upload')")
+    public ResponseEntity<UploadSessionDto> putUploadChunk(
+            @PathVariable String sessionId,
+            @PathVariable int index,
+            @RequestHeader(value = "X-Chunk-SHA256", required = false) String chunkSha256,
+            HttpServletRequest request) throws IOException {
+
+        return ResponseEntity.ok(chunkedUploadService.putChunk(sessionId, index, request.getInputStream(), chunkSha256));
+    }
+
+    /**
+     * Assemble all chunks of a session into a new document version
+     */
+    @PostMapping("/uploads/{sessionId}/commit")
+    @PreAuthorize("hasAuthority('document:upload')")
+    public ResponseEntity<DocumentDto> commitUploadSession(@PathVariable String sessionId) throws IOException {
+        return new ResponseEntity<>(chunkedUploadService.commit(sessionId), HttpStatus.CREATED);
+    }
+
+    /**
+     * Abandon an upload session and discard its chunks
+     */
+    @DeleteMapping("/uploads/{sessionId}")
+    @PreAuthorize("hasAuthority('document:upload')")
+    public ResponseEntity<Void> abortUploadSession(@PathVariable String sessionId) {
+        chunkedUploadService.abort(sessionId);
+        return ResponseEntity.noContent().build();
+    }
+
     /**
      * Legacy endpoint for backward compatibility
      */
@@ -94,6 +260,51 @@ public class DocumentController {
         return ResponseEntity.ok(documentService.getAllDocumentsForParty(partyId));
     }
 
+    /**
+     * Get a page of documents for a case, filtered by status, document type and current flag
+     *
+     * @param status Comma-separated statuses (e.g., "Verified,Submitted")
+     * @param documentType Comma-separated document types
+     */
+    @GetMapping("/case/{caseId}/page")
+    @PreAuthorize("hasAuthority('case:read')")
+    public ResponseEntity<DocumentsPageDto> getDocumentsForCasePage(
+            @PathVariable String caseId,
+            @RequestParam(defaultValue = "1") Integer page,
+            @RequestParam(defaultValue = "20") Integer limit,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String documentType,
+            @RequestParam(required = false) Boolean isCurrentForCase) {
+
+        if (page < 1) page = 1;
+        if (limit < 1) limit = 1;
+        if (limit > 100) limit = 100;
+
+        return ResponseEntity.ok(documentService.getDocumentsForCasePage(
+                caseId, page, limit, status, documentType, isCurrentForCase));
+    }
+
+    /**
+     * Get a page of documents for a party, with the same filters as for cases
+     */
+    @GetMapping("/party/{partyId}/page")
+    @PreAuthorize("hasAuthority('case:read')")
+    public ResponseEntity<DocumentsPageDto> getDocumentsForPartyPage(
+            @PathVariable String partyId,
+            @RequestParam(defaultValue = "1") Integer page,
+            @RequestParam(defaultValue = "20") Integer limit,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String documentType,
+            @RequestParam(required = false) Boolean isCurrentForCase) {
+
+        if (page < 1) page = 1;
+        if (limit < 1) limit = 1;
+        if (limit > 100) limit = 100;
+
+        return ResponseEntity.ok(documentService.getDocumentsForPartyPage(
+                partyId, page, limit, status, documentType, isCurrentForCase));
+    }
+
     /**
      * Update document status
      */
@@ -121,19 +332,112 @@ public class DocumentController {
     }
 
     /**
-     * Download document
+     * Get document status summaries for many owners of one type, keyed by owner ID
+     */
+    @PostMapping("/status-summary/{ownerType}")
+    @PreAuthorize("hasAuthority('case:read')")
+    public ResponseEntity<Map<String, DocumentStatusSummary>> getDocumentStatusSummaries(
+            @PathVariable String ownerType,
+            @RequestBody List<String> ownerIds) {
+
+        return ResponseEntity.ok(documentService.getDocumentStatusSummaries(ownerType, ownerIds));
+    }
+
+    /**
+     * Download document. Supports Range requests for partial and resumed downloads,
+     * and answers conditional requests with 304 using the content hash as a strong ETag.
      */
     @GetMapping("/download/{documentId}")
     @PreAuthorize("hasAuthority('document:read')")
-    public void downloadDocument(@PathVariable Long documentId, HttpServletResponse response) throws IOException {
-        Document doc = documentService.getDocumentWithContent(documentId)
-                .orElseThrow(() -> new RuntimeException("Document not found"));
+    public void downloadDocument(@PathVariable Long documentId,
+                                 @RequestParam(defaultValue = "false") boolean inline,
+                                 HttpServletRequest request,
+                                 HttpServletResponse response) throws IOException {
+        DocumentContentRef ref = documentService.getContentRef(documentId)
+                .orElseThrow(() -> new NotFoundException("Document not found"));
 
-        response.setContentType(doc.getMimeType());
+        String etag = ref.getContentSha256() != null
+                ? "\"" + ref.getContentSha256() + "\""
+                : "\"" + ref.getId() + "-" + ref.getSizeInBytes() + "\"";
+        long lastModified = ref.getCreatedDate() != null ? ref.getCreatedDate().toEpochMilli() : -1;
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return;
+        }
+
+        response.setContentType(ref.getMimeType());
         response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
-                "attachment; filename=\"" + doc.getOriginalFilename() + "\"");
-        response.setContentLengthLong(doc.getSizeInBytes());
-        response.getOutputStream().write(doc.getContent());
-        response.getOutputStream().flush();
+                (inline ? "inline" : "attachment") + "; filename=\"" + ref.getOriginalFilename() + "\"");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+
+        HttpRangeSupport.write(request, response, ref.getSizeInBytes(), etag,
+                documentService.getLocalContentFile(ref), () -> documentService.openContent(ref));
+    }
+
+    /**
+     * Small JPEG of a PDF's first page or an image, for document lists
+     */
+    @GetMapping("/thumbnail/{documentId}")
+    @PreAuthorize("hasAuthority('document:read')")
+    public ResponseEntity<byte[]> getThumbnail(@PathVariable Long documentId, WebRequest request) throws IOException {
+        return preview(documentId, PreviewSize.THUMBNAIL, request);
+    }
+
+    /**
+     * Screen-sized JPEG of a PDF's first page or an image, so it can be viewed without the download
+     */
+    @GetMapping("/preview/{documentId}")
+    @PreAuthorize("hasAuthority('document:read')")
+    public ResponseEntity<byte[]> getPreview(@PathVariable Long documentId, WebRequest request) throws IOException {
+        return preview(documentId, PreviewSize.PAGE, request);
+    }
+
+    /**
+     * Logical versus stored size of document payloads, including the compression ratio
+     */
+    @GetMapping("/storage/stats")
+    @PreAuthorize("hasAuthority('dashboard:view')")
+    public ResponseEntity<StorageStatsDto> getStorageStats() {
+        return ResponseEntity.ok(documentStorageService.getStorageStats());
+    }
+
+    /**
+     * Move legacy inline payloads out of the documents table into blob storage
+     */
+    @PostMapping("/storage/migrate")
+    @PreAuthorize("hasAuthority('admin:manage-templates')")
+    public ResponseEntity<Map<String, Object>> migrateDocumentContent(
+            @RequestParam(required = false) Integer batchSize) {
+
+        int migrated = documentBlobMigrationService.migrateAll(batchSize);
+        return ResponseEntity.ok(Map.of("migrated", migrated));
+    }
+
+    private ResponseEntity<byte[]> preview(Long documentId, PreviewSize size, WebRequest request) throws IOException {
+        DocumentContentRef ref = documentService.getContentRef(documentId)
+                .orElseThrow(() -> new NotFoundException("Document not found"));
+
+        // A document's payload never changes, so neither does its preview
+        String etag = "\"" + (ref.getContentSha256() != null ? ref.getContentSha256() : ref.getId().toString())
+                + "-" + size.name().toLowerCase() + "\"";
+        CacheControl cacheControl = CacheControl.maxAge(PREVIEW_MAX_AGE).cachePrivate();
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+
+        byte[] preview = documentPreviewService.getPreview(ref, size)
+                .orElseThrow(() -> new NotFoundException("No preview available for this document"));
+        return ResponseEntity.ok()
+                .contentType(MediaType.IMAGE_JPEG)
+                .eTag(etag)
+                .cacheControl(cacheControl)
+                .body(preview);
+    }
+
+    private List<BatchUploadItem> parseBatchMetadata(String metadata) {
+        try {
+            return objectMapper.readValue(metadata, new TypeReference<List<BatchUploadItem>>() {});
+        } catch (JsonProcessingException e) {
+            throw new BadRequestException("metadata must be a JSON array with one entry per file");
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,13 +1,20 @@
 package com.bkb.scanner.controller;
 
+import com.bkb.scanner.dto.ScanBatchRequest;
+import com.bkb.scanner.dto.ScanJobDto;
 import com.bkb.scanner.dto.ScanTriggerRequest;
 import com.bkb.scanner.dto.ScanTriggerResponse;
-import com.bkb.scanner.entity.Document;
+import com.bkb.scanner.service.ScanJob;
+import com.bkb.scanner.service.ScanJobService;
 import com.bkb.scanner.service.ScanTriggerService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 @RestController
 @RequestMapping("scans")
@@ -16,40 +23,56 @@ public class ScanController {
     @Autowired
     private ScanTriggerService scanTriggerService;
 
+    @Autowired
+    private ScanJobService scanJobService;
+
+    /**
+     * Queues a scan and answers 202 with the job id; follow the job via
+     * GET /scans/jobs/{jobId} or the event stream at /scans/jobs/{jobId}/events
+     */
     @PostMapping("/trigger")
     @PreAuthorize("hasAuthority('document:upload')")
     public ResponseEntity<ScanTriggerResponse> triggerScan(@RequestBody ScanTriggerRequest request) {
-        System.out.println("Received scan request: " + request);
-        System.out.println("Profile Name: " + request.getProfileName());
-        System.out.println("Owner Type: " + request.getOwnerType());
-        System.out.println("Owner ID: " + request.getOwnerId());
-        System.out.println("Document Type: " + request.getDocumentType());
-        System.out.println("Format: " + request.getFormat());
-
-        try {
-            Document scannedDoc = scanTriggerService.triggerNaps2Scan(
-                    request.getProfileName(),
-                    request.getOwnerType(),
-                    request.getOwnerId(),
-                    request.getDocumentType(),
-                    request.getFormat() // Pass format to service
-            );
-
-            ScanTriggerResponse response = new ScanTriggerResponse();
-            response.setDocumentId(scannedDoc.getId().toString());
-            response.setStatus("SUCCESS");
-            response.setMessage("Document scanned successfully");
-
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            System.err.println("Scan failed: " + e.getMessage());
-            e.printStackTrace();
-
-            ScanTriggerResponse response = new ScanTriggerResponse();
-            response.setStatus("ERROR");
-            response.setMessage("Scan failed: " + e.getMessage());
-
-            return ResponseEntity.status(500).body(response);
-        }
+        ScanJob job = scanTriggerService.submitScan(request);
+
+        ScanTriggerResponse response = new ScanTriggerResponse();
+        response.setJobId(job.getJobId());
+        response.setStatus(job.getStatus());
+        ScanJobDto queued = scanJobService.describe(job);
+        response.setMessage(queued.getQueuePosition() != null && queued.getQueuePosition() > 0
+                ? "Scan queued behind " + queued.getQueuePosition() + " other scan(s) on " + job.getProfileName()
+                : "Scan queued");
+
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .location(ServletUriComponentsBuilder.fromCurrentContextPath()
+                        .path("/scans/jobs/{jobId}").buildAndExpand(job.getJobId()).toUri())
+                .body(response);
+    }
+
+    /**
+     * Scans a stack of documents in one pass and splits it into one document per entry,
+     * either by page counts, blank separator sheets or Patch-T sheets
+     */
+    @PostMapping("/batch")
+    @PreAuthorize("hasAuthority('document:upload')")
+    public ResponseEntity<ScanJobDto> batchScan(@RequestBody ScanBatchRequest request) {
+        ScanJob job = scanTriggerService.submitBatchScan(request);
+
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .location(ServletUriComponentsBuilder.fromCurrentContextPath()
+                        .path("/scans/jobs/{jobId}").buildAndExpand(job.getJobId()).toUri())
+                .body(scanJobService.describe(job));
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    @PreAuthorize("hasAuthority('document:upload')")
+    public ResponseEntity<ScanJobDto> getJob(@PathVariable String jobId) {
+        return ResponseEntity.ok(scanJobService.describe(scanTriggerService.getJob(jobId)));
+    }
+
+    @GetMapping(value = "/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAuthority('document:upload')")
+    public SseEmitter streamJob(@PathVariable String jobId) {
+        return scanJobService.subscribe(scanTriggerService.getJob(jobId));
     }
-}
\ No newline at end of file
+}
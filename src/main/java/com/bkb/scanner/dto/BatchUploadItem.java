@@ -0,0 +1,14 @@
+package com.bkb.scanner.dto;
+
+import lombok.Data;
+
+/**
+ * Metadata for one file of a batch upload, matched to the files by position
+ */
+@Data
+public class BatchUploadItem {
+    private String documentType;
+    private String expiryDate;
+    private String comments;
+    private Boolean isAdHoc;
+}
@@ -0,0 +1,35 @@
+package com.bkb.scanner.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Outcome of a batch upload, with one result per submitted file in submission order
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchUploadResultDto {
+    private int total;
+    private int succeeded;
+    private int failed;
+    private List<FileResult> results;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class FileResult {
+        private int index;
+        private String originalFilename;
+        private String documentType;
+        private boolean success;
+        private DocumentDto document;
+        private String error;
+    }
+}
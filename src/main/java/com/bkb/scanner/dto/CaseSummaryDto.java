@@ -0,0 +1,47 @@
+package com.bkb.scanner.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Case list row: the case fields a list shows plus document counts, read with one
+ * projection query. Parties, call reports and activities are left out; the full
+ * CaseDto is served by /cases/{caseId}.
+ */
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CaseSummaryDto extends CaseDto {
+    private String assignedToName;
+
+    // Current versions of the case's own documents; party documents are not counted
+    private long documentCount;
+    private long verifiedDocumentCount;
+    private long expiredDocumentCount;
+
+    public CaseSummaryDto(String caseId, String status, String riskLevel, String workflowStage,
+                          Instant createdDate, Instant slaDeadline, String entityName, String entityType,
+                          String assignedTo, String assignedToName,
+                          Long documentCount, Long verifiedDocumentCount, Long expiredDocumentCount) {
+        setCaseId(caseId);
+        setStatus(status);
+        setRiskLevel(riskLevel);
+        setWorkflowStage(workflowStage);
+        setCreatedDate(createdDate);
+        setSlaDeadline(slaDeadline);
+        EntityDataDto entity = new EntityDataDto();
+        entity.setEntityName(entityName);
+        entity.setEntityType(entityType);
+        setEntity(entity);
+        setAssignedTo(assignedTo);
+        this.assignedToName = assignedToName;
+        this.documentCount = documentCount != null ? documentCount : 0;
+        this.verifiedDocumentCount = verifiedDocumentCount != null ? verifiedDocumentCount : 0;
+        this.expiredDocumentCount = expiredDocumentCount != null ? expiredDocumentCount : 0;
+    }
+}
@@ -33,6 +33,22 @@ public class CasesPageDto {
         private Integer limit;
         private Long total;
         private Integer totalPages;
+        // True when total is an estimate rather than an exact count
+        private Boolean totalEstimated;
+        private Boolean hasNext;
+        // Cursor mode: pass as cursor to get the next page; null on the last page
+        private String nextCursor;
+    }
+
+    /**
+     * How the total number of matching cases is reported
+     */
+    public enum TotalMode {
+        EXACT,
+        // Table statistics without filters, otherwise a count that stops at a cap
+        ESTIMATE,
+        // No count query at all
+        NONE
     }
 
     @Data
@@ -44,6 +60,37 @@ public class CasesPageDto {
         // Optional metadata fields for enhanced functionality
         private Long queryTime; // Milliseconds taken for the query
         private Boolean includesDocumentSummary; // Flag to indicate if summary data is included
+        // Only when requested with facets=true
+        private Facets facets;
+    }
+
+    /**
+     * Number of cases per value of each filterable field, for the search term alone: the
+     * risk and status filters of the request do not narrow them, so every chip shows how
+     * many cases selecting it would give
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Facets {
+        private List<FacetCount> riskLevel;
+        private List<FacetCount> status;
+        private List<FacetCount> workflowStage;
+        private List<FacetCount> entityType;
+        private List<FacetCount> assignedTo;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class FacetCount {
+        // Null counts the cases with no value, e.g. unassigned ones
+        private String value;
+        // Display name where it differs from the value (the assignee's name)
+        private String label;
+        private long count;
     }
 
     @Data
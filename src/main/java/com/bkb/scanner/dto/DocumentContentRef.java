@@ -0,0 +1,25 @@
+package com.bkb.scanner.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Projection with just what is needed to serve a document's payload,
+ * so downloads never load the entity graph or the legacy content column
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DocumentContentRef {
+    private Long id;
+    private String storageKey;
+    private String mimeType;
+    private String originalFilename;
+    private long sizeInBytes;
+    private String contentSha256;
+    private String contentEncoding;
+    private Instant createdDate;
+}
@@ -16,6 +16,8 @@ public class DocumentDto {
     private String originalFilename;
     private String mimeType;
     private Long sizeInBytes;
+    private Long storedSizeInBytes;
+    private String contentSha256;
     private String status;
     private Integer version;
     private String ownerType;
@@ -34,6 +36,7 @@ public class DocumentDto {
     private String comments;
     private Boolean isCurrentForCase;
     private Boolean isAdHoc;
+    private Boolean deduplicated;
 
     // Nested DTO for user information
     @Data
@@ -0,0 +1,49 @@
+package com.bkb.scanner.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * manifest.json of a case document export: one entry per document, with the path
+ * of its payload inside the ZIP
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DocumentExportManifest {
+    private String caseId;
+    private String exportedAt;
+    private String exportedBy;
+    private boolean includesHistory;
+    private int documentCount;
+    private List<Entry> entries;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Entry {
+        // Path inside the ZIP; null if the payload could not be read
+        private String path;
+        private Long documentId;
+        private String ownerType;
+        private String ownerId;
+        private String documentType;
+        private Integer version;
+        private String status;
+        private Boolean isCurrentForCase;
+        private String originalFilename;
+        private String mimeType;
+        private Long sizeInBytes;
+        private String sha256;
+        private String uploadedBy;
+        private String uploadedDate;
+        private String expiryDate;
+        private String error;
+    }
+}
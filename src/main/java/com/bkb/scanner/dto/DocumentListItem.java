@@ -0,0 +1,47 @@
+package com.bkb.scanner.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Projection class for document listings: metadata plus uploader and verifier
+ * details joined in the same query, without the payload
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DocumentListItem {
+    private Long id;
+    private String name;
+    private String documentType;
+    private String originalFilename;
+    private String mimeType;
+    private long sizeInBytes;
+    private Long storedSizeInBytes;
+    private String contentSha256;
+    private String status;
+    private Integer version;
+    private String ownerType;
+    private String ownerId;
+
+    private String uploadedByUserId;
+    private String uploadedByUsername;
+    private String uploadedByName;
+    private String uploadedByDepartment;
+    private Instant uploadedDate;
+
+    private String verifiedByUserId;
+    private String verifiedByUsername;
+    private String verifiedByName;
+    private String verifiedByDepartment;
+    private Instant verifiedDate;
+
+    private String rejectionReason;
+    private Instant expiryDate;
+    private String comments;
+    private Boolean isCurrentForCase;
+    private Boolean isAdHoc;
+}
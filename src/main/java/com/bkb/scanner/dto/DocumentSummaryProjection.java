@@ -11,12 +11,14 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 public class DocumentSummaryProjection {
+    // Owner of the documents; a party ID for party summaries
     private String caseId;
     private long expiredCount;
     private long expiringSoonCount;
     private long verifiedCount;
     private long submittedCount;
     private long rejectedCount;
+    private long totalCount;
 
     // Constructor for JPQL query projection
     public DocumentSummaryProjection(String caseId, long expiredCount, long expiringSoonCount) {
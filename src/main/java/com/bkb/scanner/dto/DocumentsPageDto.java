@@ -0,0 +1,44 @@
+package com.bkb.scanner.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Response DTO for paginated, filtered document listings
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DocumentsPageDto {
+
+    private List<DocumentDto> data;
+
+    private PaginationInfo pagination;
+    private AppliedFilters appliedFilters;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PaginationInfo {
+        private Integer page;
+        private Integer limit;
+        private Long total;
+        private Integer totalPages;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class AppliedFilters {
+        private List<String> status;
+        private List<String> documentType;
+        private Boolean isCurrentForCase;
+    }
+}
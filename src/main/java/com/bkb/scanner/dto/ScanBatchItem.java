@@ -0,0 +1,17 @@
+package com.bkb.scanner.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One document of a batch scan, in feed order. pageCount is only used with the
+ * PAGE_COUNT separator.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScanBatchItem {
+    private String documentType;
+    private Integer pageCount;
+}
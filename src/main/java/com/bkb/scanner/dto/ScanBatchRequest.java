@@ -0,0 +1,24 @@
+package com.bkb.scanner.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * A stack of documents scanned through the ADF in one go and split into one document
+ * per entry of documents. The separator says how the documents are told apart:
+ * PAGE_COUNT uses each entry's pageCount, BLANK_PAGE expects a blank sheet between
+ * documents and PATCH_T a Patch-T barcode sheet, detected by NAPS2 itself.
+ */
+@Data
+public class ScanBatchRequest {
+    public static final String SEPARATOR_PAGE_COUNT = "PAGE_COUNT";
+    public static final String SEPARATOR_BLANK_PAGE = "BLANK_PAGE";
+    public static final String SEPARATOR_PATCH_T = "PATCH_T";
+
+    private String profileName;
+    private String ownerType;
+    private String ownerId;
+    private String separator;
+    private List<ScanBatchItem> documents;
+}
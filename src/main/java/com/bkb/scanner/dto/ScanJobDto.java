@@ -0,0 +1,39 @@
+package com.bkb.scanner.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * State of an asynchronous scan job as reported to polling clients and SSE subscribers.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScanJobDto {
+    private String jobId;
+    private String status;
+    private String profileName;
+    private String ownerType;
+    private String ownerId;
+    private String documentType;
+    private String format;
+    private String submittedBy;
+    private String submittedAt;
+    private String startedAt;
+    private String finishedAt;
+    private long timeoutSeconds;
+    // Jobs ahead of this one on the same scanner profile; 0 once it is running
+    private Integer queuePosition;
+    // Estimated seconds until this job starts, from recent scan durations on the profile
+    private Long expectedWaitSeconds;
+    private Long documentId;
+    // Batch scans only: the separator used and the documents created, in feed order
+    private String separator;
+    private List<Long> documentIds;
+    private String message;
+}
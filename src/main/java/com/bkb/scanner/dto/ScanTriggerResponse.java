@@ -4,7 +4,8 @@ import lombok.Data;
 
 @Data
 public class ScanTriggerResponse {
+    private String jobId;
     private String documentId;
     private String status;
     private String message;
-}
\ No newline at end of file
+}
@@ -1,6 +1,7 @@
 package com.bkb.scanner.dto;
 
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
 import lombok.Data;
 
 @Data
@@ -12,4 +13,6 @@ public class ScannerProfileDto {
     private String colorMode;
     private String source;
     private boolean isDefault;
+    @Positive
+    private Integer scanTimeoutSeconds;
 }
\ No newline at end of file
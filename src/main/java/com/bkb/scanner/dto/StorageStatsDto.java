@@ -0,0 +1,36 @@
+package com.bkb.scanner.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Storage usage of distinct document payloads, for sizing storage
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StorageStatsDto {
+    private long blobCount;
+    private long logicalBytes;
+    private long storedBytes;
+    private double compressionRatio;
+    private List<TypeStats> byType;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class TypeStats {
+        private String mimeType;
+        private String contentEncoding;
+        private long blobCount;
+        private long logicalBytes;
+        private long storedBytes;
+        private double compressionRatio;
+    }
+}
@@ -0,0 +1,28 @@
+package com.bkb.scanner.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * State of a chunked upload session, including which chunks the server already
+ * holds so an interrupted client can resume with the missing ones.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSessionDto {
+    private String sessionId;
+    private String status;
+    private long totalSize;
+    private int chunkSize;
+    private int totalChunks;
+    private List<Integer> receivedChunks;
+    private List<Integer> missingChunks;
+    private String expiresAt;
+    private Long documentId;
+}
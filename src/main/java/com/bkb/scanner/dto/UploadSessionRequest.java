@@ -0,0 +1,24 @@
+package com.bkb.scanner.dto;
+
+import lombok.Data;
+
+/**
+ * Request to open a chunked upload session.
+ * The document metadata is the same as for a single-shot upload.
+ */
+@Data
+public class UploadSessionRequest {
+    private String ownerType; // CASE or PARTY
+    private String ownerId;
+    private String documentType;
+    private String originalFilename;
+    private String mimeType;
+    private Long totalSize;
+    // Requested chunk size in bytes; the server may choose a smaller one
+    private Integer chunkSize;
+    // Optional SHA-256 of the whole file, verified on commit
+    private String sha256;
+    private String expiryDate;
+    private String comments;
+    private Boolean isAdHoc;
+}
@@ -11,7 +11,15 @@ import java.util.List;
  * Main entity representing a customer onboarding case
  */
 @Entity
-@Table(name = "csob_cases")
+@Table(name = "csob_cases", indexes = {
+        // Keyset pagination of the case search: one index per sort option, case ID breaking ties
+        @Index(name = "idx_case_created_date", columnList = "created_date, case_id"),
+        @Index(name = "idx_case_entity_name", columnList = "entity_name, case_id"),
+        @Index(name = "idx_case_status", columnList = "status, case_id"),
+        @Index(name = "idx_case_risk_level", columnList = "risk_level, case_id"),
+        // Periodic refresh of the search index with recently modified cases
+        @Index(name = "idx_case_last_modified_date", columnList = "last_modified_date")
+})
 @Data
 @EqualsAndHashCode(callSuper = false)
 public class Case extends Auditable {
@@ -2,12 +2,24 @@ package com.bkb.scanner.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.Setter;
 import java.time.Instant;
 
 @Entity
-@Table(name = "csob_documents")
+@Table(name = "csob_documents",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_document_owner_type_version",
+                        columnNames = {"owner_type", "owner_id", "document_type", "version"}),
+                @UniqueConstraint(name = "uk_document_current_version",
+                        columnNames = {"owner_type", "owner_id", "document_type", "current_version_flag"})
+        },
+        indexes = {
+                // Expiry sweep: documents of a status past their expiry date
+                @Index(name = "idx_document_status_expiry", columnList = "status, expiry_date")
+        })
 @Data
 @EqualsAndHashCode(callSuper = false)
 public class Document extends Auditable {
@@ -27,9 +39,30 @@ public class Document extends Auditable {
     @Column(name = "mime_type")
     private String mimeType;
 
+    // Logical size of the payload as uploaded
     @Column(name = "size_in_bytes")
     private long sizeInBytes;
 
+    // Size of the payload at rest, after compression
+    @Column(name = "stored_size_in_bytes")
+    private Long storedSizeInBytes;
+
+    // ContentCodec the payload is stored with; null means identity
+    @Column(name = "content_encoding", length = 32)
+    private String contentEncoding;
+
+    @Column(name = "content_sha256", length = 64)
+    private String contentSha256;
+
+    // Set on upload when the payload was already stored for another document
+    @Transient
+    private boolean deduplicated;
+
+    // Key of the payload in the BlobStore
+    @Column(name = "storage_key", length = 128)
+    private String storageKey;
+
+    // Legacy inline payload, only set on rows not yet moved out by DocumentBlobMigrationService
     @Lob
     @Basic(fetch = FetchType.LAZY)
     @JsonIgnore
@@ -81,6 +114,14 @@ public class Document extends Auditable {
     @Column(name = "is_current_for_case", nullable = false)
     private Boolean isCurrentForCase = false;
 
+    // 1 on the current version and NULL on all others, maintained by the database.
+    // MySQL has no partial indexes, so uk_document_current_version indexes this column
+    // to allow at most one current version per owner and document type.
+    @Setter(AccessLevel.NONE)
+    @Column(name = "current_version_flag", insertable = false, updatable = false,
+            columnDefinition = "TINYINT GENERATED ALWAYS AS (CASE WHEN is_current_for_case THEN 1 END)")
+    private Integer currentVersionFlag;
+
     @Column(name = "is_ad_hoc", nullable = false)
     private Boolean isAdHoc = false;
 }
\ No newline at end of file
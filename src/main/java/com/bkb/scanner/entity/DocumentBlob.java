@@ -0,0 +1,38 @@
+package com.bkb.scanner.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * A stored payload, keyed by the SHA-256 of its content.
+ * Documents with identical bytes share one blob; refCount tracks how many
+ * documents point at it so the payload can be dropped once nothing uses it.
+ */
+@Entity
+@Table(name = "csob_document_blobs")
+@Data
+@EqualsAndHashCode(callSuper = false)
+public class DocumentBlob extends Auditable {
+    @Id
+    @Column(name = "sha256", length = 64)
+    private String sha256;
+
+    @Column(name = "storage_key", nullable = false, length = 128)
+    private String storageKey;
+
+    @Column(name = "size_in_bytes", nullable = false)
+    private long sizeInBytes;
+
+    @Column(name = "stored_size_in_bytes", nullable = false)
+    private long storedSizeInBytes;
+
+    @Column(name = "content_encoding", nullable = false, length = 32)
+    private String contentEncoding;
+
+    @Column(name = "mime_type")
+    private String mimeType;
+
+    @Column(name = "ref_count", nullable = false)
+    private long refCount;
+}
@@ -0,0 +1,41 @@
+package com.bkb.scanner.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Last version number handed out per (owner, document type).
+ * Versions are allocated by incrementing this row in place, which makes
+ * allocation O(1) and serialises concurrent uploads of the same document type.
+ */
+@Entity
+@Table(name = "csob_document_version_counters")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DocumentVersionCounter {
+    @EmbeddedId
+    private Key id;
+
+    @Column(name = "last_version", nullable = false)
+    private int lastVersion;
+
+    @Embeddable
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        @Column(name = "owner_type", length = 16)
+        private String ownerType;
+
+        @Column(name = "owner_id", length = 64)
+        private String ownerId;
+
+        @Column(name = "document_type", length = 191)
+        private String documentType;
+    }
+}
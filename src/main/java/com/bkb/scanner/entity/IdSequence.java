@@ -0,0 +1,24 @@
+package com.bkb.scanner.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Last number handed out per ID sequence, e.g. "CASE-202601" for the case IDs of one
+ * month or "USER" for user IDs. Nodes reserve numbers from it in blocks.
+ */
+@Entity
+@Table(name = "csob_id_sequences")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdSequence {
+    @Id
+    @Column(name = "sequence_name", length = 64)
+    private String name;
+
+    @Column(name = "last_value", nullable = false)
+    private long lastValue;
+}
@@ -20,4 +20,8 @@ public class ScannerProfile extends Auditable {
     private String colorMode;  // e.g., "Color", "Grayscale"
     private String source;     // e.g., "ADF", "Flatbed"
     private boolean isDefault;
+
+    // NAPS2 is killed when a scan on this profile runs longer; null means scan.timeout.default
+    @Column(name = "scan_timeout_seconds")
+    private Integer scanTimeoutSeconds;
 }
\ No newline at end of file
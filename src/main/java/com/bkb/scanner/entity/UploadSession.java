@@ -0,0 +1,71 @@
+package com.bkb.scanner.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.time.Instant;
+
+/**
+ * A resumable chunked upload. The metadata of the future document is fixed when the
+ * session is created; the chunks themselves are spooled to disk by ChunkedUploadService
+ * and only become a Document on commit.
+ */
+@Entity
+@Table(name = "csob_upload_sessions")
+@Data
+@EqualsAndHashCode(callSuper = false)
+public class UploadSession extends Auditable {
+    public static final String STATUS_OPEN = "OPEN";
+    public static final String STATUS_COMMITTED = "COMMITTED";
+
+    @Id
+    @Column(name = "session_id", length = 32)
+    private String sessionId;
+
+    @Column(name = "owner_type", nullable = false, length = 16)
+    private String ownerType;
+
+    @Column(name = "owner_id", nullable = false, length = 64)
+    private String ownerId;
+
+    @Column(name = "document_type", nullable = false)
+    private String documentType;
+
+    @Column(name = "original_filename")
+    private String originalFilename;
+
+    @Column(name = "mime_type")
+    private String mimeType;
+
+    @Column(name = "expiry_date")
+    private String expiryDate;
+
+    @Column(length = 2000)
+    private String comments;
+
+    @Column(name = "is_ad_hoc", nullable = false)
+    private Boolean isAdHoc = false;
+
+    @Column(name = "total_size", nullable = false)
+    private long totalSize;
+
+    @Column(name = "chunk_size", nullable = false)
+    private int chunkSize;
+
+    @Column(name = "total_chunks", nullable = false)
+    private int totalChunks;
+
+    // Optional SHA-256 of the whole file, checked on commit
+    @Column(name = "content_sha256", length = 64)
+    private String contentSha256;
+
+    @Column(nullable = false, length = 16)
+    private String status = STATUS_OPEN;
+
+    @Column(name = "document_id")
+    private Long documentId;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+}
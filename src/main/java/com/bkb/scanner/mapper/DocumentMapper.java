@@ -1,6 +1,7 @@
 package com.bkb.scanner.mapper;
 
 import com.bkb.scanner.dto.DocumentDto;
+import com.bkb.scanner.dto.DocumentListItem;
 import com.bkb.scanner.entity.Document;
 import com.bkb.scanner.entity.User;
 import org.mapstruct.*;
@@ -21,7 +22,20 @@ public interface DocumentMapper {
     @Mapping(target = "expiryDate", expression = "java(formatInstant(entity.getExpiryDate()))")
     DocumentDto toDto(Document entity);
 
+    @Mapping(target = "uploadedBy", expression = "java(mapUserToDto(item.getUploadedByUserId(), item.getUploadedByUsername(), item.getUploadedByName(), item.getUploadedByDepartment()))")
+    @Mapping(target = "verifiedBy", expression = "java(mapUserToDto(item.getVerifiedByUserId(), item.getVerifiedByUsername(), item.getVerifiedByName(), item.getVerifiedByDepartment()))")
+    @Mapping(target = "uploadedDate", expression = "java(formatInstant(item.getUploadedDate()))")
+    @Mapping(target = "verifiedDate", expression = "java(formatInstant(item.getVerifiedDate()))")
+    @Mapping(target = "expiryDate", expression = "java(formatInstant(item.getExpiryDate()))")
+    @Mapping(source = "isAdHoc", target = "isAdHoc", defaultValue = "false")
+    @Mapping(target = "deduplicated", ignore = true)
+    DocumentDto toDto(DocumentListItem item);
+
     @Mapping(target = "content", ignore = true)
+    @Mapping(target = "storageKey", ignore = true)
+    @Mapping(target = "deduplicated", ignore = true)
+    @Mapping(target = "storedSizeInBytes", ignore = true)
+    @Mapping(target = "contentEncoding", ignore = true)
     @Mapping(target = "uploadedByUser", ignore = true)
     @Mapping(target = "verifiedByUser", ignore = true)
     @Mapping(target = "createdDate", ignore = true)
@@ -44,6 +58,18 @@ public interface DocumentMapper {
                 .build();
     }
 
+    default DocumentDto.UserInfoDto mapUserToDto(String userId, String username, String name, String department) {
+        if (userId == null) {
+            return null;
+        }
+        return DocumentDto.UserInfoDto.builder()
+                .userId(userId)
+                .username(username)
+                .name(name)
+                .department(department)
+                .build();
+    }
+
     default String formatInstant(Instant instant) {
         if (instant == null) {
             return null;
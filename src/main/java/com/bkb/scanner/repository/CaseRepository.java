@@ -1,13 +1,16 @@
 package com.bkb.scanner.repository;
 
+import com.bkb.scanner.dto.CaseSummaryDto;
 import com.bkb.scanner.entity.Case;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -15,6 +18,12 @@ public interface CaseRepository extends JpaRepository<Case, String> {
     // Existing method - KEEP THIS
     long countByCreatedDateBetween(Instant startDate, Instant endDate);
 
+    /**
+     * Case IDs with the given prefix, used to seed the case ID sequence of a month
+     */
+    @Query("SELECT c.caseId FROM Case c WHERE c.caseId LIKE CONCAT(:prefix, '%')")
+    List<String> findCaseIdsStartingWith(@Param("prefix") String prefix);
+
     // Dashboard Statistics Queries - Using Spring Data JPA method names (database agnostic)
     Long countByStatus(String status);
 
@@ -55,19 +64,101 @@ public interface CaseRepository extends JpaRepository<Case, String> {
                                @Param("excludedStatuses") List<String> excludedStatuses,
                                Pageable pageable);
 
-    // Search with filters - Database agnostic JPQL
-    @Query("SELECT DISTINCT c FROM Case c " +
-            "WHERE (:search IS NULL OR :search = '' OR " +
+    // Case list rows: one query with the assignee and the case's current documents joined in
+    String SUMMARY_SELECT = "SELECT new com.bkb.scanner.dto.CaseSummaryDto(" +
+            "c.caseId, c.status, c.riskLevel, c.workflowStage, c.createdDate, c.slaDeadline, " +
+            "c.entityData.entityName, c.entityData.entityType, a.userId, a.name, " +
+            "COUNT(d.id), " +
+            "SUM(CASE WHEN d.status = 'Verified' THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN d.status = 'Expired' THEN 1 ELSE 0 END)) " +
+            "FROM Case c LEFT JOIN c.assignedTo a " +
+            "LEFT JOIN Document d ON d.ownerType = 'CASE' AND d.ownerId = c.caseId AND d.isCurrentForCase = true ";
+
+    String SUMMARY_GROUP_BY = "GROUP BY c.caseId, c.status, c.riskLevel, c.workflowStage, c.createdDate, " +
+            "c.slaDeadline, c.entityData.entityName, c.entityData.entityType, a.userId, a.name";
+
+    String SEARCH_FILTERS = "WHERE (:search IS NULL OR :search = '' OR " +
             "       LOWER(c.entityData.entityName) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
-            "       LOWER(c.caseId) LIKE LOWER(CONCAT('%', :search, '%'))) " +
+            "       LOWER(c.caseId) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
+            "       LOWER(c.entityData.basicNumber) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
+            "       LOWER(c.entityData.cisNumber) LIKE LOWER(CONCAT('%', :search, '%'))) " +
+            "AND (:hasIdFilter = false OR c.caseId IN :caseIds) " +
             "AND (:hasRiskFilter = false OR c.riskLevel IN :riskLevels) " +
-            "AND (:hasStatusFilter = false OR c.status IN :statuses)")
-    Page<Case> findCasesWithFilters(@Param("search") String search,
-                                    @Param("hasRiskFilter") boolean hasRiskFilter,
-                                    @Param("riskLevels") List<String> riskLevels,
-                                    @Param("hasStatusFilter") boolean hasStatusFilter,
-                                    @Param("statuses") List<String> statuses,
-                                    Pageable pageable);
+            "AND (:hasStatusFilter = false OR c.status IN :statuses) ";
+
+    /**
+     * List rows of all cases, newest first
+     */
+    @Query(SUMMARY_SELECT + SUMMARY_GROUP_BY + " ORDER BY c.createdDate DESC")
+    List<CaseSummaryDto> findAllSummaries();
+
+    // Search with filters - Database agnostic JPQL
+    @Query(value = SUMMARY_SELECT + SEARCH_FILTERS + SUMMARY_GROUP_BY,
+            countQuery = "SELECT COUNT(c) FROM Case c " + SEARCH_FILTERS)
+    Page<CaseSummaryDto> findCaseSummariesWithFilters(@Param("search") String search,
+                                                      @Param("hasIdFilter") boolean hasIdFilter,
+                                                      @Param("caseIds") Collection<String> caseIds,
+                                                      @Param("hasRiskFilter") boolean hasRiskFilter,
+                                                      @Param("riskLevels") List<String> riskLevels,
+                                                      @Param("hasStatusFilter") boolean hasStatusFilter,
+                                                      @Param("statuses") List<String> statuses,
+                                                      Pageable pageable);
+
+    @Query("SELECT COUNT(c) FROM Case c " + SEARCH_FILTERS)
+    long countWithFilters(@Param("search") String search,
+                          @Param("hasIdFilter") boolean hasIdFilter,
+                          @Param("caseIds") Collection<String> caseIds,
+                          @Param("hasRiskFilter") boolean hasRiskFilter,
+                          @Param("riskLevels") List<String> riskLevels,
+                          @Param("hasStatusFilter") boolean hasStatusFilter,
+                          @Param("statuses") List<String> statuses);
+
+    // Offset search without the count query
+    @Query(SUMMARY_SELECT + SEARCH_FILTERS + SUMMARY_GROUP_BY)
+    Slice<CaseSummaryDto> findCaseSummarySliceWithFilters(@Param("search") String search,
+                                                          @Param("hasIdFilter") boolean hasIdFilter,
+                                                          @Param("caseIds") Collection<String> caseIds,
+                                                          @Param("hasRiskFilter") boolean hasRiskFilter,
+                                                          @Param("riskLevels") List<String> riskLevels,
+                                                          @Param("hasStatusFilter") boolean hasStatusFilter,
+                                                          @Param("statuses") List<String> statuses,
+                                                          Pageable pageable);
+
+    /**
+     * Matching cases counted per combination of risk level, status, workflow stage, entity
+     * type and assignee; the combinations are few, so every facet is summed from this one
+     * grouped result. Rows: riskLevel, status, workflowStage, entityType, assignee user ID,
+     * assignee name, count.
+     */
+    @Query("SELECT c.riskLevel, c.status, c.workflowStage, c.entityData.entityType, a.userId, a.name, COUNT(c) " +
+            "FROM Case c LEFT JOIN c.assignedTo a " + SEARCH_FILTERS +
+            "GROUP BY c.riskLevel, c.status, c.workflowStage, c.entityData.entityType, a.userId, a.name")
+    List<Object[]> countFacetsWithFilters(@Param("search") String search,
+                                          @Param("hasIdFilter") boolean hasIdFilter,
+                                          @Param("caseIds") Collection<String> caseIds,
+                                          @Param("hasRiskFilter") boolean hasRiskFilter,
+                                          @Param("riskLevels") List<String> riskLevels,
+                                          @Param("hasStatusFilter") boolean hasStatusFilter,
+                                          @Param("statuses") List<String> statuses);
+
+    /**
+     * List rows of the given cases, in no particular order
+     */
+    @Query(SUMMARY_SELECT + "WHERE c.caseId IN :caseIds " + SUMMARY_GROUP_BY)
+    List<CaseSummaryDto> findSummariesByCaseIds(@Param("caseIds") Collection<String> caseIds);
+
+    /**
+     * Case ID, entity name, basic number and CIS number of every case, for the search index
+     */
+    @Query("SELECT c.caseId, c.entityData.entityName, c.entityData.basicNumber, c.entityData.cisNumber FROM Case c")
+    List<Object[]> findSearchFields();
+
+    /**
+     * Search index fields of the cases created or modified since the given instant
+     */
+    @Query("SELECT c.caseId, c.entityData.entityName, c.entityData.basicNumber, c.entityData.cisNumber FROM Case c " +
+            "WHERE c.lastModifiedDate >= :since")
+    List<Object[]> findSearchFieldsModifiedSince(@Param("since") Instant since);
 
     // For average processing time - fetch completed cases
     @Query("SELECT c FROM Case c LEFT JOIN FETCH c.activityLogs " +
@@ -0,0 +1,126 @@
+package com.bkb.scanner.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Keyset ("seek") queries for the case search.
+ * A page continues after the sort key and case ID of the previous page's last row, so
+ * with the (column, case_id) indexes on csob_cases it reads only the rows it returns,
+ * however deep it is. Case ID breaks ties, which makes the order total and stable.
+ * Rows with no sort key sort lowest, as they do natively in MySQL and H2.
+ */
+@Slf4j
+@Repository
+public class CaseSearchRepository {
+
+    // Sortable Case properties; the cursor key of createdDate is bound as an Instant
+    private static final Set<String> SORT_PROPERTIES =
+            Set.of("caseId", "entityData.entityName", "riskLevel", "status", "createdDate");
+    private static final Set<String> NOT_NULL_PROPERTIES = Set.of("caseId", "riskLevel", "status");
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * IDs of up to limit matching cases in sort order, starting after the given key and ID
+     * (or from the start when afterId is null). A non-null caseIds restricts the search to
+     * those cases.
+     */
+    public List<String> findIdsAfter(String search, Collection<String> caseIds,
+                                     List<String> riskLevels, List<String> statuses,
+                                     String sortProperty, boolean descending,
+                                     Object afterKey, String afterId, int limit) {
+        if (!SORT_PROPERTIES.contains(sortProperty)) {
+            throw new IllegalArgumentException("Not a sortable property: " + sortProperty);
+        }
+        String key = "c." + sortProperty;
+        String direction = descending ? " DESC" : " ASC";
+        StringBuilder jpql = new StringBuilder("SELECT c.caseId FROM Case c ").append(CaseRepository.SEARCH_FILTERS);
+        if (afterId != null) {
+            jpql.append(seek(sortProperty, key, descending, afterKey == null));
+        }
+        jpql.append("ORDER BY ").append(key).append(direction);
+        if (!"caseId".equals(sortProperty)) {
+            jpql.append(", c.caseId").append(direction);
+        }
+
+        TypedQuery<String> query = entityManager.createQuery(jpql.toString(), String.class);
+        bindFilters(query, search, caseIds, riskLevels, statuses);
+        if (afterId != null) {
+            query.setParameter("afterId", afterId);
+            if (afterKey != null && !"caseId".equals(sortProperty)) {
+                query.setParameter("afterKey", afterKey);
+            }
+        }
+        return query.setMaxResults(limit).getResultList();
+    }
+
+    /**
+     * Number of matching cases, counting no further than max
+     */
+    public long countUpTo(String search, Collection<String> caseIds, List<String> riskLevels, List<String> statuses,
+                          int max) {
+        TypedQuery<String> query = entityManager.createQuery(
+                "SELECT c.caseId FROM Case c " + CaseRepository.SEARCH_FILTERS, String.class);
+        bindFilters(query, search, caseIds, riskLevels, statuses);
+        return query.setMaxResults(max).getResultList().size();
+    }
+
+    /**
+     * The row count MySQL keeps in its table statistics for csob_cases, which is
+     * approximate for InnoDB. Empty when the database does not provide one.
+     */
+    public Optional<Long> estimateTotalRows() {
+        try {
+            return Optional.ofNullable(jdbcTemplate.queryForObject(
+                    "SELECT TABLE_ROWS FROM information_schema.TABLES " +
+                            "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'csob_cases'", Long.class));
+        } catch (DataAccessException e) {
+            log.debug("No table statistics for csob_cases: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private static String seek(String sortProperty, String key, boolean descending, boolean afterNullKey) {
+        String after = descending ? "<" : ">";
+        if ("caseId".equals(sortProperty)) {
+            return "AND c.caseId " + after + " :afterId ";
+        }
+        boolean nullable = !NOT_NULL_PROPERTIES.contains(sortProperty);
+        if (afterNullKey) {
+            // Nulls come first ascending and last descending
+            return descending
+                    ? "AND " + key + " IS NULL AND c.caseId < :afterId "
+                    : "AND (" + key + " IS NOT NULL OR c.caseId > :afterId) ";
+        }
+        String tuple = "(" + key + ", c.caseId) " + after + " (:afterKey, :afterId)";
+        return descending && nullable
+                ? "AND (" + tuple + " OR " + key + " IS NULL) "
+                : "AND " + tuple + " ";
+    }
+
+    private static void bindFilters(TypedQuery<?> query, String search, Collection<String> caseIds,
+                                    List<String> riskLevels, List<String> statuses) {
+        query.setParameter("search", search);
+        query.setParameter("hasIdFilter", caseIds != null);
+        query.setParameter("caseIds", caseIds != null ? caseIds : List.of());
+        query.setParameter("hasRiskFilter", !riskLevels.isEmpty());
+        query.setParameter("riskLevels", riskLevels);
+        query.setParameter("hasStatusFilter", !statuses.isEmpty());
+        query.setParameter("statuses", statuses);
+    }
+}
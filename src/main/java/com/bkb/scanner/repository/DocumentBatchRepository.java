@@ -0,0 +1,117 @@
+package com.bkb.scanner.repository;
+
+import com.bkb.scanner.entity.Document;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Inserts many documents with one JDBC batch.
+ * Document ids come from an IDENTITY column, which stops Hibernate from batching
+ * inserts, so batch uploads write their rows here instead. The statement joins the
+ * surrounding JPA transaction, which is flushed first. Auditing fields are filled in by the caller because
+ * the JPA entity listeners do not run.
+ */
+@Repository
+public class DocumentBatchRepository {
+
+    private static final Calendar UTC = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+
+    private static final String INSERT_SQL = "INSERT INTO csob_documents (" +
+            "name, document_type, original_filename, mime_type, size_in_bytes, stored_size_in_bytes, " +
+            "content_encoding, content_sha256, storage_key, owner_type, owner_id, case_id, party_id, status, " +
+            "version, uploaded_by_user_id, expiry_date, comments, is_current_for_case, is_ad_hoc, " +
+            "created_by, created_date, last_modified_by, last_modified_date, is_deleted) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    /**
+     * Inserts the documents in one batch and sets their generated ids
+     */
+    public void insertAll(List<Document> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        // Plain JDBC does not trigger Hibernate's auto flush; pending owners and users must be visible first
+        entityManager.flush();
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (Document d : documents) {
+                    int i = 1;
+                    ps.setString(i++, d.getName());
+                    ps.setString(i++, d.getDocumentType());
+                    ps.setString(i++, d.getOriginalFilename());
+                    ps.setString(i++, d.getMimeType());
+                    ps.setLong(i++, d.getSizeInBytes());
+                    setLong(ps, i++, d.getStoredSizeInBytes());
+                    ps.setString(i++, d.getContentEncoding());
+                    ps.setString(i++, d.getContentSha256());
+                    ps.setString(i++, d.getStorageKey());
+                    ps.setString(i++, d.getOwnerType());
+                    ps.setString(i++, d.getOwnerId());
+                    ps.setString(i++, d.getOwnerCase() != null ? d.getOwnerCase().getCaseId() : null);
+                    ps.setString(i++, d.getOwnerParty() != null ? d.getOwnerParty().getPartyId() : null);
+                    ps.setString(i++, d.getStatus());
+                    ps.setInt(i++, d.getVersion());
+                    ps.setString(i++, d.getUploadedByUser().getUserId());
+                    setInstant(ps, i++, d.getExpiryDate());
+                    ps.setString(i++, d.getComments());
+                    ps.setBoolean(i++, d.getIsCurrentForCase());
+                    ps.setBoolean(i++, d.getIsAdHoc());
+                    ps.setString(i++, d.getCreatedBy());
+                    setInstant(ps, i++, d.getCreatedDate());
+                    ps.setString(i++, d.getLastModifiedBy());
+                    setInstant(ps, i++, d.getLastModifiedDate());
+                    ps.setBoolean(i++, d.isDeleted());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    for (Document d : documents) {
+                        if (!keys.next()) {
+                            throw new IllegalStateException("Missing generated id for batch inserted document");
+                        }
+                        d.setId(keys.getLong(1));
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    private static void setLong(PreparedStatement ps, int index, Long value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.BIGINT);
+        } else {
+            ps.setLong(index, value);
+        }
+    }
+
+    // Same UTC binding Hibernate uses for Instant columns
+    private static void setInstant(PreparedStatement ps, int index, Instant value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.TIMESTAMP);
+        } else {
+            ps.setTimestamp(index, Timestamp.from(value), (Calendar) UTC.clone());
+        }
+    }
+}
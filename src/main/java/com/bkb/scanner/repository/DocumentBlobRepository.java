@@ -0,0 +1,39 @@
+package com.bkb.scanner.repository;
+
+import com.bkb.scanner.entity.DocumentBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface DocumentBlobRepository extends JpaRepository<DocumentBlob, String> {
+
+    @Query("SELECT b.mimeType as mimeType, b.contentEncoding as contentEncoding, COUNT(b) as blobCount, " +
+            "SUM(b.sizeInBytes) as logicalBytes, SUM(b.storedSizeInBytes) as storedBytes " +
+            "FROM DocumentBlob b GROUP BY b.mimeType, b.contentEncoding")
+    List<StorageStatsRow> getStorageStats();
+
+    interface StorageStatsRow {
+        String getMimeType();
+        String getContentEncoding();
+        Long getBlobCount();
+        Long getLogicalBytes();
+        Long getStoredBytes();
+    }
+
+    @Modifying
+    @Query("UPDATE DocumentBlob b SET b.refCount = b.refCount + 1 WHERE b.sha256 = :sha256")
+    int incrementRefCount(@Param("sha256") String sha256);
+
+    @Modifying
+    @Query("UPDATE DocumentBlob b SET b.refCount = b.refCount - 1 WHERE b.sha256 = :sha256 AND b.refCount > 0")
+    int decrementRefCount(@Param("sha256") String sha256);
+
+    @Modifying
+    @Query("DELETE FROM DocumentBlob b WHERE b.sha256 = :sha256 AND b.refCount = 0")
+    int deleteIfUnreferenced(@Param("sha256") String sha256);
+}
@@ -1,13 +1,19 @@
 package com.bkb.scanner.repository;
 
 import com.bkb.scanner.entity.Document;
+import com.bkb.scanner.dto.DocumentContentRef;
+import com.bkb.scanner.dto.DocumentListItem;
 import com.bkb.scanner.dto.DocumentSummaryProjection;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -16,24 +22,176 @@ import java.util.Set;
 @Repository
 public interface DocumentRepository extends JpaRepository<Document, Long> {
 
+    // Metadata-only select for listings: users are joined in, the payload is never read
+    String LIST_ITEM_SELECT = "SELECT new com.bkb.scanner.dto.DocumentListItem(" +
+            "d.id, d.name, d.documentType, d.originalFilename, d.mimeType, d.sizeInBytes, " +
+            "d.storedSizeInBytes, d.contentSha256, d.status, d.version, d.ownerType, d.ownerId, " +
+            "u.userId, u.username, u.name, u.department, d.createdDate, " +
+            "v.userId, v.username, v.name, v.department, d.verifiedDate, " +
+            "d.rejectionReason, d.expiryDate, d.comments, d.isCurrentForCase, d.isAdHoc) " +
+            "FROM Document d JOIN d.uploadedByUser u LEFT JOIN d.verifiedByUser v ";
+
+    // Storage metadata needed to serve a payload
+    String CONTENT_REF_SELECT = "SELECT new com.bkb.scanner.dto.DocumentContentRef(" +
+            "d.id, d.storageKey, d.mimeType, d.originalFilename, d.sizeInBytes, d.contentSha256, " +
+            "d.contentEncoding, d.createdDate) " +
+            "FROM Document d ";
+
+    String CASE_DOCUMENTS_FILTER = "WHERE ((d.ownerType = 'CASE' AND d.ownerId = :caseId) OR " +
+            "(d.ownerType = 'PARTY' AND d.ownerId IN " +
+            "(SELECT rp.party.partyId FROM RelatedParty rp WHERE rp.ownerCase.caseId = :caseId))) ";
+
+    String LIST_FILTERS = "AND (:hasStatusFilter = false OR d.status IN :statuses) " +
+            "AND (:hasTypeFilter = false OR d.documentType IN :documentTypes) " +
+            "AND (:isCurrentForCase IS NULL OR d.isCurrentForCase = :isCurrentForCase)";
+
     // Existing methods
     List<Document> findByOwnerTypeAndOwnerId(String ownerType, String ownerId);
 
     List<Document> findByOwnerTypeAndOwnerIdAndDocumentType(
             String ownerType, String ownerId, String documentType);
 
+    @Query("SELECT COALESCE(MAX(d.version), 0) FROM Document d " +
+            "WHERE d.ownerType = :ownerType AND d.ownerId = :ownerId AND d.documentType = :documentType")
+    int findMaxVersion(@Param("ownerType") String ownerType,
+                       @Param("ownerId") String ownerId,
+                       @Param("documentType") String documentType);
+
+    /**
+     * Clears the current flag on all versions of an owner's document type in one statement
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Document d SET d.isCurrentForCase = false " +
+            "WHERE d.ownerType = :ownerType AND d.ownerId = :ownerId AND d.documentType = :documentType " +
+            "AND d.isCurrentForCase = true")
+    int clearCurrentVersion(@Param("ownerType") String ownerType,
+                            @Param("ownerId") String ownerId,
+                            @Param("documentType") String documentType);
+
+    /**
+     * Clears the current flag on all versions of an owner's document type except the given one
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Document d SET d.isCurrentForCase = false " +
+            "WHERE d.ownerType = :ownerType AND d.ownerId = :ownerId AND d.documentType = :documentType " +
+            "AND d.isCurrentForCase = true AND d.id <> :keepId")
+    int clearCurrentVersionExcept(@Param("ownerType") String ownerType,
+                                  @Param("ownerId") String ownerId,
+                                  @Param("documentType") String documentType,
+                                  @Param("keepId") Long keepId);
+
+    /**
+     * Marks a single version as current
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Document d SET d.isCurrentForCase = true WHERE d.id = :id")
+    int markCurrentVersion(@Param("id") Long id);
+
     @Query("SELECT d FROM Document d WHERE " +
             "(d.ownerType = 'CASE' AND d.ownerId = :caseId) OR " +
             "(d.ownerType = 'PARTY' AND d.ownerId IN " +
             "(SELECT rp.party.partyId FROM RelatedParty rp WHERE rp.ownerCase.caseId = :caseId))")
     List<Document> findAllDocumentsForCase(@Param("caseId") String caseId);
 
+    /**
+     * Listing of all documents for a case, including party documents
+     */
+    @Query(LIST_ITEM_SELECT + CASE_DOCUMENTS_FILTER + "ORDER BY d.id")
+    List<DocumentListItem> findListItemsForCase(@Param("caseId") String caseId);
+
+    /**
+     * Listing of an owner's documents
+     */
+    @Query(LIST_ITEM_SELECT + "WHERE d.ownerType = :ownerType AND d.ownerId = :ownerId ORDER BY d.id")
+    List<DocumentListItem> findListItemsByOwner(@Param("ownerType") String ownerType,
+                                                @Param("ownerId") String ownerId);
+
+    /**
+     * Paginated, filtered listing of all documents for a case, including party documents
+     */
+    @Query(value = LIST_ITEM_SELECT + CASE_DOCUMENTS_FILTER + LIST_FILTERS,
+            countQuery = "SELECT COUNT(d) FROM Document d " + CASE_DOCUMENTS_FILTER + LIST_FILTERS)
+    Page<DocumentListItem> findListItemsForCase(@Param("caseId") String caseId,
+                                                @Param("hasStatusFilter") boolean hasStatusFilter,
+                                                @Param("statuses") List<String> statuses,
+                                                @Param("hasTypeFilter") boolean hasTypeFilter,
+                                                @Param("documentTypes") List<String> documentTypes,
+                                                @Param("isCurrentForCase") Boolean isCurrentForCase,
+                                                Pageable pageable);
+
+    /**
+     * Paginated, filtered listing of an owner's documents
+     */
+    @Query(value = LIST_ITEM_SELECT + "WHERE d.ownerType = :ownerType AND d.ownerId = :ownerId " + LIST_FILTERS,
+            countQuery = "SELECT COUNT(d) FROM Document d " +
+                    "WHERE d.ownerType = :ownerType AND d.ownerId = :ownerId " + LIST_FILTERS)
+    Page<DocumentListItem> findListItemsByOwner(@Param("ownerType") String ownerType,
+                                                @Param("ownerId") String ownerId,
+                                                @Param("hasStatusFilter") boolean hasStatusFilter,
+                                                @Param("statuses") List<String> statuses,
+                                                @Param("hasTypeFilter") boolean hasTypeFilter,
+                                                @Param("documentTypes") List<String> documentTypes,
+                                                @Param("isCurrentForCase") Boolean isCurrentForCase,
+                                                Pageable pageable);
+
     @Query("SELECT CASE WHEN COUNT(rp) > 0 THEN true ELSE false END " +
             "FROM RelatedParty rp WHERE rp.party.partyId = :partyId " +
             "AND rp.ownerCase.caseId = :caseId")
     boolean isPartyRelatedToCase(@Param("partyId") String partyId,
                                  @Param("caseId") String caseId);
 
+    /**
+     * Storage metadata for serving a document's payload, without loading the entity
+     */
+    @Query(CONTENT_REF_SELECT + "WHERE d.id = :id")
+    Optional<DocumentContentRef> findContentRefById(@Param("id") Long id);
+
+    /**
+     * Storage metadata of all documents for a case, including party documents
+     */
+    @Query(CONTENT_REF_SELECT + CASE_DOCUMENTS_FILTER)
+    List<DocumentContentRef> findContentRefsForCase(@Param("caseId") String caseId);
+
+    /**
+     * Content hashes of an owner's documents, for releasing blob references
+     */
+    @Query("SELECT d.contentSha256 FROM Document d " +
+            "WHERE d.ownerType = :ownerType AND d.ownerId = :ownerId AND d.contentSha256 IS NOT NULL")
+    List<String> findContentSha256ByOwner(@Param("ownerType") String ownerType,
+                                          @Param("ownerId") String ownerId);
+
+    /**
+     * IDs of documents whose payload is still stored inline, for the blob migration
+     */
+    @Query("SELECT d.id FROM Document d WHERE d.storageKey IS NULL AND d.content IS NOT NULL ORDER BY d.id")
+    List<Long> findIdsWithInlineContent(Pageable pageable);
+
+    /**
+     * IDs of documents still marked valid whose expiry date has passed, served by the
+     * (status, expiry_date) index as one range scan per status
+     */
+    @Query("SELECT d.id FROM Document d WHERE d.status IN :statuses AND d.expiryDate <= :now")
+    List<Long> findIdsDueForExpiry(@Param("statuses") Collection<String> statuses,
+                                   @Param("now") Instant now,
+                                   Pageable pageable);
+
+    /**
+     * Marks the given documents Expired unless they changed since they were selected.
+     * Bulk updates skip entity auditing, so the modification fields are set here.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Document d SET d.status = 'Expired', d.lastModifiedBy = 'SYSTEM', d.lastModifiedDate = :now " +
+            "WHERE d.id IN :ids AND d.status IN :statuses AND d.expiryDate <= :now")
+    int markExpired(@Param("ids") Collection<Long> ids,
+                    @Param("statuses") Collection<String> statuses,
+                    @Param("now") Instant now);
+
+    /**
+     * Owner and type of each document, as [ownerType, ownerId, documentType]
+     */
+    @Query("SELECT d.ownerType, d.ownerId, d.documentType FROM Document d WHERE d.id IN :ids AND d.status = 'Expired'")
+    List<Object[]> findOwnersOfExpired(@Param("ids") Collection<Long> ids);
+
     // ========== NEW BATCH METHODS FOR PERFORMANCE ==========
 
     /**
@@ -45,10 +203,8 @@ public interface DocumentRepository extends JpaRepository<Document, Long> {
                SUM(CASE WHEN d.status = 'Verified' THEN 1 ELSE 0 END) as verifiedCount,
                SUM(CASE WHEN d.status = 'Submitted' THEN 1 ELSE 0 END) as submittedCount,
                SUM(CASE WHEN d.status = 'Rejected' THEN 1 ELSE 0 END) as rejectedCount,
-               SUM(CASE WHEN d.expiryDate IS NOT NULL 
-                        AND d.expiryDate > :now 
-                        AND d.expiryDate < :threshold 
-                        AND d.status != 'Expired' THEN 1 ELSE 0 END) as expiringSoonCount
+               SUM(CASE WHEN d.status IN ('Submitted', 'Verified')
+                        AND d.expiryDate < :threshold THEN 1 ELSE 0 END) as expiringSoonCount
         FROM Document d
         WHERE d.ownerType = 'CASE' 
           AND d.ownerId IN :caseIds
@@ -57,7 +213,32 @@ public interface DocumentRepository extends JpaRepository<Document, Long> {
         """)
     List<Object[]> getDocumentSummariesForCases(
             @Param("caseIds") List<String> caseIds,
-            @Param("now") Instant now,
+            @Param("threshold") Instant threshold
+    );
+
+    /**
+     * Status counts for many owners of one type in a single grouped query, over all document versions.
+     * Owners without documents have no row.
+     */
+    @Query("""
+        SELECT new com.bkb.scanner.dto.DocumentSummaryProjection(
+            d.ownerId,
+            SUM(CASE WHEN d.status = 'Expired' THEN 1 ELSE 0 END),
+            SUM(CASE WHEN d.status IN ('Submitted', 'Verified')
+                     AND d.expiryDate < :threshold THEN 1 ELSE 0 END),
+            SUM(CASE WHEN d.status = 'Verified' THEN 1 ELSE 0 END),
+            SUM(CASE WHEN d.status = 'Submitted' THEN 1 ELSE 0 END),
+            SUM(CASE WHEN d.status = 'Rejected' THEN 1 ELSE 0 END),
+            COUNT(d)
+        )
+        FROM Document d
+        WHERE d.ownerType = :ownerType
+          AND d.ownerId IN :ownerIds
+        GROUP BY d.ownerId
+        """)
+    List<DocumentSummaryProjection> getStatusSummariesByOwners(
+            @Param("ownerType") String ownerType,
+            @Param("ownerIds") Collection<String> ownerIds,
             @Param("threshold") Instant threshold
     );
 
@@ -82,10 +263,8 @@ public interface DocumentRepository extends JpaRepository<Document, Long> {
         SELECT new com.bkb.scanner.dto.DocumentSummaryProjection(
             :caseId,
             SUM(CASE WHEN d.status = 'Expired' THEN 1 ELSE 0 END),
-            SUM(CASE WHEN d.expiryDate IS NOT NULL 
-                     AND d.expiryDate > :now 
-                     AND d.expiryDate < :threshold 
-                     AND d.status != 'Expired' THEN 1 ELSE 0 END)
+            SUM(CASE WHEN d.status IN ('Submitted', 'Verified')
+                     AND d.expiryDate < :threshold THEN 1 ELSE 0 END)
         )
         FROM Document d
         WHERE d.ownerType = 'CASE' 
@@ -94,7 +273,6 @@ public interface DocumentRepository extends JpaRepository<Document, Long> {
         """)
     Optional<DocumentSummaryProjection> getDocumentSummaryForCase(
             @Param("caseId") String caseId,
-            @Param("now") Instant now,
             @Param("threshold") Instant threshold
     );
 
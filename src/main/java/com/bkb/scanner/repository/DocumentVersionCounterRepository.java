@@ -0,0 +1,20 @@
+package com.bkb.scanner.repository;
+
+import com.bkb.scanner.entity.DocumentVersionCounter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface DocumentVersionCounterRepository
+        extends JpaRepository<DocumentVersionCounter, DocumentVersionCounter.Key> {
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE DocumentVersionCounter c SET c.lastVersion = c.lastVersion + :count WHERE c.id = :id")
+    int increment(@Param("id") DocumentVersionCounter.Key id, @Param("count") int count);
+
+    @Query("SELECT c.lastVersion FROM DocumentVersionCounter c WHERE c.id = :id")
+    Integer findLastVersion(@Param("id") DocumentVersionCounter.Key id);
+}
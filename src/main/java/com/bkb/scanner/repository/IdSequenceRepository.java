@@ -0,0 +1,19 @@
+package com.bkb.scanner.repository;
+
+import com.bkb.scanner.entity.IdSequence;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface IdSequenceRepository extends JpaRepository<IdSequence, String> {
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE IdSequence s SET s.lastValue = s.lastValue + :count WHERE s.name = :name")
+    int increment(@Param("name") String name, @Param("count") long count);
+
+    @Query("SELECT s.lastValue FROM IdSequence s WHERE s.name = :name")
+    Long findLastValue(@Param("name") String name);
+}
@@ -2,7 +2,25 @@ package com.bkb.scanner.repository;
 
 import com.bkb.scanner.entity.RelatedParty;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
-public interface RelatedPartyRepository extends JpaRepository<RelatedParty, Long> {}
\ No newline at end of file
+public interface RelatedPartyRepository extends JpaRepository<RelatedParty, Long> {
+
+    /**
+     * The cases the given parties are related to, as [partyId, caseId]
+     */
+    @Query("SELECT rp.party.partyId, rp.ownerCase.caseId FROM RelatedParty rp WHERE rp.party.partyId IN :partyIds")
+    List<Object[]> findCaseIdsByPartyIds(@Param("partyIds") Collection<String> partyIds);
+
+    /**
+     * A case's related parties with the parties themselves fetched in the same query
+     */
+    @Query("SELECT rp FROM RelatedParty rp JOIN FETCH rp.party WHERE rp.ownerCase.caseId = :caseId ORDER BY rp.id")
+    List<RelatedParty> findByCaseIdWithParty(@Param("caseId") String caseId);
+}
@@ -4,5 +4,9 @@ import com.bkb.scanner.entity.ScannerProfile;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Optional;
+
 @Repository
-public interface ScannerProfileRepository extends JpaRepository<ScannerProfile, Long> {}
\ No newline at end of file
+public interface ScannerProfileRepository extends JpaRepository<ScannerProfile, Long> {
+    Optional<ScannerProfile> findByName(String name);
+}
\ No newline at end of file
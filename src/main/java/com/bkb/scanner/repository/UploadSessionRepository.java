@@ -0,0 +1,26 @@
+package com.bkb.scanner.repository;
+
+import com.bkb.scanner.entity.UploadSession;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    /**
+     * Loads a session for commit, locking it so it cannot be committed twice
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM UploadSession s WHERE s.sessionId = :sessionId")
+    Optional<UploadSession> findByIdForUpdate(@Param("sessionId") String sessionId);
+
+    List<UploadSession> findByExpiresAtBefore(Instant cutoff);
+}
@@ -23,10 +23,10 @@ public interface UserRepository extends JpaRepository<User, String> {
     List<User> findByRoleName(@Param("roleName") String roleName);
 
     /**
-     * Finds the single user with the highest userId lexicographically
-     * (e.g., USER-005 > USER-004), used for generating the next ID.
+     * User IDs with the given prefix, used to seed the user ID sequence
      */
-    User findTopByOrderByUserIdDesc();
+    @Query("SELECT u.userId FROM User u WHERE u.userId LIKE CONCAT(:prefix, '%')")
+    List<String> findUserIdsStartingWith(@Param("prefix") String prefix);
 
     /**
      * This query directly updates the 'enabled' status in the database,
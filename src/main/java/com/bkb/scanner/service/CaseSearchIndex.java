@@ -0,0 +1,292 @@
+package com.bkb.scanner.service;
+
+import com.bkb.scanner.repository.CaseRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory trigram index over the searchable case fields: case ID, entity name, basic
+ * number and CIS number.
+ *
+ * A search term is split into trigrams and the posting sets of those trigrams are
+ * intersected, which leaves the cases that may contain the term; each is then checked
+ * and ranked by how well it matches. Terms shorter than a trigram are matched by a scan
+ * of the in-memory entries. Case writes update the index after they commit. Cases
+ * created or modified by other instances are picked up by a frequent refresh of recently
+ * modified cases, and the whole index is rebuilt from the database on startup and
+ * periodically.
+ */
+@Slf4j
+@Service
+public class CaseSearchIndex {
+
+    private static final int GRAM = 3;
+
+    @Autowired
+    private CaseRepository caseRepository;
+
+    @Value("${cases.search-index.max-candidates:1000}")
+    private int maxCandidates;
+
+    @Value("${cases.search-index.refresh-overlap:PT5M}")
+    private Duration refreshOverlap;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // trigram -> IDs of the cases with a field containing it
+    private Map<String, Set<String>> postings = new HashMap<>();
+    // case ID -> normalized searchable fields
+    private Map<String, String[]> entries = new HashMap<>();
+    // Puts made while a rebuild runs, replayed onto the new index before it replaces the
+    // current one; null when no rebuild is running
+    private Map<String, String[]> putsDuringRebuild;
+    // Every case modified before this instant is in the index
+    private volatile Instant indexedUpTo;
+    private volatile boolean ready;
+
+    /**
+     * Matching cases, best match first
+     *
+     * @param caseIds at most max-candidates IDs
+     * @param truncated whether more cases matched than were returned
+     */
+    public record Result(List<String> caseIds, boolean truncated) {
+    }
+
+    /**
+     * Cases matching the term, or empty while the index is being built for the first time
+     */
+    public Optional<Result> search(String term) {
+        if (!ready) {
+            return Optional.empty();
+        }
+        String needle = normalize(term);
+        List<Match> matches = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (String caseId : candidates(needle)) {
+                int rank = rank(entries.get(caseId), needle);
+                if (rank < Integer.MAX_VALUE) {
+                    matches.add(new Match(caseId, rank));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        // Best rank first; among equals newer case IDs first
+        matches.sort(Comparator.comparingInt(Match::rank).thenComparing(Match::caseId, Comparator.reverseOrder()));
+        boolean truncated = matches.size() > maxCandidates;
+        List<String> caseIds = matches.stream().limit(maxCandidates).map(Match::caseId).toList();
+        return Optional.of(new Result(caseIds, truncated));
+    }
+
+    /**
+     * Indexes the case once the current transaction commits, replacing what was indexed for it
+     */
+    public void indexAfterCommit(String caseId, String entityName, String basicNumber, String cisNumber) {
+        Runnable update = () -> put(caseId, entityName, basicNumber, cisNumber);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            update.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                update.run();
+            }
+        });
+    }
+
+    public void put(String caseId, String entityName, String basicNumber, String cisNumber) {
+        String[] fields = fields(caseId, entityName, basicNumber, cisNumber);
+        lock.writeLock().lock();
+        try {
+            index(postings, entries, caseId, fields);
+            if (putsDuringRebuild != null) {
+                putsDuringRebuild.put(caseId, fields);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Rebuilds the index from the database. Searches keep using the old index until the
+     * new one is complete; cases indexed in the meantime are carried over to the new one.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${cases.search-index.rebuild-interval:PT1H}",
+            fixedDelayString = "${cases.search-index.rebuild-interval:PT1H}")
+    public synchronized void rebuild() {
+        long started = System.nanoTime();
+        Instant readFrom = Instant.now();
+        recordPutsDuringRebuild(true);
+        Map<String, Set<String>> newPostings = new HashMap<>();
+        Map<String, String[]> newEntries = new HashMap<>();
+        try {
+            for (Object[] row : caseRepository.findSearchFields()) {
+                String caseId = (String) row[0];
+                index(newPostings, newEntries, caseId, fields(caseId, (String) row[1], (String) row[2], (String) row[3]));
+            }
+        } catch (RuntimeException e) {
+            recordPutsDuringRebuild(false);
+            throw e;
+        }
+        lock.writeLock().lock();
+        try {
+            // Indexed while the database was read, possibly too late to be part of the read
+            putsDuringRebuild.forEach((caseId, fields) -> index(newPostings, newEntries, caseId, fields));
+            putsDuringRebuild = null;
+            postings = newPostings;
+            entries = newEntries;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        indexedUpTo = readFrom;
+        log.info("Indexed {} cases for search ({} trigrams) in {} ms", newEntries.size(), newPostings.size(),
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Re-indexes the cases modified since the last rebuild or refresh, which brings in
+     * changes made by other instances. The window reaches back refresh-overlap further to
+     * cover transactions that committed after their modification time and clock drift
+     * between instances.
+     */
+    @Scheduled(initialDelayString = "${cases.search-index.refresh-interval:PT1M}",
+            fixedDelayString = "${cases.search-index.refresh-interval:PT1M}")
+    public void refresh() {
+        Instant since = indexedUpTo;
+        if (since == null) {
+            return;
+        }
+        Instant readFrom = Instant.now();
+        List<Object[]> rows = caseRepository.findSearchFieldsModifiedSince(since.minus(refreshOverlap));
+        for (Object[] row : rows) {
+            put((String) row[0], (String) row[1], (String) row[2], (String) row[3]);
+        }
+        indexedUpTo = readFrom;
+        log.debug("Refreshed {} recently modified cases in the search index", rows.size());
+    }
+
+    private void recordPutsDuringRebuild(boolean recording) {
+        lock.writeLock().lock();
+        try {
+            putsDuringRebuild = recording ? new LinkedHashMap<>() : null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the case to the maps, replacing what was indexed for it before
+     */
+    private static void index(Map<String, Set<String>> postings, Map<String, String[]> entries,
+                              String caseId, String[] fields) {
+        String[] previous = entries.put(caseId, fields);
+        if (previous != null) {
+            for (String gram : grams(previous)) {
+                Set<String> ids = postings.get(gram);
+                if (ids != null && ids.remove(caseId) && ids.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+        for (String gram : grams(fields)) {
+            postings.computeIfAbsent(gram, g -> new HashSet<>()).add(caseId);
+        }
+    }
+
+    private Set<String> candidates(String needle) {
+        if (needle.length() < GRAM) {
+            return entries.keySet();
+        }
+        List<Set<String>> sets = new ArrayList<>();
+        for (String gram : grams(needle)) {
+            Set<String> ids = postings.get(gram);
+            if (ids == null) {
+                return Collections.emptySet();
+            }
+            sets.add(ids);
+        }
+        // Intersect starting from the rarest trigram
+        sets.sort(Comparator.comparingInt(Set::size));
+        Set<String> result = new HashSet<>(sets.get(0));
+        for (int i = 1; i < sets.size() && !result.isEmpty(); i++) {
+            result.retainAll(sets.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * 0 for a field equal to the term, 1 for a field starting with it, 2 for a word starting
+     * with it, 3 for any other occurrence; MAX_VALUE when no field contains it
+     */
+    private static int rank(String[] fields, String needle) {
+        int best = Integer.MAX_VALUE;
+        for (String field : fields) {
+            int at = field.indexOf(needle);
+            while (at >= 0 && best > 0) {
+                int rank = field.length() == needle.length() ? 0
+                        : at == 0 ? 1
+                        : !Character.isLetterOrDigit(field.charAt(at - 1)) ? 2
+                        : 3;
+                best = Math.min(best, rank);
+                if (rank > 2) {
+                    at = field.indexOf(needle, at + 1);
+                } else {
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+
+    private static String[] fields(String caseId, String entityName, String basicNumber, String cisNumber) {
+        return Arrays.stream(new String[]{caseId, entityName, basicNumber, cisNumber})
+                .filter(field -> field != null && !field.isBlank())
+                .map(CaseSearchIndex::normalize)
+                .toArray(String[]::new);
+    }
+
+    private static Set<String> grams(String... fields) {
+        Set<String> grams = new HashSet<>();
+        for (String field : fields) {
+            for (int i = 0; i + GRAM <= field.length(); i++) {
+                grams.add(field.substring(i, i + GRAM));
+            }
+        }
+        return grams;
+    }
+
+    static String normalize(String text) {
+        return text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private record Match(String caseId, int rank) {
+    }
+}
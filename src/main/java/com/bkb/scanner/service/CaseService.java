@@ -2,13 +2,17 @@ package com.bkb.scanner.service;
 
 import com.bkb.scanner.dto.*;
 import com.bkb.scanner.entity.*;
+import com.bkb.scanner.exception.BadRequestException;
 import com.bkb.scanner.mapper.CaseMapper;
 import com.bkb.scanner.repository.*;
+import com.bkb.scanner.util.SearchCursor;
 import jakarta.persistence.EntityManager;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -16,12 +20,20 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -37,12 +49,20 @@ public class CaseService {
     @Autowired private CaseMapper caseMapper;
     @Autowired private PartyRepository partyRepository;
     @Autowired private EntityManager entityManager;
+    @Autowired private CaseSearchRepository caseSearchRepository;
+    @Autowired private CaseSearchIndex caseSearchIndex;
+    @Autowired private IdSequenceService idSequenceService;
+
+    // sortBy of a search ordered by how well cases match the term
+    private static final String RELEVANCE = "relevance";
+
+    // Estimated totals of filtered searches count this many matches at most
+    @Value("${cases.search.estimate-count-cap:1000}")
+    private int estimateCountCap;
 
     @Transactional(readOnly = true)
-    public List<CaseDto> getAllCases() {
-        return caseRepository.findAll().stream()
-                .map(caseMapper::toDto)
-                .collect(Collectors.toList());
+    public List<CaseSummaryDto> getAllCases() {
+        return caseRepository.findAllSummaries();
     }
 
     @Transactional(readOnly = true)
@@ -56,12 +76,7 @@ public class CaseService {
         Case newCase = new Case();
 
         // Generate meaningful case ID: CASE-YYYYMM-XXXX (e.g., CASE-202501-0042)
-        String yearMonth = java.time.LocalDate.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyyMM"));
-        long caseCount = caseRepository.countByCreatedDateBetween(
-                java.time.LocalDate.now().withDayOfMonth(1).atStartOfDay().toInstant(java.time.ZoneOffset.UTC),
-                java.time.LocalDate.now().plusMonths(1).withDayOfMonth(1).atStartOfDay().toInstant(java.time.ZoneOffset.UTC)
-        ) + 1;
-        String caseId = String.format("CASE-%s-%04d", yearMonth, caseCount);
+        String caseId = idSequenceService.nextCaseId();
         newCase.setCaseId(caseId);
 
         newCase.setStatus(request.getStatus());
@@ -131,6 +146,8 @@ public class CaseService {
         newCase.setEntityData(entityData);
 
         Case savedCase = caseRepository.save(newCase);
+        caseSearchIndex.indexAfterCommit(caseId, entityData.getEntityName(),
+                entityData.getBasicNumber(), entityData.getCisNumber());
 
         // Log the activity with proper user attribution
         ActivityLog log = new ActivityLog();
@@ -322,6 +339,8 @@ public class CaseService {
         }
 
         Case updatedCase = caseRepository.save(caseEntity);
+        caseSearchIndex.indexAfterCommit(caseId, entityData.getEntityName(),
+                entityData.getBasicNumber(), entityData.getCisNumber());
 
         // Log the update activity with proper user attribution
         ActivityLog log = new ActivityLog();
@@ -481,48 +500,263 @@ public class CaseService {
             String riskLevelFilter,
             String statusFilter,
             String sortBy,
-            String sortOrder) {
+            String sortOrder,
+            CasesPageDto.TotalMode totalMode) {
 
         // Parse filters
-        List<String> riskLevels = parseFilter(riskLevelFilter);
-        List<String> statuses = parseFilter(statusFilter);
+        SearchFilter filter = searchFilter(search, parseFilter(riskLevelFilter), parseFilter(statusFilter));
+        if (filter.matchesNothing()) {
+            return casesPage(List.of(), page, limit, totalMode == CasesPageDto.TotalMode.NONE ? null : new Total(0, false),
+                    false, null, filter.riskLevels(), filter.statuses());
+        }
+        if (filter.caseIds() != null && (sortBy == null || RELEVANCE.equals(sortBy))) {
+            return casesByRelevance(page, limit, filter, totalMode);
+        }
 
         // Create pageable with sorting
         Pageable pageable = createPageable(page - 1, limit, sortBy, sortOrder);
 
         // Execute query with filters - using boolean flags for null checks
-        Page<Case> casesPage = caseRepository.findCasesWithFilters(
-                search,
-                !riskLevels.isEmpty(),
-                riskLevels,
-                !statuses.isEmpty(),
-                statuses,
-                pageable
-        );
+        List<CaseSummaryDto> cases;
+        boolean hasNext;
+        Total total;
+        if (totalMode == CasesPageDto.TotalMode.EXACT) {
+            Page<CaseSummaryDto> casesPage = caseRepository.findCaseSummariesWithFilters(
+                    filter.search(), filter.caseIds() != null, filter.caseIdsParameter(),
+                    !filter.riskLevels().isEmpty(), filter.riskLevels(),
+                    !filter.statuses().isEmpty(), filter.statuses(), pageable);
+            cases = casesPage.getContent();
+            hasNext = casesPage.hasNext();
+            total = new Total(casesPage.getTotalElements(), filter.truncated());
+        } else {
+            Slice<CaseSummaryDto> casesSlice = caseRepository.findCaseSummarySliceWithFilters(
+                    filter.search(), filter.caseIds() != null, filter.caseIdsParameter(),
+                    !filter.riskLevels().isEmpty(), filter.riskLevels(),
+                    !filter.statuses().isEmpty(), filter.statuses(), pageable);
+            cases = casesSlice.getContent();
+            hasNext = casesSlice.hasNext();
+            total = totalMode == CasesPageDto.TotalMode.ESTIMATE ? estimateTotal(filter) : null;
+        }
+
+        return casesPage(cases, page, limit, total, hasNext, null, filter.riskLevels(), filter.statuses());
+    }
+
+    /**
+     * Cursor mode of the case search: continues after the last row of the previous page
+     * instead of skipping rows, so deep pages cost the same as the first one. The first
+     * page is requested without a cursor; each page carries the cursor for the next.
+     */
+    @Transactional(readOnly = true)
+    public CasesPageDto getCasesAfterCursor(
+            String cursor,
+            Integer limit,
+            String search,
+            String riskLevelFilter,
+            String statusFilter,
+            String sortBy,
+            String sortOrder,
+            CasesPageDto.TotalMode totalMode) {
+
+        SearchFilter filter = searchFilter(search, parseFilter(riskLevelFilter), parseFilter(statusFilter));
+        String sortField = mapSortField(sortBy);
+        boolean descending = "desc".equalsIgnoreCase(sortOrder);
+
+        SearchCursor after = cursor != null && !cursor.isEmpty() ? SearchCursor.decode(cursor) : null;
+        if (after != null && (!after.getSortBy().equals(sortField) || after.isDescending() != descending)) {
+            throw new BadRequestException("The cursor belongs to a search with a different sort order");
+        }
+        if (filter.matchesNothing()) {
+            return casesPage(List.of(), null, limit, totalMode == CasesPageDto.TotalMode.NONE ? null : new Total(0, false),
+                    false, null, filter.riskLevels(), filter.statuses());
+        }
+
+        // Seek the page's IDs along the sort index, then load only those rows
+        List<String> ids = caseSearchRepository.findIdsAfter(filter.search(), filter.caseIds(),
+                filter.riskLevels(), filter.statuses(), sortField, descending,
+                after != null ? sortKeyParameter(sortField, after.getKey()) : null,
+                after != null ? after.getId() : null,
+                limit + 1);
+        boolean hasNext = ids.size() > limit;
+        List<CaseSummaryDto> cases = summariesInOrder(hasNext ? ids.subList(0, limit) : ids);
+
+        String nextCursor = null;
+        if (hasNext && !cases.isEmpty()) {
+            CaseSummaryDto last = cases.get(cases.size() - 1);
+            nextCursor = new SearchCursor(sortField, descending, sortKey(last, sortField), last.getCaseId()).encode();
+        }
+        Total total = switch (totalMode) {
+            case EXACT -> new Total(caseRepository.countWithFilters(
+                    filter.search(), filter.caseIds() != null, filter.caseIdsParameter(),
+                    !filter.riskLevels().isEmpty(), filter.riskLevels(),
+                    !filter.statuses().isEmpty(), filter.statuses()), filter.truncated());
+            case ESTIMATE -> estimateTotal(filter);
+            case NONE -> null;
+        };
+
+        return casesPage(cases, null, limit, total, hasNext, nextCursor, filter.riskLevels(), filter.statuses());
+    }
+
+    /**
+     * Facet counts of the cases matching the search term, from one grouped query
+     */
+    @Transactional(readOnly = true)
+    public CasesPageDto.Facets getSearchFacets(String search) {
+        SearchFilter filter = searchFilter(search, List.of(), List.of());
+        List<Object[]> rows = filter.matchesNothing() ? List.of()
+                : caseRepository.countFacetsWithFilters(filter.search(), filter.caseIds() != null,
+                        filter.caseIdsParameter(), false, List.of(), false, List.of());
+        return CasesPageDto.Facets.builder()
+                .riskLevel(facet(rows, 0, -1))
+                .status(facet(rows, 1, -1))
+                .workflowStage(facet(rows, 2, -1))
+                .entityType(facet(rows, 3, -1))
+                .assignedTo(facet(rows, 4, 5))
+                .build();
+    }
+
+    /**
+     * Sums the grouped counts by one column, largest count first
+     */
+    private static List<CasesPageDto.FacetCount> facet(List<Object[]> rows, int valueColumn, int labelColumn) {
+        Map<String, CasesPageDto.FacetCount> counts = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            String value = (String) row[valueColumn];
+            CasesPageDto.FacetCount count = counts.computeIfAbsent(value, k ->
+                    new CasesPageDto.FacetCount(value, labelColumn >= 0 ? (String) row[labelColumn] : null, 0));
+            count.setCount(count.getCount() + (Long) row[6]);
+        }
+        List<CasesPageDto.FacetCount> facet = new ArrayList<>(counts.values());
+        facet.sort(Comparator.comparingLong(CasesPageDto.FacetCount::getCount).reversed());
+        return facet;
+    }
 
-        // Convert to DTOs
-        List<CaseDto> caseDtos = casesPage.getContent().stream()
-                .map(caseMapper::toDto)
+    /**
+     * Search results in the index's match order: the risk and status filters are applied to
+     * the candidates in one ID query and the page is cut from what remains
+     */
+    private CasesPageDto casesByRelevance(int page, int limit, SearchFilter filter, CasesPageDto.TotalMode totalMode) {
+        List<String> ranked = filter.caseIds();
+        if (!filter.riskLevels().isEmpty() || !filter.statuses().isEmpty()) {
+            Set<String> kept = new HashSet<>(caseSearchRepository.findIdsAfter(null, ranked,
+                    filter.riskLevels(), filter.statuses(), "caseId", false, null, null, ranked.size()));
+            ranked = ranked.stream().filter(kept::contains).toList();
+        }
+        int from = Math.min((page - 1) * limit, ranked.size());
+        int to = Math.min(from + limit, ranked.size());
+        Total total = totalMode == CasesPageDto.TotalMode.NONE ? null : new Total(ranked.size(), filter.truncated());
+        return casesPage(summariesInOrder(ranked.subList(from, to)), page, limit, total, to < ranked.size(), null,
+                filter.riskLevels(), filter.statuses());
+    }
+
+    /**
+     * List rows of the given cases in the order of the IDs
+     */
+    private List<CaseSummaryDto> summariesInOrder(List<String> caseIds) {
+        Map<String, CaseSummaryDto> summaries = caseIds.isEmpty() ? Map.of()
+                : caseRepository.findSummariesByCaseIds(caseIds).stream()
+                        .collect(Collectors.toMap(CaseDto::getCaseId, Function.identity()));
+        return caseIds.stream()
+                .map(summaries::get)
+                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
+    }
+
+    /**
+     * Resolves the search term through the search index when it is available; until then
+     * the term is matched with LIKE in the database
+     */
+    private SearchFilter searchFilter(String search, List<String> riskLevels, List<String> statuses) {
+        if (search == null || search.isBlank()) {
+            return new SearchFilter(null, null, false, riskLevels, statuses);
+        }
+        return caseSearchIndex.search(search)
+                .map(result -> new SearchFilter(null, result.caseIds(), result.truncated(), riskLevels, statuses))
+                .orElseGet(() -> new SearchFilter(search, null, false, riskLevels, statuses));
+    }
+
+    /**
+     * Case search filters. Either search (a LIKE term) or caseIds (the index's candidates,
+     * best match first) carries the search term; truncated marks a candidate list that
+     * was cut at the index's limit.
+     */
+    private record SearchFilter(String search, List<String> caseIds, boolean truncated,
+                                List<String> riskLevels, List<String> statuses) {
+
+        boolean matchesNothing() {
+            return caseIds != null && caseIds.isEmpty();
+        }
 
-        // Build response
+        List<String> caseIdsParameter() {
+            return caseIds != null ? caseIds : List.of();
+        }
+    }
+
+    private CasesPageDto casesPage(List<CaseSummaryDto> cases, Integer page, Integer limit, Total total,
+                                   boolean hasNext, String nextCursor,
+                                   List<String> riskLevels, List<String> statuses) {
         return CasesPageDto.builder()
-                .data(caseDtos)
+                .data(cases)
                 .pagination(CasesPageDto.PaginationInfo.builder()
                         .page(page)
                         .limit(limit)
-                        .total(casesPage.getTotalElements())
-                        .totalPages(casesPage.getTotalPages())
+                        .total(total != null ? total.value() : null)
+                        .totalPages(total != null ? (int) ((total.value() + limit - 1) / limit) : null)
+                        .totalEstimated(total != null ? total.estimated() : null)
+                        .hasNext(hasNext)
+                        .nextCursor(nextCursor)
                         .build())
                 .meta(CasesPageDto.MetaInfo.builder()
                         .appliedFilters(CasesPageDto.AppliedFilters.builder()
                                 .riskLevel(riskLevels)
                                 .status(statuses)
                                 .build())
+                        .includesDocumentSummary(true)
                         .build())
                 .build();
     }
 
+    /**
+     * Table statistics when nothing is filtered; otherwise an exact count up to the cap,
+     * reported as an estimate of at least the cap beyond it
+     */
+    private Total estimateTotal(SearchFilter filter) {
+        if (filter.search() == null && filter.caseIds() == null
+                && filter.riskLevels().isEmpty() && filter.statuses().isEmpty()) {
+            Optional<Long> rows = caseSearchRepository.estimateTotalRows();
+            if (rows.isPresent()) {
+                return new Total(rows.get(), true);
+            }
+        }
+        long counted = caseSearchRepository.countUpTo(filter.search(), filter.caseIds(),
+                filter.riskLevels(), filter.statuses(), estimateCountCap + 1);
+        return counted > estimateCountCap ? new Total(estimateCountCap, true)
+                : new Total(counted, filter.truncated());
+    }
+
+    private static String sortKey(CaseSummaryDto row, String sortField) {
+        return switch (sortField) {
+            case "entityData.entityName" -> row.getEntity().getEntityName();
+            case "riskLevel" -> row.getRiskLevel();
+            case "status" -> row.getStatus();
+            case "createdDate" -> row.getCreatedDate() != null ? row.getCreatedDate().toString() : null;
+            default -> row.getCaseId();
+        };
+    }
+
+    private static Object sortKeyParameter(String sortField, String key) {
+        if (key == null || !"createdDate".equals(sortField)) {
+            return key;
+        }
+        try {
+            return Instant.parse(key);
+        } catch (DateTimeParseException e) {
+            throw new BadRequestException("Malformed cursor");
+        }
+    }
+
+    private record Total(long value, boolean estimated) {
+    }
+
     private List<String> parseFilter(String filter) {
         if (filter == null || filter.isEmpty()) {
             return new ArrayList<>();
@@ -540,7 +774,11 @@ public class CaseService {
                 : Sort.Direction.ASC;
 
         String sortField = mapSortField(sortBy);
+        // Case ID breaks ties so rows never move between pages
         Sort sort = Sort.by(direction, sortField);
+        if (!"caseId".equals(sortField)) {
+            sort = sort.and(Sort.by(direction, "caseId"));
+        }
 
         return PageRequest.of(page, limit, sort);
     }
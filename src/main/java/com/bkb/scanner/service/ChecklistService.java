@@ -0,0 +1,210 @@
+package com.bkb.scanner.service;
+
+import com.bkb.scanner.dto.ChecklistDocumentDto;
+import com.bkb.scanner.dto.ChecklistDto;
+import com.bkb.scanner.dto.ChecklistSectionDto;
+import com.bkb.scanner.dto.DocumentDto;
+import com.bkb.scanner.dto.DocumentListItem;
+import com.bkb.scanner.dto.DocumentRequirementsDto;
+import com.bkb.scanner.dto.TemplateDocDto;
+import com.bkb.scanner.entity.Case;
+import com.bkb.scanner.entity.CaseEntityData;
+import com.bkb.scanner.entity.Party;
+import com.bkb.scanner.entity.RelatedParty;
+import com.bkb.scanner.exception.NotFoundException;
+import com.bkb.scanner.mapper.DocumentMapper;
+import com.bkb.scanner.repository.CaseRepository;
+import com.bkb.scanner.repository.DocumentRepository;
+import com.bkb.scanner.repository.RelatedPartyRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Builds a case's KYC checklist: the documents its templates require, matched against
+ * the documents on file.
+ *
+ * The case is checked against the entity template of its entity type and the risk-based
+ * template of its risk level; each related party against the individual templates of its
+ * roles in the case. The case, its parties, its documents and the templates are each
+ * read with one query, however many parties and documents the case has.
+ */
+@Service
+public class ChecklistService {
+
+    // Section of documents on file that no template asks for
+    static final String AD_HOC_CATEGORY = "AD_HOC";
+
+    // Statuses in which a document counts as provided
+    private static final Set<String> PROVIDED = Set.of("Submitted", "Verified");
+
+    @Autowired private CaseRepository caseRepository;
+    @Autowired private RelatedPartyRepository relatedPartyRepository;
+    @Autowired private DocumentRepository documentRepository;
+    @Autowired private TemplateService templateService;
+    @Autowired private DocumentMapper documentMapper;
+
+    @Value("${documents.expiring-soon-days:30}")
+    private int expiringSoonDays;
+
+    @Transactional(readOnly = true)
+    public ChecklistDto getChecklist(String caseId) {
+        Case kycCase = caseRepository.findById(caseId)
+                .orElseThrow(() -> new NotFoundException("Case not found with id: " + caseId));
+        List<RelatedParty> relatedParties = relatedPartyRepository.findByCaseIdWithParty(caseId);
+        DocumentRequirementsDto templates = templateService.getDocumentRequirements();
+
+        // owner -> document type -> versions, newest first
+        Map<String, Map<String, List<DocumentListItem>>> documents = documentRepository.findListItemsForCase(caseId)
+                .stream()
+                .sorted(Comparator.comparing(DocumentListItem::getVersion, Comparator.reverseOrder()))
+                .collect(Collectors.groupingBy(item -> ownerKey(item.getOwnerType(), item.getOwnerId()),
+                        Collectors.groupingBy(DocumentListItem::getDocumentType, LinkedHashMap::new,
+                                Collectors.toList())));
+
+        Instant expiringBefore = Instant.now().plus(expiringSoonDays, ChronoUnit.DAYS);
+        List<ChecklistDocumentDto> items = new ArrayList<>();
+        List<ChecklistDocumentDto> expiring = new ArrayList<>();
+
+        CaseEntityData entity = kycCase.getEntityData();
+        List<TemplateDocDto> caseRequirements = new ArrayList<>(
+                requirements(templates.getEntityTemplates(), entity != null ? entity.getEntityType() : null));
+        caseRequirements.addAll(requirements(templates.getRiskBasedDocuments(), kycCase.getRiskLevel()));
+        addOwner("CASE", caseId, entity != null && entity.getEntityName() != null ? entity.getEntityName() : caseId,
+                caseRequirements, documents, expiringBefore, items, expiring);
+
+        // A party with several roles in the case needs the documents of each role once
+        Map<String, Party> parties = new LinkedHashMap<>();
+        Map<String, List<TemplateDocDto>> partyRequirements = new LinkedHashMap<>();
+        for (RelatedParty relatedParty : relatedParties) {
+            Party party = relatedParty.getParty();
+            parties.putIfAbsent(party.getPartyId(), party);
+            partyRequirements.computeIfAbsent(party.getPartyId(), id -> new ArrayList<>())
+                    .addAll(requirements(templates.getIndividualTemplates(), relatedParty.getRelationshipType()));
+        }
+        parties.forEach((partyId, party) -> addOwner("PARTY", partyId, party.getName(),
+                partyRequirements.get(partyId), documents, expiringBefore, items, expiring));
+
+        List<ChecklistDocumentDto> required = items.stream().filter(ChecklistDocumentDto::isRequired).toList();
+        List<ChecklistDocumentDto> missing = required.stream()
+                .filter(item -> !PROVIDED.contains(item.getStatus()))
+                .toList();
+        int percentage = required.isEmpty() ? 100 : (required.size() - missing.size()) * 100 / required.size();
+
+        return ChecklistDto.builder()
+                .checklist(sections(items))
+                .progress(ChecklistDto.ProgressDto.builder()
+                        .percentage(percentage)
+                        .missingDocs(missing)
+                        .expiringDocs(expiring)
+                        .build())
+                .build();
+    }
+
+    /**
+     * Adds an owner's required documents, then the documents it has on file that no
+     * template asks for
+     */
+    private void addOwner(String ownerType, String ownerId, String ownerName, List<TemplateDocDto> requirements,
+                          Map<String, Map<String, List<DocumentListItem>>> documents, Instant expiringBefore,
+                          List<ChecklistDocumentDto> items, List<ChecklistDocumentDto> expiring) {
+        Map<String, TemplateDocDto> byName = new LinkedHashMap<>();
+        for (TemplateDocDto requirement : requirements) {
+            byName.merge(requirement.getName(), requirement,
+                    (kept, other) -> kept.isRequired() || !other.isRequired() ? kept : other);
+        }
+        Map<String, List<DocumentListItem>> onFile = documents.getOrDefault(ownerKey(ownerType, ownerId), Map.of());
+
+        List<ChecklistDocumentDto> owned = new ArrayList<>();
+        byName.forEach((name, requirement) -> owned.add(item(ownerId, ownerName, name, requirement,
+                onFile.getOrDefault(name, List.of()), expiringBefore, expiring)));
+        onFile.forEach((type, versions) -> {
+            if (!byName.containsKey(type)) {
+                owned.add(item(ownerId, ownerName, type, null, versions, expiringBefore, expiring));
+            }
+        });
+        items.addAll(owned);
+    }
+
+    private ChecklistDocumentDto item(String ownerId, String ownerName, String name, TemplateDocDto requirement,
+                                      List<DocumentListItem> versions, Instant expiringBefore,
+                                      List<ChecklistDocumentDto> expiring) {
+        ChecklistDocumentDto.ChecklistDocumentDtoBuilder item = ChecklistDocumentDto.builder()
+                .id(ownerId + ":" + name)
+                .name(name)
+                .ownerId(ownerId)
+                .ownerName(ownerName)
+                .required(requirement != null && requirement.isRequired())
+                .description(requirement != null ? requirement.getDescription() : null)
+                .validityMonths(requirement != null ? requirement.getValidityMonths() : null)
+                .category(requirement != null ? requirement.getCategory() : AD_HOC_CATEGORY)
+                .isAdHoc(requirement == null)
+                .allVersions(versions.stream().map(documentMapper::toDto).toList());
+        if (versions.isEmpty()) {
+            return item.status("Missing").build();
+        }
+
+        DocumentListItem current = versions.stream()
+                .filter(version -> Boolean.TRUE.equals(version.getIsCurrentForCase()))
+                .findFirst()
+                .orElse(versions.get(0));
+        DocumentDto dto = documentMapper.toDto(current);
+        ChecklistDocumentDto built = item
+                .documentId(dto.getId())
+                .status(dto.getStatus())
+                .version(dto.getVersion())
+                .uploadedDate(dto.getUploadedDate())
+                .uploadedBy(dto.getUploadedBy())
+                .verifiedDate(dto.getVerifiedDate())
+                .verifiedBy(dto.getVerifiedBy())
+                .expiryDate(dto.getExpiryDate())
+                .mimeType(dto.getMimeType())
+                .rejectionReason(dto.getRejectionReason())
+                .comments(dto.getComments())
+                .build();
+        // Past-due documents are set to Expired by DocumentExpiryService
+        if (PROVIDED.contains(current.getStatus()) && current.getExpiryDate() != null
+                && current.getExpiryDate().isBefore(expiringBefore)) {
+            expiring.add(built);
+        }
+        return built;
+    }
+
+    /**
+     * Groups the items by requirement category in template order, ad-hoc documents last
+     */
+    private static List<ChecklistSectionDto> sections(List<ChecklistDocumentDto> items) {
+        Map<String, List<ChecklistDocumentDto>> byCategory = items.stream()
+                .sorted(Comparator.comparing(ChecklistDocumentDto::isAdHoc))
+                .collect(Collectors.groupingBy(item -> item.getCategory() != null ? item.getCategory() : AD_HOC_CATEGORY,
+                        LinkedHashMap::new, Collectors.toList()));
+        return byCategory.entrySet().stream()
+                .map(entry -> ChecklistSectionDto.builder()
+                        .category(entry.getKey())
+                        .documents(entry.getValue())
+                        .build())
+                .toList();
+    }
+
+    private static List<TemplateDocDto> requirements(Map<String, List<TemplateDocDto>> templates, String key) {
+        if (templates == null || key == null) {
+            return List.of();
+        }
+        return templates.getOrDefault(key, List.of());
+    }
+
+    private static String ownerKey(String ownerType, String ownerId) {
+        return ownerType + ":" + ownerId;
+    }
+}
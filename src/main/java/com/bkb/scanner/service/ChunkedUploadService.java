@@ -0,0 +1,417 @@
+package com.bkb.scanner.service;
+
+import com.bkb.scanner.dto.DocumentDto;
+import com.bkb.scanner.dto.UploadSessionDto;
+import com.bkb.scanner.dto.UploadSessionRequest;
+import com.bkb.scanner.entity.Document;
+import com.bkb.scanner.entity.UploadSession;
+import com.bkb.scanner.exception.BadRequestException;
+import com.bkb.scanner.exception.ConflictException;
+import com.bkb.scanner.exception.NotFoundException;
+import com.bkb.scanner.repository.CaseRepository;
+import com.bkb.scanner.repository.PartyRepository;
+import com.bkb.scanner.repository.UploadSessionRepository;
+import com.bkb.scanner.storage.ContentInspectingInputStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Resumable chunked uploads for payloads too large, or links too unreliable, for a
+ * single multipart request.
+ *
+ * A session fixes the document metadata and the chunk layout up front. Each chunk is
+ * streamed to its own file under the spool directory, size- and optionally
+ * checksum-verified, and only then renamed into place, so a dropped connection never
+ * leaves a half-written chunk behind and the client simply re-sends the chunks the
+ * session reports as missing. On commit the chunks are streamed in order through the
+ * normal upload path, so nothing is ever buffered on the heap.
+ */
+@Slf4j
+@Service
+public class ChunkedUploadService {
+
+    private static final Pattern CHUNK_FILE = Pattern.compile("chunk-(\\d{6})");
+    private static final Pattern SHA256_PATTERN = Pattern.compile("[0-9a-fA-F]{64}");
+    private static final int MAX_CHUNKS = 10_000;
+
+    @Autowired private UploadSessionRepository uploadSessionRepository;
+    @Autowired private DocumentService documentService;
+    @Autowired private DocumentStorageService documentStorageService;
+    @Autowired private PlatformTransactionManager transactionManager;
+    @Autowired private CaseRepository caseRepository;
+    @Autowired private PartyRepository partyRepository;
+
+    @Value("${storage.upload.spool-dir:./data/upload-sessions}")
+    private String spoolDir;
+
+    @Value("${storage.upload.max-size:500MB}")
+    private DataSize maxUploadSize;
+
+    @Value("${storage.upload.chunk-size:8MB}")
+    private DataSize defaultChunkSize;
+
+    @Value("${storage.upload.max-chunk-size:32MB}")
+    private DataSize maxChunkSize;
+
+    @Value("${storage.upload.session-ttl:PT24H}")
+    private Duration sessionTtl;
+
+    /**
+     * Opens a session for a case or party document and decides the chunk layout
+     */
+    @Transactional
+    public UploadSessionDto createSession(UploadSessionRequest request) {
+        String ownerType = request.getOwnerType() != null ? request.getOwnerType().toUpperCase() : null;
+        String ownerId = request.getOwnerId();
+        if ("CASE".equals(ownerType)) {
+            if (ownerId == null || !caseRepository.existsById(ownerId)) {
+                throw new NotFoundException("Case not found with id: " + ownerId);
+            }
+        } else if ("PARTY".equals(ownerType)) {
+            if (ownerId == null || !partyRepository.existsById(ownerId)) {
+                throw new NotFoundException("Party not found with id: " + ownerId);
+            }
+        } else {
+            throw new BadRequestException("ownerType must be CASE or PARTY");
+        }
+        if (request.getDocumentType() == null || request.getDocumentType().isBlank()) {
+            throw new BadRequestException("documentType is required");
+        }
+        if (request.getTotalSize() == null || request.getTotalSize() <= 0) {
+            throw new BadRequestException("totalSize must be positive");
+        }
+        if (request.getTotalSize() > maxUploadSize.toBytes()) {
+            throw new BadRequestException("totalSize exceeds the maximum upload size of " + maxUploadSize);
+        }
+        if (request.getSha256() != null && !SHA256_PATTERN.matcher(request.getSha256()).matches()) {
+            throw new BadRequestException("sha256 must be 64 hex characters");
+        }
+
+        long requested = request.getChunkSize() != null && request.getChunkSize() > 0
+                ? request.getChunkSize() : defaultChunkSize.toBytes();
+        int chunkSize = (int) Math.min(requested, maxChunkSize.toBytes());
+        long totalChunks = (request.getTotalSize() + chunkSize - 1) / chunkSize;
+        if (totalChunks > MAX_CHUNKS) {
+            throw new BadRequestException("Too many chunks (" + totalChunks + "), use a larger chunkSize");
+        }
+
+        UploadSession session = new UploadSession();
+        session.setSessionId(UUID.randomUUID().toString().replace("-", ""));
+        session.setOwnerType(ownerType);
+        session.setOwnerId(ownerId);
+        session.setDocumentType(request.getDocumentType());
+        session.setOriginalFilename(request.getOriginalFilename());
+        session.setMimeType(request.getMimeType());
+        session.setExpiryDate(request.getExpiryDate());
+        session.setComments(request.getComments());
+        session.setIsAdHoc(request.getIsAdHoc() != null ? request.getIsAdHoc() : false);
+        session.setTotalSize(request.getTotalSize());
+        session.setChunkSize(chunkSize);
+        session.setTotalChunks((int) totalChunks);
+        session.setContentSha256(request.getSha256() != null ? request.getSha256().toLowerCase() : null);
+        session.setExpiresAt(Instant.now().plus(sessionTtl));
+
+        try {
+            Files.createDirectories(sessionDir(session.getSessionId()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create spool directory for upload session", e);
+        }
+        UploadSession saved = uploadSessionRepository.save(session);
+        log.info("Opened upload session {} for {} {} ({} bytes in {} chunks)", saved.getSessionId(),
+                ownerType, ownerId, saved.getTotalSize(), saved.getTotalChunks());
+        return toDto(saved);
+    }
+
+    /**
+     * Current state of a session, including the chunks still missing
+     */
+    public UploadSessionDto getSession(String sessionId) {
+        return toDto(findOwnedSession(sessionId));
+    }
+
+    /**
+     * Spools one chunk to disk. Chunks may arrive in any order and may be re-sent;
+     * a re-sent chunk replaces the earlier copy. When expectedSha256 is given the chunk
+     * is rejected unless its content matches.
+     */
+    public UploadSessionDto putChunk(String sessionId, int index, InputStream content,
+                                     String expectedSha256) throws IOException {
+        UploadSession session = findOwnedSession(sessionId);
+        requireOpen(session);
+        if (index < 0 || index >= session.getTotalChunks()) {
+            throw new BadRequestException("Chunk index must be between 0 and " + (session.getTotalChunks() - 1));
+        }
+        if (expectedSha256 != null && !SHA256_PATTERN.matcher(expectedSha256).matches()) {
+            throw new BadRequestException("Chunk checksum must be 64 hex characters");
+        }
+
+        long expectedSize = expectedChunkSize(session, index);
+        Path dir = sessionDir(sessionId);
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, "chunk-", ".part");
+        try {
+            ContentInspectingInputStream inspected = new ContentInspectingInputStream(content, expectedSize);
+            try {
+                Files.copy(inspected, tmp, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                if (inspected.getCount() > expectedSize) {
+                    throw new BadRequestException("Chunk " + index + " exceeds its expected size of "
+                            + expectedSize + " bytes");
+                }
+                throw e;
+            }
+            if (inspected.getCount() != expectedSize) {
+                throw new BadRequestException("Chunk " + index + " has " + inspected.getCount()
+                        + " bytes, expected " + expectedSize);
+            }
+            if (expectedSha256 != null && !expectedSha256.equalsIgnoreCase(inspected.getSha256())) {
+                throw new BadRequestException("Checksum mismatch for chunk " + index);
+            }
+            moveIntoPlace(tmp, chunkFile(sessionId, index));
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return toDto(session);
+    }
+
+    /**
+     * Assembles the chunks into a new document version. Fails with a conflict while
+     * chunks are missing, in which case the session stays open for them to be sent.
+     * The assembled payload is stored before the transaction that saves the document
+     * and closes the session, so no connection is held while it is written.
+     */
+    public DocumentDto commit(String sessionId) throws IOException {
+        UploadSession session = findOwnedSession(sessionId);
+        requireOpen(session);
+
+        List<Integer> missing = missingChunks(session, receivedChunks(sessionId));
+        if (!missing.isEmpty()) {
+            throw new ConflictException("Upload session " + sessionId + " is missing chunks " + missing);
+        }
+
+        Document document;
+        try (InputStream content = new SequenceInputStream(new ChunkStreams(sessionId, session.getTotalChunks()))) {
+            document = documentService.storeUploadedPayload(session.getOwnerType(), session.getOwnerId(),
+                    session.getDocumentType(), content, session.getOriginalFilename(), session.getMimeType());
+        }
+
+        try {
+            if (session.getContentSha256() != null && !session.getContentSha256().equals(document.getContentSha256())) {
+                throw new BadRequestException("Checksum mismatch for upload session " + sessionId);
+            }
+            return new TransactionTemplate(transactionManager).execute(status -> {
+                // Locked and checked again: a concurrent commit of the same session may have won
+                UploadSession locked = uploadSessionRepository.findByIdForUpdate(sessionId)
+                        .orElseThrow(() -> new NotFoundException("Upload session not found: " + sessionId));
+                requireOpen(locked);
+
+                DocumentDto saved = documentService.saveUploadedDocument(document, locked.getExpiryDate(),
+                        locked.getComments(), locked.getIsAdHoc());
+                locked.setStatus(UploadSession.STATUS_COMMITTED);
+                locked.setDocumentId(saved.getId());
+                deleteSpoolAfterCommit(sessionId);
+                log.info("Committed upload session {} as document {}", sessionId, saved.getId());
+                return saved;
+            });
+        } catch (RuntimeException e) {
+            documentStorageService.releaseStored(document);
+            throw e;
+        }
+    }
+
+    /**
+     * Abandons a session and removes its spooled chunks
+     */
+    @Transactional
+    public void abort(String sessionId) {
+        UploadSession session = findOwnedSession(sessionId);
+        uploadSessionRepository.delete(session);
+        deleteSpoolAfterCommit(sessionId);
+    }
+
+    /**
+     * Removes sessions past their expiry together with any chunks they still hold
+     */
+    @Scheduled(fixedDelayString = "${storage.upload.session-cleanup-interval:PT1H}")
+    @Transactional
+    public void cleanupExpiredSessions() {
+        List<UploadSession> expired = uploadSessionRepository.findByExpiresAtBefore(Instant.now());
+        if (expired.isEmpty()) {
+            return;
+        }
+        uploadSessionRepository.deleteAll(expired);
+        expired.forEach(session -> deleteSpoolAfterCommit(session.getSessionId()));
+        log.info("Removed {} expired upload sessions", expired.size());
+    }
+
+    private UploadSession findOwnedSession(String sessionId) {
+        return uploadSessionRepository.findById(sessionId)
+                .filter(this::isOwnedByCurrentUser)
+                .orElseThrow(() -> new NotFoundException("Upload session not found: " + sessionId));
+    }
+
+    private boolean isOwnedByCurrentUser(UploadSession session) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.getName().equals(session.getCreatedBy());
+    }
+
+    private void requireOpen(UploadSession session) {
+        if (!UploadSession.STATUS_OPEN.equals(session.getStatus())) {
+            throw new ConflictException("Upload session " + session.getSessionId()
+                    + " was already committed as document " + session.getDocumentId());
+        }
+        if (session.getExpiresAt().isBefore(Instant.now())) {
+            throw new ConflictException("Upload session " + session.getSessionId() + " has expired");
+        }
+    }
+
+    private long expectedChunkSize(UploadSession session, int index) {
+        if (index < session.getTotalChunks() - 1) {
+            return session.getChunkSize();
+        }
+        return session.getTotalSize() - (long) session.getChunkSize() * (session.getTotalChunks() - 1);
+    }
+
+    private List<Integer> receivedChunks(String sessionId) {
+        Path dir = sessionDir(sessionId);
+        if (!Files.isDirectory(dir)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(file -> CHUNK_FILE.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> Integer.parseInt(matcher.group(1)))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list chunks of upload session " + sessionId, e);
+        }
+    }
+
+    private List<Integer> missingChunks(UploadSession session, List<Integer> received) {
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < session.getTotalChunks(); i++) {
+            if (!received.contains(i)) {
+                missing.add(i);
+            }
+        }
+        return missing;
+    }
+
+    private UploadSessionDto toDto(UploadSession session) {
+        List<Integer> received = UploadSession.STATUS_OPEN.equals(session.getStatus())
+                ? receivedChunks(session.getSessionId()) : List.of();
+        return UploadSessionDto.builder()
+                .sessionId(session.getSessionId())
+                .status(session.getStatus())
+                .totalSize(session.getTotalSize())
+                .chunkSize(session.getChunkSize())
+                .totalChunks(session.getTotalChunks())
+                .receivedChunks(received)
+                .missingChunks(UploadSession.STATUS_OPEN.equals(session.getStatus())
+                        ? missingChunks(session, received) : List.of())
+                .expiresAt(DateTimeFormatter.ISO_INSTANT.format(session.getExpiresAt()))
+                .documentId(session.getDocumentId())
+                .build();
+    }
+
+    private Path sessionDir(String sessionId) {
+        return Paths.get(spoolDir).toAbsolutePath().normalize().resolve(sessionId);
+    }
+
+    private Path chunkFile(String sessionId, int index) {
+        return sessionDir(sessionId).resolve(String.format("chunk-%06d", index));
+    }
+
+    private void moveIntoPlace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void deleteSpoolAfterCommit(String sessionId) {
+        Runnable delete = () -> {
+            try {
+                FileSystemUtils.deleteRecursively(sessionDir(sessionId));
+            } catch (IOException e) {
+                log.warn("Failed to remove spooled chunks of upload session {}", sessionId, e);
+            }
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            delete.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                delete.run();
+            }
+        });
+    }
+
+    /**
+     * Opens chunk files one at a time as the assembled stream reaches them
+     */
+    private class ChunkStreams implements Enumeration<InputStream> {
+        private final String sessionId;
+        private final int totalChunks;
+        private int next;
+
+        ChunkStreams(String sessionId, int totalChunks) {
+            this.sessionId = sessionId;
+            this.totalChunks = totalChunks;
+        }
+
+        @Override
+        public boolean hasMoreElements() {
+            return next < totalChunks;
+        }
+
+        @Override
+        public InputStream nextElement() {
+            if (!hasMoreElements()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                return Files.newInputStream(chunkFile(sessionId, next++));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
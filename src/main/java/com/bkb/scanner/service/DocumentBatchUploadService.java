@@ -0,0 +1,239 @@
+package com.bkb.scanner.service;
+
+import com.bkb.scanner.dto.BatchUploadItem;
+import com.bkb.scanner.dto.BatchUploadResultDto;
+import com.bkb.scanner.entity.Case;
+import com.bkb.scanner.entity.Document;
+import com.bkb.scanner.entity.Party;
+import com.bkb.scanner.entity.User;
+import com.bkb.scanner.exception.BadRequestException;
+import com.bkb.scanner.exception.NotFoundException;
+import com.bkb.scanner.mapper.DocumentMapper;
+import com.bkb.scanner.repository.CaseRepository;
+import com.bkb.scanner.repository.DocumentBatchRepository;
+import com.bkb.scanner.repository.DocumentRepository;
+import com.bkb.scanner.repository.PartyRepository;
+import com.bkb.scanner.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Uploads many documents for one owner in a single request.
+ *
+ * All payloads are stored before a transaction is opened, so no connection is held while
+ * the files are written. The metadata is then saved in one short transaction: the owner
+ * and the uploading user are resolved once, versions are reserved with one
+ * counter update per document type, current flags are cleared with one statement per
+ * type and all rows are inserted with a single JDBC batch. A file whose payload cannot
+ * be stored is reported as failed without affecting the others; a database failure
+ * rolls back the whole batch and releases its stored payloads.
+ */
+@Slf4j
+@Service
+public class DocumentBatchUploadService {
+
+    private static final int MAX_FILES = 50;
+
+    @Autowired private CaseRepository caseRepository;
+    @Autowired private PartyRepository partyRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private DocumentRepository documentRepository;
+    @Autowired private DocumentBatchRepository documentBatchRepository;
+    @Autowired private DocumentStorageService documentStorageService;
+    @Autowired private DocumentVersionService documentVersionService;
+    @Autowired private DocumentMapper documentMapper;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    @Transactional(propagation = Propagation.NEVER)
+    public BatchUploadResultDto uploadForCase(String caseId, List<MultipartFile> files, List<BatchUploadItem> items) {
+        return upload("CASE", caseId, files, items);
+    }
+
+    @Transactional(propagation = Propagation.NEVER)
+    public BatchUploadResultDto uploadForParty(String partyId, List<MultipartFile> files, List<BatchUploadItem> items) {
+        return upload("PARTY", partyId, files, items);
+    }
+
+    private BatchUploadResultDto upload(String ownerType, String ownerId, List<MultipartFile> files,
+                                        List<BatchUploadItem> items) {
+        if (files == null || files.isEmpty()) {
+            throw new BadRequestException("No files to upload");
+        }
+        if (files.size() > MAX_FILES) {
+            throw new BadRequestException("At most " + MAX_FILES + " files can be uploaded at once");
+        }
+        if (items == null || items.size() != files.size()) {
+            throw new BadRequestException("Expected metadata for each of the " + files.size() + " files");
+        }
+
+        // Store the payloads first, outside any transaction; a file that fails here is reported and skipped
+        List<BatchUploadResultDto.FileResult> results = new ArrayList<>();
+        Map<Integer, Document> stored = new LinkedHashMap<>();
+        for (int i = 0; i < files.size(); i++) {
+            MultipartFile file = files.get(i);
+            BatchUploadItem item = items.get(i);
+            BatchUploadResultDto.FileResult result = BatchUploadResultDto.FileResult.builder()
+                    .index(i)
+                    .originalFilename(file.getOriginalFilename())
+                    .documentType(item.getDocumentType())
+                    .build();
+            results.add(result);
+
+            if (item.getDocumentType() == null || item.getDocumentType().isBlank()) {
+                result.setError("documentType is required");
+                continue;
+            }
+
+            Document document = new Document();
+            document.setOwnerType(ownerType);
+            document.setOwnerId(ownerId);
+            document.setName(item.getDocumentType());
+            document.setDocumentType(item.getDocumentType());
+            document.setOriginalFilename(file.getOriginalFilename());
+            document.setMimeType(file.getContentType());
+            try (InputStream content = file.getInputStream()) {
+                documentStorageService.store(document, content);
+                stored.put(i, document);
+            } catch (Exception e) {
+                log.warn("Batch upload of {} for {} {} failed: {}", file.getOriginalFilename(), ownerType, ownerId,
+                        e.getMessage());
+                result.setError("Failed to store file: " + e.getMessage());
+            }
+        }
+
+        try {
+            if (!stored.isEmpty()) {
+                documentVersionService.createMissingCounters(ownerType, ownerId,
+                        stored.values().stream().map(Document::getDocumentType).distinct().toList());
+            }
+            new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                    saveStored(ownerType, ownerId, stored, items, results));
+        } catch (RuntimeException e) {
+            stored.values().forEach(documentStorageService::releaseStored);
+            throw e;
+        }
+        log.info("Batch uploaded {} of {} documents for {} {}", stored.size(), files.size(), ownerType, ownerId);
+
+        return BatchUploadResultDto.builder()
+                .total(files.size())
+                .succeeded(stored.size())
+                .failed(files.size() - stored.size())
+                .results(results)
+                .build();
+    }
+
+    /**
+     * Writes the metadata of the stored payloads in the upload's only transaction.
+     */
+    private void saveStored(String ownerType, String ownerId, Map<Integer, Document> stored,
+                            List<BatchUploadItem> items, List<BatchUploadResultDto.FileResult> results) {
+        Case ownerCase = null;
+        Party ownerParty = null;
+        if ("CASE".equals(ownerType)) {
+            ownerCase = caseRepository.findById(ownerId)
+                    .orElseThrow(() -> new NotFoundException("Case not found with id: " + ownerId));
+        } else {
+            ownerParty = partyRepository.findById(ownerId)
+                    .orElseThrow(() -> new NotFoundException("Party not found with id: " + ownerId));
+        }
+        User currentUser = getCurrentUser();
+
+        for (Map.Entry<Integer, Document> entry : stored.entrySet()) {
+            BatchUploadItem item = items.get(entry.getKey());
+            Document document = entry.getValue();
+            document.setOwnerCase(ownerCase);
+            document.setOwnerParty(ownerParty);
+            document.setStatus("Submitted");
+            document.setUploadedByUser(currentUser);
+            document.setIsAdHoc(item.getIsAdHoc() != null ? item.getIsAdHoc() : false);
+            document.setExpiryDate(parseExpiryDate(item.getExpiryDate()));
+            if (item.getComments() != null && !item.getComments().trim().isEmpty()) {
+                document.setComments(item.getComments());
+            }
+        }
+
+        saveAll(ownerType, ownerId, new ArrayList<>(stored.values()), currentUser.getUsername(), false);
+
+        stored.forEach((index, document) -> {
+            BatchUploadResultDto.FileResult result = results.get(index);
+            result.setSuccess(true);
+            result.setDocument(documentMapper.toDto(document));
+        });
+    }
+
+    /**
+     * Assigns the next versions of each document type and writes all documents with one
+     * batch insert. Versions are reserved with one counter update per type, in a stable
+     * order so concurrent batches lock the counters alike, and the current flags of each
+     * type are cleared with one statement. With makeCurrent the newest document of each
+     * type becomes the current one. Must run inside the caller's transaction.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void saveAll(String ownerType, String ownerId, List<Document> documents, String username,
+                        boolean makeCurrent) {
+        Instant now = Instant.now();
+        Map<String, List<Document>> byType = new TreeMap<>();
+        documents.forEach(document ->
+                byType.computeIfAbsent(document.getDocumentType(), type -> new ArrayList<>()).add(document));
+        byType.forEach((documentType, ofType) -> {
+            int version = documentVersionService.allocateVersions(ownerType, ownerId, documentType, ofType.size());
+            for (Document document : ofType) {
+                document.setVersion(version++);
+                document.setIsCurrentForCase(false);
+            }
+            if (makeCurrent) {
+                ofType.get(ofType.size() - 1).setIsCurrentForCase(true);
+            }
+            documentRepository.clearCurrentVersion(ownerType, ownerId, documentType);
+        });
+
+        // The JDBC insert bypasses the JPA auditing listener
+        for (Document document : documents) {
+            document.setCreatedBy(username);
+            document.setCreatedDate(now);
+            document.setLastModifiedBy(username);
+            document.setLastModifiedDate(now);
+        }
+        documentBatchRepository.insertAll(documents);
+    }
+
+    private Instant parseExpiryDate(String expiryDate) {
+        if (expiryDate == null || expiryDate.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return Instant.parse(expiryDate + "T00:00:00Z");
+        } catch (DateTimeParseException e) {
+            log.warn("Failed to parse expiry date: {}", expiryDate);
+            return null;
+        }
+    }
+
+    private User getCurrentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated() &&
+                !"anonymousUser".equals(authentication.getPrincipal())) {
+            String username = authentication.getName();
+            return userRepository.findByUsername(username)
+                    .orElseThrow(() -> new RuntimeException("User not found: " + username));
+        }
+        throw new RuntimeException("No authenticated user found");
+    }
+}
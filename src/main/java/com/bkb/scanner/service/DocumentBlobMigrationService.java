@@ -0,0 +1,86 @@
+package com.bkb.scanner.service;
+
+import com.bkb.scanner.entity.Document;
+import com.bkb.scanner.repository.DocumentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Moves legacy inline document payloads (csob_documents.content) into the BlobStore.
+ * Each batch runs in its own transaction so a long migration never holds a large
+ * transaction open and can be stopped and resumed at any point.
+ * Note that MySQL only returns the freed space after OPTIMIZE TABLE csob_documents.
+ */
+@Slf4j
+@Service
+public class DocumentBlobMigrationService {
+
+    @Autowired private DocumentRepository documentRepository;
+    @Autowired private DocumentStorageService documentStorageService;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    @Value("${storage.migration.batch-size:50}")
+    private int defaultBatchSize;
+
+    @Value("${storage.migration.run-on-startup:false}")
+    private boolean runOnStartup;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateOnStartup() {
+        if (runOnStartup) {
+            migrateAll(defaultBatchSize);
+        }
+    }
+
+    /**
+     * Migrates batches until no inline payloads remain. Returns the number of documents moved.
+     */
+    public int migrateAll(Integer batchSize) {
+        int size = batchSize != null && batchSize > 0 ? batchSize : defaultBatchSize;
+        int total = 0;
+        int migrated;
+        do {
+            migrated = migrateBatch(size);
+            total += migrated;
+        } while (migrated > 0);
+
+        log.info("Blob migration finished, {} documents moved out of csob_documents", total);
+        return total;
+    }
+
+    /**
+     * Migrates a single batch in its own transaction and returns how many documents were moved.
+     */
+    public int migrateBatch(int batchSize) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Integer migrated = tx.execute(status -> {
+            List<Long> ids = documentRepository.findIdsWithInlineContent(PageRequest.of(0, batchSize));
+            for (Long id : ids) {
+                Document document = documentRepository.findById(id).orElseThrow();
+                try {
+                    documentStorageService.store(document, new ByteArrayInputStream(document.getContent()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to migrate content of document " + id, e);
+                }
+            }
+            return ids.size();
+        });
+
+        if (migrated != null && migrated > 0) {
+            log.debug("Moved {} document payloads to blob storage", migrated);
+        }
+        return migrated != null ? migrated : 0;
+    }
+}
@@ -0,0 +1,124 @@
+package com.bkb.scanner.service;
+
+import com.bkb.scanner.entity.ActivityLog;
+import com.bkb.scanner.entity.Case;
+import com.bkb.scanner.repository.ActivityLogRepository;
+import com.bkb.scanner.repository.CaseRepository;
+import com.bkb.scanner.repository.DocumentRepository;
+import com.bkb.scanner.repository.RelatedPartyRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Sets documents past their expiry date to Expired.
+ * Due documents are found through the (status, expiry_date) index and updated in bounded
+ * batches, each in its own transaction. Every case with expired documents, directly or
+ * through one of its related parties, gets one activity log per sweep.
+ */
+@Slf4j
+@Service
+public class DocumentExpiryService {
+
+    static final String ACTIVITY_TYPE = "DOCUMENTS_EXPIRED";
+
+    // Statuses that turn into Expired; Missing and Rejected documents keep theirs
+    private static final List<String> EXPIRING_STATUSES = List.of("Submitted", "Verified");
+
+    @Autowired private DocumentRepository documentRepository;
+    @Autowired private RelatedPartyRepository relatedPartyRepository;
+    @Autowired private CaseRepository caseRepository;
+    @Autowired private ActivityLogRepository activityLogRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    @Value("${documents.expiry-sweep.batch-size:500}")
+    private int batchSize;
+
+    @Scheduled(fixedDelayString = "${documents.expiry-sweep.interval:PT1H}",
+            initialDelayString = "${documents.expiry-sweep.initial-delay:PT1M}")
+    public void sweep() {
+        expireDueDocuments(Instant.now());
+    }
+
+    /**
+     * Expires every document due at the given time and returns how many were expired
+     */
+    public int expireDueDocuments(Instant now) {
+        // ownerType -> ownerId -> expired document types
+        Map<String, Map<String, List<String>>> expired = new TreeMap<>();
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        int total = 0;
+        int selected;
+        do {
+            int[] counts = tx.execute(status -> {
+                List<Long> ids = documentRepository.findIdsDueForExpiry(EXPIRING_STATUSES, now,
+                        PageRequest.of(0, batchSize));
+                if (ids.isEmpty()) {
+                    return new int[]{0, 0};
+                }
+                int updated = documentRepository.markExpired(ids, EXPIRING_STATUSES, now);
+                for (Object[] row : documentRepository.findOwnersOfExpired(ids)) {
+                    expired.computeIfAbsent((String) row[0], type -> new TreeMap<>())
+                            .computeIfAbsent((String) row[1], id -> new ArrayList<>())
+                            .add((String) row[2]);
+                }
+                return new int[]{ids.size(), updated};
+            });
+            selected = counts[0];
+            total += counts[1];
+        } while (selected == batchSize);
+
+        if (total > 0) {
+            tx.executeWithoutResult(status -> logPerCase(expired));
+            log.info("Expired {} documents", total);
+        }
+        return total;
+    }
+
+    private void logPerCase(Map<String, Map<String, List<String>>> expired) {
+        Map<String, List<String>> details = new TreeMap<>();
+        expired.getOrDefault("CASE", Map.of()).forEach((caseId, types) ->
+                details.computeIfAbsent(caseId, id -> new ArrayList<>()).addAll(types));
+
+        Map<String, List<String>> byParty = expired.getOrDefault("PARTY", Map.of());
+        if (!byParty.isEmpty()) {
+            for (Object[] row : relatedPartyRepository.findCaseIdsByPartyIds(byParty.keySet())) {
+                String partyId = (String) row[0];
+                details.computeIfAbsent((String) row[1], id -> new ArrayList<>())
+                        .addAll(byParty.get(partyId).stream().map(type -> type + " of party " + partyId).toList());
+            }
+        }
+
+        // Documents may carry the ID of a case that no longer exists
+        Set<String> existing = caseRepository.findAllById(details.keySet()).stream()
+                .map(Case::getCaseId)
+                .collect(Collectors.toSet());
+        List<ActivityLog> logs = new ArrayList<>();
+        details.forEach((caseId, types) -> {
+            if (!existing.contains(caseId)) {
+                return;
+            }
+            ActivityLog activity = new ActivityLog();
+            activity.setType(ACTIVITY_TYPE);
+            activity.setDetails(types.size() + (types.size() == 1 ? " document" : " documents")
+                    + " expired: " + String.join(", ", types));
+            activity.setOwnerCase(caseRepository.getReferenceById(caseId));
+            activity.setCreatedBy("SYSTEM");
+            logs.add(activity);
+        });
+        activityLogRepository.saveAll(logs);
+    }
+}
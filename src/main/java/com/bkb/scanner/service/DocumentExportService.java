@@ -0,0 +1,196 @@
+package com.bkb.scanner.service;
+
+import com.bkb.scanner.dto.DocumentContentRef;
+import com.bkb.scanner.dto.DocumentExportManifest;
+import com.bkb.scanner.dto.DocumentListItem;
+import com.bkb.scanner.exception.NotFoundException;
+import com.bkb.scanner.repository.CaseRepository;
+import com.bkb.scanner.repository.DocumentRepository;
+import com.bkb.scanner.storage.CompressionPolicy;
+import com.bkb.scanner.storage.ContentCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams a case's document pack as a ZIP.
+ *
+ * Entries are copied from storage straight into the response one at a time, so memory
+ * use does not depend on the size of the pack. Payloads that are already compressed
+ * (PDF, images) are stored without recompression; only compressible types are deflated.
+ * No database transaction is held while the archive is written.
+ */
+@Slf4j
+@Service
+public class DocumentExportService {
+
+    static final String MANIFEST_NAME = "manifest.json";
+
+    @Autowired private DocumentRepository documentRepository;
+    @Autowired private CaseRepository caseRepository;
+    @Autowired private DocumentService documentService;
+    @Autowired private CompressionPolicy compressionPolicy;
+    @Autowired private ObjectMapper objectMapper;
+
+    /**
+     * Resolves what to export before anything is written to the response,
+     * so a missing case can still be answered with a 404
+     */
+    public ExportPlan planCaseExport(String caseId, boolean includeHistory) {
+        if (!caseRepository.existsById(caseId)) {
+            throw new NotFoundException("Case not found with id: " + caseId);
+        }
+
+        List<DocumentListItem> items = documentRepository.findListItemsForCase(caseId).stream()
+                .filter(item -> includeHistory || Boolean.TRUE.equals(item.getIsCurrentForCase()))
+                .sorted(Comparator.comparing(DocumentListItem::getOwnerType)
+                        .thenComparing(DocumentListItem::getOwnerId)
+                        .thenComparing(DocumentListItem::getDocumentType)
+                        .thenComparing(DocumentListItem::getVersion, Comparator.reverseOrder()))
+                .collect(Collectors.toList());
+        Map<Long, DocumentContentRef> refs = documentRepository.findContentRefsForCase(caseId).stream()
+                .collect(Collectors.toMap(DocumentContentRef::getId, Function.identity()));
+
+        return new ExportPlan(caseId, includeHistory, items, refs);
+    }
+
+    /**
+     * Writes the ZIP to the given stream. A payload that cannot be opened is left
+     * out and reported in the manifest instead of failing the whole export.
+     */
+    public void writeZip(ExportPlan plan, boolean includeManifest, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        List<DocumentExportManifest.Entry> entries = new ArrayList<>();
+
+        for (DocumentListItem item : plan.getItems()) {
+            DocumentExportManifest.Entry entry = manifestEntry(item);
+            entries.add(entry);
+
+            DocumentContentRef ref = plan.getRefs().get(item.getId());
+            InputStream content;
+            try {
+                content = documentService.openContent(ref);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Skipping document {} in export of case {}: {}", item.getId(), plan.getCaseId(), e.getMessage());
+                entry.setError("Content unavailable");
+                continue;
+            }
+
+            try (content) {
+                String path = entryPath(item);
+                ZipEntry zipEntry = new ZipEntry(path);
+                if (item.getUploadedDate() != null) {
+                    zipEntry.setLastModifiedTime(FileTime.from(item.getUploadedDate()));
+                }
+                zip.setLevel(compressionPolicy.codecFor(item.getMimeType()) == ContentCodec.DEFLATE
+                        ? Deflater.BEST_SPEED : Deflater.NO_COMPRESSION);
+                zip.putNextEntry(zipEntry);
+                content.transferTo(zip);
+                zip.closeEntry();
+                entry.setPath(path);
+            }
+        }
+
+        if (includeManifest) {
+            DocumentExportManifest manifest = DocumentExportManifest.builder()
+                    .caseId(plan.getCaseId())
+                    .exportedAt(DateTimeFormatter.ISO_INSTANT.format(Instant.now()))
+                    .exportedBy(currentUsername())
+                    .includesHistory(plan.isIncludeHistory())
+                    .documentCount((int) entries.stream().filter(e -> e.getPath() != null).count())
+                    .entries(entries)
+                    .build();
+            zip.setLevel(Deflater.BEST_SPEED);
+            zip.putNextEntry(new ZipEntry(MANIFEST_NAME));
+            zip.write(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(manifest));
+            zip.closeEntry();
+        }
+        zip.finish();
+        zip.flush();
+    }
+
+    private DocumentExportManifest.Entry manifestEntry(DocumentListItem item) {
+        return DocumentExportManifest.Entry.builder()
+                .documentId(item.getId())
+                .ownerType(item.getOwnerType())
+                .ownerId(item.getOwnerId())
+                .documentType(item.getDocumentType())
+                .version(item.getVersion())
+                .status(item.getStatus())
+                .isCurrentForCase(item.getIsCurrentForCase())
+                .originalFilename(item.getOriginalFilename())
+                .mimeType(item.getMimeType())
+                .sizeInBytes(item.getSizeInBytes())
+                .sha256(item.getContentSha256())
+                .uploadedBy(item.getUploadedByName())
+                .uploadedDate(format(item.getUploadedDate()))
+                .expiryDate(format(item.getExpiryDate()))
+                .build();
+    }
+
+    /**
+     * case/Passport/v3_passport.pdf or parties/PTY-001/Passport/v1_passport.pdf
+     */
+    static String entryPath(DocumentListItem item) {
+        String folder = "PARTY".equals(item.getOwnerType())
+                ? "parties/" + sanitize(item.getOwnerId()) + "/"
+                : "case/";
+        String filename = item.getOriginalFilename() != null && !item.getOriginalFilename().isBlank()
+                ? item.getOriginalFilename()
+                : "document-" + item.getId();
+        return folder + sanitize(item.getDocumentType()) + "/v" + item.getVersion() + "_" + sanitize(filename);
+    }
+
+    private static String sanitize(String name) {
+        String cleaned = name.replaceAll("[^A-Za-z0-9._ -]", "_").replace("..", "_").trim();
+        return cleaned.isEmpty() ? "_" : cleaned;
+    }
+
+    private static String format(Instant instant) {
+        return instant != null ? DateTimeFormatter.ISO_INSTANT.format(instant) : null;
+    }
+
+    private String currentUsername() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null ? authentication.getName() : null;
+    }
+
+    /**
+     * The documents of one export, resolved up front
+     */
+    @Getter
+    public static class ExportPlan {
+        private final String caseId;
+        private final boolean includeHistory;
+        private final List<DocumentListItem> items;
+        private final Map<Long, DocumentContentRef> refs;
+
+        ExportPlan(String caseId, boolean includeHistory, List<DocumentListItem> items,
+                   Map<Long, DocumentContentRef> refs) {
+            this.caseId = caseId;
+            this.includeHistory = includeHistory;
+            this.items = items;
+            this.refs = refs;
+        }
+    }
+}
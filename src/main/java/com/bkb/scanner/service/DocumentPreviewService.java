@@ -0,0 +1,298 @@
+package com.bkb.scanner.service;
+
+import com.bkb.scanner.dto.DocumentContentRef;
+import com.bkb.scanner.storage.BlobStore;
+import com.bkb.scanner.storage.ContentCodec;
+import com.bkb.scanner.storage.PreviewSize;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Thumbnails and first-page previews of PDF and image documents, as JPEG.
+ *
+ * Previews are rendered in the background once an upload or scan has committed and are
+ * stored in the blob store beside the payload. Reads are served from an in-memory LRU
+ * cache bounded by bytes. A preview that is requested before the background job got to
+ * it is rendered on the spot; concurrent requests for the same payload share one render.
+ */
+@Slf4j
+@Service
+public class DocumentPreviewService {
+
+    private static final String PDF = "application/pdf";
+    private static final float JPEG_QUALITY = 0.8f;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    @Qualifier("previewExecutor")
+    private ExecutorService previewExecutor;
+
+    private final PreviewCache cache;
+    private final Map<String, CompletableFuture<Void>> rendering = new ConcurrentHashMap<>();
+
+    public DocumentPreviewService(@Value("${preview.cache.max-size:64MB}") DataSize cacheMaxSize) {
+        this.cache = new PreviewCache(cacheMaxSize.toBytes());
+    }
+
+    public static boolean supports(String mimeType) {
+        if (mimeType == null) {
+            return false;
+        }
+        return PDF.equals(mimeType)
+                || mimeType.startsWith("image/") && ImageIO.getImageReadersByMIMEType(mimeType).hasNext();
+    }
+
+    /**
+     * Queues rendering of the payload's previews for after the current transaction commits.
+     * Never waits: when the queue is full the previews are rendered on first request instead.
+     */
+    public void generateAfterCommit(String storageKey, String contentEncoding, String mimeType) {
+        if (storageKey == null || !supports(mimeType)) {
+            return;
+        }
+        Runnable submit = () -> {
+            try {
+                previewExecutor.execute(() -> {
+                    try {
+                        ensureRendered(storageKey, contentEncoding, mimeType);
+                    } catch (IOException | RuntimeException e) {
+                        log.warn("Could not render previews of blob {}: {}", storageKey, e.getMessage());
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                log.debug("Preview queue full, blob {} is rendered on first request", storageKey);
+            }
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            submit.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                submit.run();
+            }
+        });
+    }
+
+    /**
+     * The preview as JPEG, or empty when the document has none (unsupported type, legacy
+     * inline content, or a file that cannot be rendered)
+     */
+    public Optional<byte[]> getPreview(DocumentContentRef ref, PreviewSize size) throws IOException {
+        if (ref.getStorageKey() == null || !supports(ref.getMimeType())) {
+            return Optional.empty();
+        }
+        String key = size.key(ref.getStorageKey());
+        byte[] cached = cache.get(key);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        if (!blobStore.exists(key)) {
+            try {
+                ensureRendered(ref.getStorageKey(), ref.getContentEncoding(), ref.getMimeType());
+            } catch (IOException e) {
+                log.warn("Could not render preview of document {}: {}", ref.getId(), e.getMessage());
+                return Optional.empty();
+            }
+        }
+        byte[] bytes;
+        try (InputStream content = blobStore.open(key)) {
+            bytes = content.readAllBytes();
+        }
+        cache.put(key, bytes);
+        return Optional.of(bytes);
+    }
+
+    /**
+     * Removes the previews of a payload that has been deleted
+     */
+    public void delete(String storageKey) {
+        for (PreviewSize size : PreviewSize.values()) {
+            String key = size.key(storageKey);
+            cache.remove(key);
+            try {
+                blobStore.delete(key);
+            } catch (IOException e) {
+                log.warn("Failed to remove preview {}", key, e);
+            }
+        }
+    }
+
+    private void ensureRendered(String storageKey, String contentEncoding, String mimeType) throws IOException {
+        CompletableFuture<Void> mine = new CompletableFuture<>();
+        CompletableFuture<Void> running = rendering.putIfAbsent(storageKey, mine);
+        if (running != null) {
+            try {
+                running.join();
+                return;
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause().getMessage(), e.getCause());
+            }
+        }
+        try {
+            // Payloads are shared, so another document may have rendered them already
+            if (!Arrays.stream(PreviewSize.values()).allMatch(size -> blobStore.exists(size.key(storageKey)))) {
+                render(storageKey, contentEncoding, mimeType);
+            }
+            mine.complete(null);
+        } catch (IOException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            rendering.remove(storageKey, mine);
+        }
+    }
+
+    private void render(String storageKey, String contentEncoding, String mimeType) throws IOException {
+        long started = System.nanoTime();
+        BufferedImage image = PDF.equals(mimeType)
+                ? renderFirstPage(storageKey, contentEncoding)
+                : readImage(storageKey, contentEncoding);
+        if (image.getColorModel().hasAlpha()) {
+            image = onWhite(image);
+        }
+        for (PreviewSize size : PreviewSize.values()) {
+            image = fit(image, size.getMaxPixels());
+            blobStore.put(size.key(storageKey), new ByteArrayInputStream(jpeg(image)));
+        }
+        log.debug("Rendered previews of blob {} in {} ms", storageKey, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private BufferedImage renderFirstPage(String storageKey, String contentEncoding) throws IOException {
+        Optional<Path> local = ContentCodec.fromEncodingName(contentEncoding) == ContentCodec.IDENTITY
+                ? blobStore.localPath(storageKey)
+                : Optional.empty();
+        Path file = local.isPresent() ? local.get() : Files.createTempFile("preview-", ".pdf");
+        try {
+            if (local.isEmpty()) {
+                try (InputStream content = open(storageKey, contentEncoding)) {
+                    Files.copy(content, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            try (PDDocument document = Loader.loadPDF(file.toFile(), IOUtils.createTempFileOnlyStreamCache())) {
+                if (document.getNumberOfPages() == 0) {
+                    throw new IOException("PDF has no pages");
+                }
+                PDRectangle box = document.getPage(0).getCropBox();
+                float scale = PreviewSize.PAGE.getMaxPixels() / Math.max(box.getWidth(), box.getHeight());
+                return new PDFRenderer(document).renderImage(0, scale, ImageType.RGB);
+            }
+        } finally {
+            if (local.isEmpty()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Decodes the image, skipping pixels while reading so a large scan is never fully on the heap
+     */
+    private BufferedImage readImage(String storageKey, String contentEncoding) throws IOException {
+        try (InputStream content = open(storageKey, contentEncoding);
+             ImageInputStream input = ImageIO.createImageInputStream(content)) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("Not a readable image");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int longest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                ImageReadParam param = reader.getDefaultReadParam();
+                // Keep at least twice the largest preview so the final scaling stays smooth
+                int step = longest / (PreviewSize.PAGE.getMaxPixels() * 2);
+                if (step > 1) {
+                    param.setSourceSubsampling(step, step, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private InputStream open(String storageKey, String contentEncoding) throws IOException {
+        return ContentCodec.fromEncodingName(contentEncoding).decode(blobStore.open(storageKey));
+    }
+
+    private static BufferedImage fit(BufferedImage image, int maxPixels) {
+        double scale = (double) maxPixels / Math.max(image.getWidth(), image.getHeight());
+        boolean grey = image.getColorModel().getNumComponents() == 1;
+        int type = grey ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_INT_RGB;
+        if (scale >= 1 && image.getType() == type) {
+            return image;
+        }
+        // Grey stays grey: drawing it onto RGB would go through a linear grey space and wash it out
+        return ScanPostProcessor.downsample(image, Math.min(1, scale), grey);
+    }
+
+    private static BufferedImage onWhite(BufferedImage image) {
+        BufferedImage result = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = result.createGraphics();
+        try {
+            graphics.drawImage(image, 0, 0, Color.WHITE, null);
+        } finally {
+            graphics.dispose();
+        }
+        return result;
+    }
+
+    private static byte[] jpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (MemoryCacheImageOutputStream out = new MemoryCacheImageOutputStream(bytes)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+}
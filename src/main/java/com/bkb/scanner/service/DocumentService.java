@@ -1,10 +1,12 @@
 package com.bkb.scanner.service;
 
+import com.bkb.scanner.dto.DocumentContentRef;
 import com.bkb.scanner.dto.DocumentDto;
-import com.bkb.scanner.entity.Case;
+import com.bkb.scanner.dto.DocumentListItem;
+import com.bkb.scanner.dto.DocumentsPageDto;
 import com.bkb.scanner.entity.Document;
-import com.bkb.scanner.entity.Party;
 import com.bkb.scanner.entity.User;
+import com.bkb.scanner.exception.NotFoundException;
 import com.bkb.scanner.exception.SelfVerificationException;
 import com.bkb.scanner.mapper.DocumentMapper;
 import com.bkb.scanner.repository.CaseRepository;
@@ -12,14 +14,29 @@ import com.bkb.scanner.repository.DocumentRepository;
 import com.bkb.scanner.repository.PartyRepository;
 import com.bkb.scanner.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -27,6 +44,9 @@ import java.util.stream.Collectors;
 @Transactional
 public class DocumentService {
 
+    // Latest versions first within each document type
+    private static final Sort LIST_SORT = Sort.by(Sort.Order.asc("documentType"), Sort.Order.desc("version"));
+
     @Autowired
     private DocumentRepository documentRepository;
 
@@ -42,95 +62,131 @@ public class DocumentService {
     @Autowired
     private DocumentMapper documentMapper;
 
+    @Autowired
+    private DocumentStorageService documentStorageService;
+
+    @Autowired
+    private DocumentVersionService documentVersionService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Documents expiring within this many days count as expiring soon in status summaries
+    @Value("${documents.expiring-soon-days:30}")
+    private int expiringSoonDays;
+
     /**
      * Upload a document for a case with metadata
      */
+    @Transactional(propagation = Propagation.NEVER)
     public DocumentDto uploadDocumentForCase(String caseId, String documentType, MultipartFile file,
                                              String expiryDate, String comments, Boolean isAdHoc) throws IOException {
-        // Find the case
-        Case ownerCase = caseRepository.findById(caseId)
-                .orElseThrow(() -> new RuntimeException("Case not found with id: " + caseId));
+        try (InputStream content = file.getInputStream()) {
+            return uploadDocument("CASE", caseId, documentType, content, file.getOriginalFilename(),
+                    file.getContentType(), expiryDate, comments, isAdHoc);
+        }
+    }
 
-        // Get the current user
-        User currentUser = getCurrentUser();
+    /**
+     * Upload a document for a case, streaming the payload straight to storage
+     */
+    @Transactional(propagation = Propagation.NEVER)
+    public DocumentDto uploadDocumentForCase(String caseId, String documentType, InputStream content,
+                                             String originalFilename, String contentType,
+                                             String expiryDate, String comments, Boolean isAdHoc) throws IOException {
+        return uploadDocument("CASE", caseId, documentType, content, originalFilename, contentType,
+                expiryDate, comments, isAdHoc);
+    }
 
-        // Get the next version number
-        int nextVersion = getNextVersionNumber("CASE", caseId, documentType);
-        System.out.println("📄 Uploading document for case: " + documentType + " (version " + nextVersion + ")");
+    /**
+     * Upload a document for a party with metadata
+     */
+    @Transactional(propagation = Propagation.NEVER)
+    public DocumentDto uploadDocumentForParty(String partyId, String documentType, MultipartFile file,
+                                              String expiryDate, String comments, Boolean isAdHoc) throws IOException {
+        try (InputStream content = file.getInputStream()) {
+            return uploadDocument("PARTY", partyId, documentType, content, file.getOriginalFilename(),
+                    file.getContentType(), expiryDate, comments, isAdHoc);
+        }
+    }
+
+    /**
+     * Upload a document for a party, streaming the payload straight to storage
+     */
+    @Transactional(propagation = Propagation.NEVER)
+    public DocumentDto uploadDocumentForParty(String partyId, String documentType, InputStream content,
+                                              String originalFilename, String contentType,
+                                              String expiryDate, String comments, Boolean isAdHoc) throws IOException {
+        return uploadDocument("PARTY", partyId, documentType, content, originalFilename, contentType,
+                expiryDate, comments, isAdHoc);
+    }
 
-        // Clear current flags for THIS document type only for THIS case
-        List<Document> existingDocs = documentRepository.findByOwnerTypeAndOwnerIdAndDocumentType(
-                "CASE", caseId, documentType
-        );
-        existingDocs.forEach(doc -> doc.setIsCurrentForCase(false));
-        documentRepository.saveAll(existingDocs);
+    /**
+     * Shared upload path for case and party documents. The payload is written before
+     * any transaction starts, so a slow client never holds a database connection; only
+     * the document row is written in a transaction.
+     */
+    private DocumentDto uploadDocument(String ownerType, String ownerId, String documentType, InputStream content,
+                                       String originalFilename, String contentType,
+                                       String expiryDate, String comments, Boolean isAdHoc) throws IOException {
+        Document document = storeUploadedPayload(ownerType, ownerId, documentType, content,
+                originalFilename, contentType);
+        try {
+            return new TransactionTemplate(transactionManager)
+                    .execute(status -> saveUploadedDocument(document, expiryDate, comments, isAdHoc));
+        } catch (RuntimeException e) {
+            documentStorageService.releaseStored(document);
+            throw e;
+        }
+    }
 
-        // Create the document
+    /**
+     * Writes the payload of an upload to storage and returns the unsaved document for it.
+     * Save it with saveUploadedDocument(); if that fails, release the payload with
+     * DocumentStorageService.releaseStored().
+     */
+    @Transactional(propagation = Propagation.NEVER)
+    public Document storeUploadedPayload(String ownerType, String ownerId, String documentType, InputStream content,
+                                         String originalFilename, String contentType) throws IOException {
         Document document = new Document();
+        document.setOwnerType(ownerType);
+        document.setOwnerId(ownerId);
         document.setName(documentType);
         document.setDocumentType(documentType);
-        document.setOriginalFilename(file.getOriginalFilename());
-        document.setMimeType(file.getContentType());
-        document.setSizeInBytes(file.getSize());
-        document.setContent(file.getBytes());
-        document.setOwnerType("CASE");
-        document.setOwnerId(caseId);
-        document.setOwnerCase(ownerCase);
-        document.setStatus("Submitted");
-        document.setVersion(nextVersion);
-        document.setUploadedByUser(currentUser);
-        document.setIsCurrentForCase(false);
-        document.setIsAdHoc(isAdHoc != null ? isAdHoc : false);
-
-        if (expiryDate != null && !expiryDate.trim().isEmpty()) {
-            try {
-                document.setExpiryDate(Instant.parse(expiryDate + "T00:00:00Z"));
-            } catch (Exception e) {
-                System.err.println("Failed to parse expiry date: " + expiryDate);
-            }
-        }
-        if (comments != null && !comments.trim().isEmpty()) {
-            document.setComments(comments);
-        }
-
-        Document saved = documentRepository.save(document);
-        return documentMapper.toDto(saved);
+        document.setOriginalFilename(originalFilename);
+        document.setMimeType(contentType);
+        documentStorageService.store(document, content);
+        documentVersionService.createMissingCounters(ownerType, ownerId, List.of(documentType));
+        return document;
     }
 
     /**
-     * Upload a document for a party with metadata
+     * Saves a document returned by storeUploadedPayload() as the next version of its type
      */
-    public DocumentDto uploadDocumentForParty(String partyId, String documentType, MultipartFile file,
-                                              String expiryDate, String comments, Boolean isAdHoc) throws IOException {
-        // Find the party
-        Party ownerParty = partyRepository.findById(partyId)
-                .orElseThrow(() -> new RuntimeException("Party not found with id: " + partyId));
+    @Transactional(propagation = Propagation.MANDATORY)
+    public DocumentDto saveUploadedDocument(Document document, String expiryDate, String comments, Boolean isAdHoc) {
+        String ownerType = document.getOwnerType();
+        String ownerId = document.getOwnerId();
+        String documentType = document.getDocumentType();
+        if ("CASE".equals(ownerType)) {
+            document.setOwnerCase(caseRepository.findById(ownerId)
+                    .orElseThrow(() -> new RuntimeException("Case not found with id: " + ownerId)));
+        } else {
+            document.setOwnerParty(partyRepository.findById(ownerId)
+                    .orElseThrow(() -> new RuntimeException("Party not found with id: " + ownerId)));
+        }
 
         // Get the current user
         User currentUser = getCurrentUser();
 
         // Get the next version number
-        int nextVersion = getNextVersionNumber("PARTY", partyId, documentType);
-        System.out.println("📄 Uploading document for party: " + documentType + " (version " + nextVersion + ")");
+        int nextVersion = documentVersionService.allocateNextVersion(ownerType, ownerId, documentType);
+        System.out.println("📄 Uploading document for " + ownerType.toLowerCase() + ": " + documentType
+                + " (version " + nextVersion + ")");
 
-        // For party documents, clear current flags for this document type for this party
-        List<Document> existingDocs = documentRepository.findByOwnerTypeAndOwnerIdAndDocumentType(
-                "PARTY", partyId, documentType
-        );
-        existingDocs.forEach(doc -> doc.setIsCurrentForCase(false));
-        documentRepository.saveAll(existingDocs);
+        // Clear current flags for THIS document type only for THIS owner
+        documentRepository.clearCurrentVersion(ownerType, ownerId, documentType);
 
-        // Create the document
-        Document document = new Document();
-        document.setName(documentType);
-        document.setDocumentType(documentType);
-        document.setOriginalFilename(file.getOriginalFilename());
-        document.setMimeType(file.getContentType());
-        document.setSizeInBytes(file.getSize());
-        document.setContent(file.getBytes());
-        document.setOwnerType("PARTY");
-        document.setOwnerId(partyId);
-        document.setOwnerParty(ownerParty);
         document.setStatus("Submitted");
         document.setVersion(nextVersion);
         document.setUploadedByUser(currentUser);
@@ -152,32 +208,11 @@ public class DocumentService {
         return documentMapper.toDto(saved);
     }
 
-    /**
-     * Calculate the next version number for a document
-     */
-    private int getNextVersionNumber(String ownerType, String ownerId, String documentType) {
-        List<Document> existingDocs = documentRepository.findByOwnerTypeAndOwnerIdAndDocumentType(
-                ownerType, ownerId, documentType
-        );
-
-        if (existingDocs.isEmpty()) {
-            return 1;
-        }
-
-        int maxVersion = existingDocs.stream()
-                .mapToInt(Document::getVersion)
-                .max()
-                .orElse(0);
-
-        return maxVersion + 1;
-    }
-
     /**
      * Get all documents for a case (including party documents)
      */
     public List<DocumentDto> getAllDocumentsForCase(String caseId) {
-        List<Document> documents = documentRepository.findAllDocumentsForCase(caseId);
-        return documents.stream()
+        return documentRepository.findListItemsForCase(caseId).stream()
                 .map(documentMapper::toDto)
                 .collect(Collectors.toList());
     }
@@ -186,12 +221,75 @@ public class DocumentService {
      * Get documents for a party
      */
     public List<DocumentDto> getAllDocumentsForParty(String partyId) {
-        List<Document> documents = documentRepository.findByOwnerTypeAndOwnerId("PARTY", partyId);
-        return documents.stream()
+        return documentRepository.findListItemsByOwner("PARTY", partyId).stream()
                 .map(documentMapper::toDto)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Get a page of documents for a case (including party documents), filtered by
+     * comma-separated statuses and document types and by the current flag
+     */
+    public DocumentsPageDto getDocumentsForCasePage(String caseId, Integer page, Integer limit, String statusFilter,
+                                                    String documentTypeFilter, Boolean isCurrentForCase) {
+        List<String> statuses = parseFilter(statusFilter);
+        List<String> documentTypes = parseFilter(documentTypeFilter);
+        Page<DocumentListItem> items = documentRepository.findListItemsForCase(
+                caseId,
+                !statuses.isEmpty(), statuses,
+                !documentTypes.isEmpty(), documentTypes,
+                isCurrentForCase,
+                PageRequest.of(page - 1, limit, LIST_SORT));
+        return toPage(items, page, limit, statuses, documentTypes, isCurrentForCase);
+    }
+
+    /**
+     * Get a page of documents for a party, with the same filters as for cases
+     */
+    public DocumentsPageDto getDocumentsForPartyPage(String partyId, Integer page, Integer limit, String statusFilter,
+                                                     String documentTypeFilter, Boolean isCurrentForCase) {
+        List<String> statuses = parseFilter(statusFilter);
+        List<String> documentTypes = parseFilter(documentTypeFilter);
+        Page<DocumentListItem> items = documentRepository.findListItemsByOwner(
+                "PARTY", partyId,
+                !statuses.isEmpty(), statuses,
+                !documentTypes.isEmpty(), documentTypes,
+                isCurrentForCase,
+                PageRequest.of(page - 1, limit, LIST_SORT));
+        return toPage(items, page, limit, statuses, documentTypes, isCurrentForCase);
+    }
+
+    private DocumentsPageDto toPage(Page<DocumentListItem> items, Integer page, Integer limit,
+                                    List<String> statuses, List<String> documentTypes, Boolean isCurrentForCase) {
+        return DocumentsPageDto.builder()
+                .data(items.getContent().stream()
+                        .map(documentMapper::toDto)
+                        .collect(Collectors.toList()))
+                .pagination(DocumentsPageDto.PaginationInfo.builder()
+                        .page(page)
+                        .limit(limit)
+                        .total(items.getTotalElements())
+                        .totalPages(items.getTotalPages())
+                        .build())
+                .appliedFilters(DocumentsPageDto.AppliedFilters.builder()
+                        .status(statuses)
+                        .documentType(documentTypes)
+                        .isCurrentForCase(isCurrentForCase)
+                        .build())
+                .build();
+    }
+
+    private List<String> parseFilter(String filter) {
+        if (filter == null || filter.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        return Arrays.stream(filter.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toList());
+    }
+
     /**
      * Update document status with self-verification prevention
      */
@@ -229,19 +327,64 @@ public class DocumentService {
         return documentRepository.findById(documentId);
     }
 
+    /**
+     * Get the storage metadata needed to serve a document's payload
+     */
+    @Transactional(readOnly = true)
+    public Optional<DocumentContentRef> getContentRef(Long documentId) {
+        return documentRepository.findContentRefById(documentId);
+    }
+
+    /**
+     * Open the stored payload of a document
+     */
+    @Transactional(readOnly = true)
+    public InputStream openContent(DocumentContentRef ref) throws IOException {
+        if (ref.getStorageKey() != null) {
+            return documentStorageService.open(ref.getStorageKey(), ref.getContentEncoding());
+        }
+        // Legacy row whose payload is still inline
+        Document document = documentRepository.findById(ref.getId())
+                .orElseThrow(() -> new NotFoundException("Document not found with id: " + ref.getId()));
+        return documentStorageService.openContent(document);
+    }
+
+    /**
+     * The local file holding the payload, if it can be sent without passing through the JVM
+     */
+    public Optional<Path> getLocalContentFile(DocumentContentRef ref) {
+        return ref.getStorageKey() != null
+                ? documentStorageService.localFile(ref.getStorageKey(), ref.getContentEncoding())
+                : Optional.empty();
+    }
+
     /**
      * Get document status summary
      */
     public DocumentStatusSummary getDocumentStatusSummary(String ownerType, String ownerId) {
-        List<Document> documents = documentRepository.findByOwnerTypeAndOwnerId(ownerType, ownerId);
+        return getDocumentStatusSummaries(ownerType, List.of(ownerId)).get(ownerId);
+    }
 
-        long total = documents.size();
-        long verified = documents.stream().filter(d -> "Verified".equals(d.getStatus())).count();
-        long submitted = documents.stream().filter(d -> "Submitted".equals(d.getStatus())).count();
-        long rejected = documents.stream().filter(d -> "Rejected".equals(d.getStatus())).count();
-        long expired = documents.stream().filter(d -> "Expired".equals(d.getStatus())).count();
+    /**
+     * Get document status summaries for many owners of the same type with one grouped query.
+     * Every requested owner is present in the result, with zero counts if it has no documents.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, DocumentStatusSummary> getDocumentStatusSummaries(String ownerType, Collection<String> ownerIds) {
+        Map<String, DocumentStatusSummary> summaries = new LinkedHashMap<>();
+        ownerIds.forEach(ownerId -> summaries.put(ownerId, DocumentStatusSummary.EMPTY));
+        if (summaries.isEmpty()) {
+            return summaries;
+        }
 
-        return new DocumentStatusSummary(total, verified, submitted, rejected, expired);
+        // Past-due documents are set to Expired by DocumentExpiryService, so everything valid
+        // below the threshold is expiring soon
+        Instant threshold = Instant.now().plus(expiringSoonDays, ChronoUnit.DAYS);
+        documentRepository.getStatusSummariesByOwners(ownerType, summaries.keySet(), threshold)
+                .forEach(row -> summaries.put(row.getCaseId(), new DocumentStatusSummary(
+                        row.getTotalCount(), row.getVerifiedCount(), row.getSubmittedCount(),
+                        row.getRejectedCount(), row.getExpiredCount(), row.getExpiringSoonCount())));
+        return summaries;
     }
 
     /**
@@ -252,22 +395,11 @@ public class DocumentService {
         Document newCurrentDoc = documentRepository.findById(newCurrentVersionId)
                 .orElseThrow(() -> new RuntimeException("Document not found with id: " + newCurrentVersionId));
 
-        if ("CASE".equals(newCurrentDoc.getOwnerType())) {
-            List<Document> docs = documentRepository.findByOwnerTypeAndOwnerIdAndDocumentType(
-                    "CASE", caseId, documentType
-            );
-            docs.forEach(doc -> doc.setIsCurrentForCase(false));
-            documentRepository.saveAll(docs);
-        } else if ("PARTY".equals(newCurrentDoc.getOwnerType())) {
-            List<Document> docs = documentRepository.findByOwnerTypeAndOwnerIdAndDocumentType(
-                    "PARTY", newCurrentDoc.getOwnerId(), documentType
-            );
-            docs.forEach(doc -> doc.setIsCurrentForCase(false));
-            documentRepository.saveAll(docs);
-        }
-
-        newCurrentDoc.setIsCurrentForCase(true);
-        documentRepository.save(newCurrentDoc);
+        // Set based: the old current version is cleared before the new one is marked,
+        // so the one-current-version index is never violated mid-statement
+        documentRepository.clearCurrentVersionExcept(
+                newCurrentDoc.getOwnerType(), newCurrentDoc.getOwnerId(), documentType, newCurrentVersionId);
+        documentRepository.markCurrentVersion(newCurrentVersionId);
     }
 
     /**
@@ -297,18 +429,23 @@ public class DocumentService {
     }
 
     public static class DocumentStatusSummary {
+        public static final DocumentStatusSummary EMPTY = new DocumentStatusSummary(0, 0, 0, 0, 0, 0);
+
         public final long total;
         public final long verified;
         public final long submitted;
         public final long rejected;
         public final long expired;
+        public final long expiringSoon;
 
-        public DocumentStatusSummary(long total, long verified, long submitted, long rejected, long expired) {
+        public DocumentStatusSummary(long total, long verified, long submitted, long rejected, long expired,
+                                     long expiringSoon) {
             this.total = total;
             this.verified = verified;
             this.submitted = submitted;
             this.rejected = rejected;
             this.expired = expired;
+            this.expiringSoon = expiringSoon;
         }
     }
-}
\ No newline at end of file
+}
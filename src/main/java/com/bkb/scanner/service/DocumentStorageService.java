@@ -0,0 +1,360 @@
+package com.bkb.scanner.service;
+
+import com.bkb.scanner.dto.StorageStatsDto;
+import com.bkb.scanner.entity.Document;
+import com.bkb.scanner.entity.DocumentBlob;
+import com.bkb.scanner.repository.DocumentBlobRepository;
+import com.bkb.scanner.storage.BlobStore;
+import com.bkb.scanner.storage.CompressionPolicy;
+import com.bkb.scanner.storage.ContentCodec;
+import com.bkb.scanner.storage.ContentInspectingInputStream;
+import com.bkb.scanner.storage.MimeTypeSniffer;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Moves document payloads in and out of the BlobStore.
+ * The Document row only keeps the storage key; this service is the single place
+ * that knows how a key maps to bytes.
+ *
+ * Payloads are content addressed: every distinct SHA-256 is stored once and
+ * tracked in csob_document_blobs with a reference count. Reference counts are
+ * changed in their own short transactions so concurrent uploads of the same
+ * bytes never block on, or fail because of, each other's upload transaction.
+ * Uploads call store() and storeFile() before they open the transaction that saves
+ * the document, so they never hold one connection while waiting for another, and
+ * hand the reference back with releaseStored() if that transaction fails.
+ * Every stored payload gets its previews rendered in the background once the upload
+ * commits.
+ */
+@Slf4j
+@Service
+public class DocumentStorageService {
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private DocumentBlobRepository documentBlobRepository;
+
+    @Autowired
+    private CompressionPolicy compressionPolicy;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private DocumentPreviewService documentPreviewService;
+
+    @Value("${storage.upload.max-size:500MB}")
+    private DataSize maxUploadSize;
+
+    /**
+     * Writes the payload to the blob store and points the document at it.
+     * Size, SHA-256 and MIME type are taken from the bytes as they stream through,
+     * so the payload is never buffered on the heap. Compressible types are deflated
+     * on the way to storage according to the CompressionPolicy. If identical bytes
+     * are already stored, the new copy is dropped and the document shares the
+     * existing blob. When called inside a transaction the reference is released again
+     * if it rolls back; otherwise the caller releases it if the document is not saved.
+     */
+    public void store(Document document, InputStream content) throws IOException {
+        // Peek at the header first: the codec has to be chosen before the bytes are written
+        BufferedInputStream buffered = new BufferedInputStream(content);
+        buffered.mark(MimeTypeSniffer.HEADER_SIZE);
+        byte[] header = buffered.readNBytes(MimeTypeSniffer.HEADER_SIZE);
+        buffered.reset();
+        String mimeType = MimeTypeSniffer.resolve(header, document.getMimeType());
+        storeEncoded(document, buffered, mimeType, compressionPolicy.codecFor(mimeType));
+    }
+
+    /**
+     * Hashes the content while it is encoded into a new blob, then registers the blob,
+     * dropping it again if identical bytes are already stored
+     */
+    private void storeEncoded(Document document, InputStream content, String mimeType, ContentCodec codec)
+            throws IOException {
+        ContentInspectingInputStream inspected = new ContentInspectingInputStream(content, maxUploadSize.toBytes());
+        String key = blobStore.newKey();
+        long storedSize;
+        try (InputStream encoded = codec.encode(inspected)) {
+            storedSize = blobStore.put(key, encoded);
+        }
+        String sha256 = inspected.getSha256();
+
+        DocumentBlob blob;
+        try {
+            blob = acquire(sha256, key, inspected.getCount(), storedSize, codec, mimeType);
+        } catch (RuntimeException e) {
+            blobStore.delete(key);
+            throw e;
+        }
+
+        boolean deduplicated = !key.equals(blob.getStorageKey());
+        if (deduplicated) {
+            blobStore.delete(key);
+            log.debug("Payload {} already stored, sharing blob {}", sha256, blob.getStorageKey());
+        }
+        releaseOnRollback(sha256);
+        attach(document, blob, sha256, mimeType, deduplicated);
+    }
+
+    /**
+     * Stores a payload that already sits in a local file, such as a scanner's output.
+     * The file is read only once. Compressible types are hashed while they are deflated
+     * into the store, as in store(). A payload that is kept as-is is hashed first and
+     * then moved into the blob store instead of copied, or not written at all if
+     * identical bytes are already stored. The file may be gone afterwards; the caller
+     * still removes it if it is not. The reference is released like for store().
+     */
+    public void storeFile(Document document, Path file) throws IOException {
+        byte[] header;
+        try (InputStream content = Files.newInputStream(file)) {
+            header = content.readNBytes(MimeTypeSniffer.HEADER_SIZE);
+        }
+        String mimeType = MimeTypeSniffer.resolve(header, document.getMimeType());
+        ContentCodec codec = compressionPolicy.codecFor(mimeType);
+        if (codec != ContentCodec.IDENTITY) {
+            try (InputStream content = Files.newInputStream(file)) {
+                storeEncoded(document, content, mimeType, codec);
+            }
+            return;
+        }
+
+        ContentInspectingInputStream inspected;
+        try (InputStream content = Files.newInputStream(file)) {
+            inspected = new ContentInspectingInputStream(content, maxUploadSize.toBytes());
+            inspected.transferTo(OutputStream.nullOutputStream());
+        }
+        String sha256 = inspected.getSha256();
+
+        Optional<DocumentBlob> existing = requiresNew().execute(status -> incrementAndGet(sha256));
+        DocumentBlob blob;
+        boolean deduplicated = existing.isPresent();
+        if (deduplicated) {
+            blob = existing.get();
+            log.debug("Payload {} already stored, sharing blob {}", sha256, blob.getStorageKey());
+        } else {
+            String key = blobStore.newKey();
+            long storedSize = blobStore.putFile(key, file);
+            try {
+                blob = acquire(sha256, key, inspected.getCount(), storedSize, codec, mimeType);
+            } catch (RuntimeException e) {
+                blobStore.delete(key);
+                throw e;
+            }
+            if (!key.equals(blob.getStorageKey())) {
+                // Another upload stored the same bytes in the meantime
+                blobStore.delete(key);
+                deduplicated = true;
+            }
+        }
+        releaseOnRollback(sha256);
+        attach(document, blob, sha256, mimeType, deduplicated);
+    }
+
+    /**
+     * Gives back the reference store() or storeFile() took for a document that was not
+     * saved, deleting the payload if nothing else uses it
+     */
+    public void releaseStored(Document document) {
+        release(document.getContentSha256());
+    }
+
+    private void attach(Document document, DocumentBlob blob, String sha256, String mimeType, boolean deduplicated) {
+        document.setStorageKey(blob.getStorageKey());
+        document.setSizeInBytes(blob.getSizeInBytes());
+        document.setStoredSizeInBytes(blob.getStoredSizeInBytes());
+        document.setContentEncoding(blob.getContentEncoding());
+        document.setContentSha256(sha256);
+        document.setMimeType(mimeType);
+        document.setContent(null);
+        document.setDeduplicated(deduplicated);
+        documentPreviewService.generateAfterCommit(blob.getStorageKey(), blob.getContentEncoding(), mimeType);
+    }
+
+    /**
+     * Opens the payload of a document, falling back to the legacy inline column
+     * for rows that have not been migrated yet.
+     */
+    public InputStream openContent(Document document) throws IOException {
+        if (document.getStorageKey() != null) {
+            return open(document.getStorageKey(), document.getContentEncoding());
+        }
+        if (document.getContent() != null) {
+            return new ByteArrayInputStream(document.getContent());
+        }
+        throw new IOException("Document " + document.getId() + " has no stored content");
+    }
+
+    /**
+     * Opens a stored payload, decompressing it on the fly.
+     */
+    public InputStream open(String storageKey, String contentEncoding) throws IOException {
+        return ContentCodec.fromEncodingName(contentEncoding).decode(blobStore.open(storageKey));
+    }
+
+    /**
+     * The file holding the payload, when it is stored uncompressed and can be
+     * sent straight from disk.
+     */
+    public Optional<Path> localFile(String storageKey, String contentEncoding) {
+        if (ContentCodec.fromEncodingName(contentEncoding) != ContentCodec.IDENTITY) {
+            return Optional.empty();
+        }
+        return blobStore.localPath(storageKey);
+    }
+
+    /**
+     * Logical versus stored bytes of all distinct payloads, per MIME type and codec.
+     */
+    public StorageStatsDto getStorageStats() {
+        List<StorageStatsDto.TypeStats> byType = documentBlobRepository.getStorageStats().stream()
+                .map(row -> StorageStatsDto.TypeStats.builder()
+                        .mimeType(row.getMimeType())
+                        .contentEncoding(row.getContentEncoding())
+                        .blobCount(row.getBlobCount())
+                        .logicalBytes(row.getLogicalBytes())
+                        .storedBytes(row.getStoredBytes())
+                        .compressionRatio(ratio(row.getLogicalBytes(), row.getStoredBytes()))
+                        .build())
+                .collect(Collectors.toList());
+
+        long logical = byType.stream().mapToLong(StorageStatsDto.TypeStats::getLogicalBytes).sum();
+        long stored = byType.stream().mapToLong(StorageStatsDto.TypeStats::getStoredBytes).sum();
+        return StorageStatsDto.builder()
+                .blobCount(byType.stream().mapToLong(StorageStatsDto.TypeStats::getBlobCount).sum())
+                .logicalBytes(logical)
+                .storedBytes(stored)
+                .compressionRatio(ratio(logical, stored))
+                .byType(byType)
+                .build();
+    }
+
+    private double ratio(long logical, long stored) {
+        return stored > 0 ? Math.round((double) logical / stored * 100.0) / 100.0 : 1.0;
+    }
+
+    /**
+     * Drops one reference per hash once the current transaction commits,
+     * deleting payloads that are no longer used by any document.
+     */
+    public void releaseAfterCommit(List<String> sha256s) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            sha256s.forEach(this::release);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                sha256s.forEach(DocumentStorageService.this::release);
+            }
+        });
+    }
+
+    private DocumentBlob acquire(String sha256, String candidateKey, long size, long storedSize,
+                                 ContentCodec codec, String mimeType) {
+        TransactionTemplate tx = requiresNew();
+        Optional<DocumentBlob> existing = tx.execute(status -> incrementAndGet(sha256));
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+
+        try {
+            return tx.execute(status -> {
+                DocumentBlob blob = new DocumentBlob();
+                blob.setSha256(sha256);
+                blob.setStorageKey(candidateKey);
+                blob.setSizeInBytes(size);
+                blob.setStoredSizeInBytes(storedSize);
+                blob.setContentEncoding(codec.getEncodingName());
+                blob.setMimeType(mimeType);
+                blob.setRefCount(1);
+                // persist, not save: a concurrent insert must fail here rather than be overwritten by a merge
+                entityManager.persist(blob);
+                entityManager.flush();
+                return blob;
+            });
+        } catch (DataIntegrityViolationException | ConstraintViolationException e) {
+            // Another upload registered the same payload first
+            return tx.execute(status -> incrementAndGet(sha256))
+                    .orElseThrow(() -> new IllegalStateException("Blob " + sha256 + " vanished during upload", e));
+        }
+    }
+
+    private Optional<DocumentBlob> incrementAndGet(String sha256) {
+        if (documentBlobRepository.incrementRefCount(sha256) == 0) {
+            return Optional.empty();
+        }
+        return documentBlobRepository.findById(sha256);
+    }
+
+    private void release(String sha256) {
+        if (sha256 == null) {
+            return;
+        }
+        String orphanKey = requiresNew().execute(status -> {
+            Optional<DocumentBlob> blob = documentBlobRepository.findById(sha256);
+            if (blob.isEmpty()) {
+                return null;
+            }
+            documentBlobRepository.decrementRefCount(sha256);
+            return documentBlobRepository.deleteIfUnreferenced(sha256) > 0 ? blob.get().getStorageKey() : null;
+        });
+
+        if (orphanKey != null) {
+            try {
+                blobStore.delete(orphanKey);
+            } catch (IOException e) {
+                log.warn("Failed to remove unreferenced blob {}", orphanKey, e);
+            }
+            documentPreviewService.delete(orphanKey);
+        }
+    }
+
+    private void releaseOnRollback(String sha256) {
+        // Without a transaction the caller releases the reference with releaseStored()
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    release(sha256);
+                }
+            }
+        });
+    }
+
+    private TransactionTemplate requiresNew() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return tx;
+    }
+}
@@ -0,0 +1,97 @@
+package com.bkb.scanner.service;
+
+import com.bkb.scanner.entity.DocumentVersionCounter;
+import com.bkb.scanner.repository.DocumentRepository;
+import com.bkb.scanner.repository.DocumentVersionCounterRepository;
+import jakarta.persistence.EntityManager;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+
+/**
+ * Hands out document version numbers per (owner, document type).
+ *
+ * The counter row is incremented in the caller's transaction, so the row lock
+ * is held until the new document is committed: concurrent uploads of the same
+ * type queue up behind each other and can never see the same version, and a
+ * rolled back upload leaves no gap. Callers should allocate as late as possible,
+ * after the payload has been written, to keep that lock short, and create missing
+ * counters before their transaction starts.
+ */
+@Service
+public class DocumentVersionService {
+
+    @Autowired private DocumentVersionCounterRepository counterRepository;
+    @Autowired private DocumentRepository documentRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+    @Autowired private EntityManager entityManager;
+
+    @Transactional
+    public int allocateNextVersion(String ownerType, String ownerId, String documentType) {
+        return allocateVersions(ownerType, ownerId, documentType, 1);
+    }
+
+    /**
+     * Reserves count consecutive versions with a single counter update and returns the first.
+     * Callers allocating for several document types in one transaction should do so in a
+     * stable order (e.g. sorted by type) so concurrent batches cannot deadlock.
+     */
+    @Transactional
+    public int allocateVersions(String ownerType, String ownerId, String documentType, int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("count must be positive");
+        }
+        DocumentVersionCounter.Key key = new DocumentVersionCounter.Key(ownerType, ownerId, documentType);
+        // Create a missing counter before this transaction touches it. An UPDATE that matches
+        // no row would leave a gap lock on its key in MySQL, and the insert of the new counter
+        // on the other connection would then wait for this transaction forever.
+        if (!counterRepository.existsById(key)) {
+            createCounter(key);
+        }
+        if (counterRepository.increment(key, count) == 0) {
+            throw new IllegalStateException("Version counter " + key + " vanished during allocation");
+        }
+        return counterRepository.findLastVersion(key) - count + 1;
+    }
+
+    /**
+     * Creates the counters an upload is about to allocate from. Called before the upload's
+     * transaction, so allocating inside it never needs a second connection to create one.
+     */
+    public void createMissingCounters(String ownerType, String ownerId, Collection<String> documentTypes) {
+        for (String documentType : documentTypes) {
+            DocumentVersionCounter.Key key = new DocumentVersionCounter.Key(ownerType, ownerId, documentType);
+            if (!counterRepository.existsById(key)) {
+                createCounter(key);
+            }
+        }
+    }
+
+    /**
+     * Creates the counter, seeded from the versions stored before counters existed.
+     * Runs in its own transaction so losing the race to a concurrent upload does
+     * not poison the caller's transaction.
+     */
+    private void createCounter(DocumentVersionCounter.Key key) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            tx.executeWithoutResult(status -> {
+                int maxVersion = documentRepository.findMaxVersion(
+                        key.getOwnerType(), key.getOwnerId(), key.getDocumentType());
+                // persist, not save: a merge would reset a counter another upload just created
+                entityManager.persist(new DocumentVersionCounter(key, maxVersion));
+                entityManager.flush();
+            });
+        } catch (DataIntegrityViolationException | ConstraintViolationException e) {
+            // Another upload created the counter first, which is all we needed
+        }
+    }
+}
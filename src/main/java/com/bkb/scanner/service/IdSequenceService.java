@@ -0,0 +1,151 @@
+package com.bkb.scanner.service;
+
+import com.bkb.scanner.entity.IdSequence;
+import com.bkb.scanner.repository.CaseRepository;
+import com.bkb.scanner.repository.IdSequenceRepository;
+import com.bkb.scanner.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Hands out case and user IDs from the sequences in csob_id_sequences.
+ *
+ * Each node reserves block-size numbers of a sequence at a time with one counter update
+ * in its own transaction, and hands them out from memory with an atomic increment; only
+ * the thread that finds the block used up goes back to the database. Reserved blocks are
+ * never handed out twice, so IDs are unique across nodes. Numbers of a block left unused
+ * at shutdown, or taken by a create that rolled back, are skipped, so IDs have gaps and
+ * are only roughly in creation order across nodes.
+ */
+@Service
+public class IdSequenceService {
+
+    private static final DateTimeFormatter YEAR_MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+
+    @Autowired private IdSequenceRepository sequenceRepository;
+    @Autowired private CaseRepository caseRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+    @Autowired private EntityManager entityManager;
+
+    @Value("${ids.block-size:50}")
+    private int blockSize;
+
+    // Block currently handed out per sequence
+    private final ConcurrentMap<String, AtomicReference<Block>> blocks = new ConcurrentHashMap<>();
+
+    /**
+     * Next case ID of the current month, e.g. CASE-202601-0042
+     */
+    public String nextCaseId() {
+        String prefix = "CASE-" + LocalDate.now().format(YEAR_MONTH) + "-";
+        long number = next(prefix.substring(0, prefix.length() - 1),
+                () -> caseRepository.findCaseIdsStartingWith(prefix), prefix);
+        return String.format("%s%04d", prefix, number);
+    }
+
+    /**
+     * Next user ID, e.g. USER-042; numbers past 999 simply get longer
+     */
+    public String nextUserId() {
+        String prefix = "USER-";
+        long number = next("USER", () -> userRepository.findUserIdsStartingWith(prefix), prefix);
+        return String.format("%s%03d", prefix, number);
+    }
+
+    /**
+     * Next number of the sequence. existingIds lists the IDs created before the sequence
+     * existed, which seed it the first time it is used.
+     */
+    long next(String sequence, Supplier<List<String>> existingIds, String prefix) {
+        AtomicReference<Block> current = blocks.computeIfAbsent(sequence, s -> new AtomicReference<>());
+        while (true) {
+            Block block = current.get();
+            if (block != null) {
+                long number = block.next.getAndIncrement();
+                if (number <= block.last) {
+                    return number;
+                }
+            }
+            synchronized (current) {
+                // Another thread may have replaced the block while this one waited
+                if (current.get() == block) {
+                    long first = reserveBlock(sequence, existingIds, prefix);
+                    current.set(new Block(first, first + blockSize - 1));
+                }
+            }
+        }
+    }
+
+    /**
+     * Reserves the next block of the sequence and returns its first number. Runs in its own
+     * transaction so the counter row is locked only for the update, not for the caller's.
+     */
+    private long reserveBlock(String sequence, Supplier<List<String>> existingIds, String prefix) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        Long last = tx.execute(status -> sequenceRepository.increment(sequence, blockSize) == 0
+                ? null
+                : sequenceRepository.findLastValue(sequence));
+        if (last == null) {
+            createSequence(sequence, existingIds, prefix);
+            last = tx.execute(status -> {
+                sequenceRepository.increment(sequence, blockSize);
+                return sequenceRepository.findLastValue(sequence);
+            });
+        }
+        return last - blockSize + 1;
+    }
+
+    /**
+     * Creates the sequence, starting after the highest existing ID with the prefix. Losing
+     * the race to another node is fine: the sequence exists either way.
+     */
+    private void createSequence(String sequence, Supplier<List<String>> existingIds, String prefix) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            tx.executeWithoutResult(status -> {
+                long highest = 0;
+                for (String id : existingIds.get()) {
+                    try {
+                        highest = Math.max(highest, Long.parseLong(id.substring(prefix.length())));
+                    } catch (NumberFormatException e) {
+                        // Not one of ours, e.g. an ID typed in by hand
+                    }
+                }
+                // persist, not save: a merge would reset a sequence another node just created
+                entityManager.persist(new IdSequence(sequence, highest));
+                entityManager.flush();
+            });
+        } catch (DataIntegrityViolationException | ConstraintViolationException e) {
+            // Another node created the sequence first
+        }
+    }
+
+    private static final class Block {
+        private final AtomicLong next;
+        private final long last;
+
+        private Block(long first, long last) {
+            this.next = new AtomicLong(first);
+            this.last = last;
+        }
+    }
+}
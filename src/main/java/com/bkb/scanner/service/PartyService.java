@@ -3,6 +3,7 @@ package com.bkb.scanner.service;
 import com.bkb.scanner.dto.*;
 import com.bkb.scanner.entity.Party;
 import com.bkb.scanner.mapper.CaseMapper;
+import com.bkb.scanner.repository.DocumentRepository;
 import com.bkb.scanner.repository.PartyRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -18,6 +19,8 @@ import java.util.stream.Collectors;
 public class PartyService {
     @Autowired private PartyRepository partyRepository;
     @Autowired private CaseMapper caseMapper;
+    @Autowired private DocumentRepository documentRepository;
+    @Autowired private DocumentStorageService documentStorageService;
 
     @Transactional(readOnly = true)
     public List<PartyDto> getAllParties() {
@@ -78,6 +81,9 @@ public class PartyService {
         if (!partyRepository.existsById(partyId)) {
             throw new RuntimeException("Party not found with id: " + partyId);
         }
+        // The party's documents go with it, so drop their payload references too
+        documentStorageService.releaseAfterCommit(
+                documentRepository.findContentSha256ByOwner("PARTY", partyId));
         partyRepository.deleteById(partyId);
     }
 
@@ -0,0 +1,54 @@
+package com.bkb.scanner.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Least recently used cache of rendered previews, bounded by the bytes it holds
+ * rather than by the number of entries.
+ */
+class PreviewCache {
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+
+    PreviewCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    synchronized byte[] get(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Adds the entry and evicts the least recently used ones until the cache fits again.
+     * An entry larger than the whole cache is not kept.
+     */
+    synchronized void put(String key, byte[] value) {
+        if (value.length > maxBytes) {
+            return;
+        }
+        byte[] previous = entries.put(key, value);
+        if (previous != null) {
+            bytes -= previous.length;
+        }
+        bytes += value.length;
+        Iterator<byte[]> eldest = entries.values().iterator();
+        while (bytes > maxBytes) {
+            bytes -= eldest.next().length;
+            eldest.remove();
+        }
+    }
+
+    synchronized void remove(String key) {
+        byte[] previous = entries.remove(key);
+        if (previous != null) {
+            bytes -= previous.length;
+        }
+    }
+
+    synchronized long bytes() {
+        return bytes;
+    }
+}
@@ -0,0 +1,148 @@
+package com.bkb.scanner.service;
+
+import com.bkb.scanner.dto.ScanBatchItem;
+import com.bkb.scanner.dto.ScanJobDto;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * In-memory state of one scan. Jobs are created on the request thread and advanced
+ * by the scan worker; every transition is published by ScanJobService.
+ */
+@Getter
+public class ScanJob {
+    public static final String STATUS_QUEUED = "QUEUED";
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_STORING = "STORING";
+    public static final String STATUS_COMPLETED = "COMPLETED";
+    public static final String STATUS_FAILED = "FAILED";
+    public static final String STATUS_TIMED_OUT = "TIMED_OUT";
+
+    private final String jobId = UUID.randomUUID().toString().replace("-", "");
+    private final String profileName;
+    private final String ownerType;
+    private final String ownerId;
+    private final String documentType;
+    private final String format;
+    private final String submittedBy;
+    private final Duration timeout;
+    // Resolution of the scanner profile, e.g. 300 for "300dpi", or null when it is not set
+    private final Integer dpi;
+    // Set for batch scans only
+    private final String separator;
+    private final List<ScanBatchItem> batchItems;
+    private final Instant submittedAt = Instant.now();
+
+    private volatile String status = STATUS_QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile Long documentId;
+    private volatile List<Long> documentIds;
+    private volatile String message;
+
+    public ScanJob(String profileName, String ownerType, String ownerId, String documentType,
+                   String format, String submittedBy, Duration timeout, Integer dpi) {
+        this(profileName, ownerType, ownerId, documentType, format, submittedBy, timeout, dpi, null, null);
+    }
+
+    /**
+     * A batch scan that is split into one document per item
+     */
+    public ScanJob(String profileName, String ownerType, String ownerId, String submittedBy, Duration timeout,
+                   Integer dpi, String separator, List<ScanBatchItem> batchItems) {
+        this(profileName, ownerType, ownerId, null, "pdf", submittedBy, timeout, dpi, separator,
+                List.copyOf(batchItems));
+    }
+
+    private ScanJob(String profileName, String ownerType, String ownerId, String documentType, String format,
+                    String submittedBy, Duration timeout, Integer dpi, String separator,
+                    List<ScanBatchItem> batchItems) {
+        this.profileName = profileName;
+        this.ownerType = ownerType;
+        this.ownerId = ownerId;
+        this.documentType = documentType;
+        this.format = format;
+        this.submittedBy = submittedBy;
+        this.timeout = timeout;
+        this.dpi = dpi;
+        this.separator = separator;
+        this.batchItems = batchItems;
+    }
+
+    public boolean isBatch() {
+        return batchItems != null;
+    }
+
+    public boolean isPng() {
+        return "png".equalsIgnoreCase(format);
+    }
+
+    public boolean isFinished() {
+        return STATUS_COMPLETED.equals(status) || STATUS_FAILED.equals(status) || STATUS_TIMED_OUT.equals(status);
+    }
+
+    synchronized void running() {
+        status = STATUS_RUNNING;
+        startedAt = Instant.now();
+    }
+
+    synchronized void storing() {
+        status = STATUS_STORING;
+    }
+
+    synchronized void completed(Long documentId) {
+        this.documentId = documentId;
+        status = STATUS_COMPLETED;
+        message = "Document scanned successfully";
+        finishedAt = Instant.now();
+    }
+
+    synchronized void completed(List<Long> documentIds) {
+        this.documentIds = List.copyOf(documentIds);
+        status = STATUS_COMPLETED;
+        message = documentIds.size() + " documents scanned successfully";
+        finishedAt = Instant.now();
+    }
+
+    synchronized void failed(String message) {
+        this.message = message;
+        status = STATUS_FAILED;
+        finishedAt = Instant.now();
+    }
+
+    synchronized void timedOut() {
+        message = "Scan did not finish within " + timeout.toSeconds() + "s and was stopped";
+        status = STATUS_TIMED_OUT;
+        finishedAt = Instant.now();
+    }
+
+    public synchronized ScanJobDto toDto() {
+        return ScanJobDto.builder()
+                .jobId(jobId)
+                .status(status)
+                .profileName(profileName)
+                .ownerType(ownerType)
+                .ownerId(ownerId)
+                .documentType(documentType)
+                .format(format)
+                .submittedBy(submittedBy)
+                .timeoutSeconds(timeout.toSeconds())
+                .submittedAt(format(submittedAt))
+                .startedAt(format(startedAt))
+                .finishedAt(format(finishedAt))
+                .documentId(documentId)
+                .separator(separator)
+                .documentIds(documentIds)
+                .message(message)
+                .build();
+    }
+
+    private static String format(Instant instant) {
+        return instant != null ? DateTimeFormatter.ISO_INSTANT.format(instant) : null;
+    }
+}
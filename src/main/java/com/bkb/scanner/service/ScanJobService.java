@@ -0,0 +1,359 @@
+package com.bkb.scanner.service;
+
+import com.bkb.scanner.dto.ScanJobDto;
+import com.bkb.scanner.exception.NotFoundException;
+import com.bkb.scanner.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Schedules scan jobs and keeps track of their state.
+ *
+ * Every scanner profile drives one physical device, so jobs are queued per profile and
+ * a profile runs one job at a time, while jobs on different profiles run in parallel on
+ * the scan executor. After each job the profile goes back to the end of the executor's
+ * queue, so a busy profile cannot starve the others when workers are scarce.
+ *
+ * Jobs live in memory on the node whose scanners run them. Clients either poll a job
+ * or subscribe to it as a server-sent event stream that receives every status and queue
+ * position change and is closed once the job has finished. Finished jobs are forgotten
+ * after the retention period.
+ */
+@Slf4j
+@Service
+public class ScanJobService {
+
+    static final String STATUS_EVENT = "status";
+    // Weight of the latest scan in a profile's average duration
+    private static final double DURATION_SMOOTHING = 0.3;
+
+    @Autowired
+    @Qualifier("scanExecutor")
+    private ExecutorService scanExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${scan.profile.max-queued:10}")
+    private int maxQueuedPerProfile;
+
+    // Assumed scan duration for a profile that has not completed a scan yet
+    @Value("${scan.profile.default-duration:PT1M}")
+    private Duration defaultScanDuration;
+
+    @Value("${scan.jobs.retention:PT1H}")
+    private Duration retention;
+
+    @Value("${scan.jobs.sse-timeout:PT10M}")
+    private Duration sseTimeout;
+
+    private final Map<String, ScanJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, ProfileQueue> queues = new ConcurrentHashMap<>();
+    private final Map<String, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+
+    /**
+     * Queues the job behind the other jobs of its profile and returns straight away.
+     * Rejects the job when the profile's queue is full. The work runs with the
+     * submitting user's security context.
+     */
+    public ScanJob submit(ScanJob job, Consumer<ScanJob> work) {
+        ProfileQueue queue = queue(job.getProfileName());
+        Runnable task = new DelegatingSecurityContextRunnable(() -> work.accept(job));
+        boolean start;
+        synchronized (queue) {
+            if (queue.waiting.size() >= maxQueuedPerProfile) {
+                throw new ServiceUnavailableException("Scanner profile " + job.getProfileName()
+                        + " already has " + queue.waiting.size() + " scans waiting, please try again shortly");
+            }
+            jobs.put(job.getJobId(), job);
+            queue.waiting.add(new QueuedScan(job, task));
+            start = !queue.scheduled;
+            queue.scheduled = true;
+        }
+        if (start) {
+            schedule(queue);
+        }
+        log.info("Queued scan job {} on profile {} for {} {}", job.getJobId(), job.getProfileName(),
+                job.getOwnerType(), job.getOwnerId());
+        return job;
+    }
+
+    /**
+     * Returns a job of the given user; other users' jobs are reported as not found
+     */
+    public ScanJob getJob(String jobId, String username) {
+        ScanJob job = jobs.get(jobId);
+        if (job == null || !job.getSubmittedBy().equals(username)) {
+            throw new NotFoundException("Scan job not found with id: " + jobId);
+        }
+        return job;
+    }
+
+    /**
+     * The job's state including its place in the profile's queue
+     */
+    public ScanJobDto describe(ScanJob job) {
+        ScanJobDto dto = job.toDto();
+        ProfileQueue queue = queues.get(job.getProfileName());
+        if (queue == null || job.isFinished()) {
+            return dto;
+        }
+        synchronized (queue) {
+            if (queue.running != null && queue.running.job == job) {
+                dto.setQueuePosition(0);
+                dto.setExpectedWaitSeconds(0L);
+                return dto;
+            }
+            long averageMillis = queue.averageDurationMillis(defaultScanDuration);
+            long waitMillis = 0;
+            int ahead = 0;
+            if (queue.running != null) {
+                ahead++;
+                long elapsed = Duration.between(queue.runningSince, Instant.now()).toMillis();
+                waitMillis += Math.max(0, averageMillis - elapsed);
+            }
+            for (QueuedScan queued : queue.waiting) {
+                if (queued.job == job) {
+                    break;
+                }
+                ahead++;
+                waitMillis += averageMillis;
+            }
+            dto.setQueuePosition(ahead);
+            dto.setExpectedWaitSeconds(Duration.ofMillis(waitMillis).toSeconds());
+        }
+        return dto;
+    }
+
+    /**
+     * Opens an event stream for the job. The current state is sent immediately,
+     * followed by every later change; the stream completes when the job finishes.
+     */
+    public SseEmitter subscribe(ScanJob job) {
+        SseEmitter emitter = new SseEmitter(sseTimeout.toMillis());
+        synchronized (job) {
+            if (!job.isFinished()) {
+                List<SseEmitter> emitters = subscribers.computeIfAbsent(job.getJobId(), id -> new CopyOnWriteArrayList<>());
+                emitters.add(emitter);
+                Runnable remove = () -> emitters.remove(emitter);
+                emitter.onCompletion(remove);
+                emitter.onTimeout(remove);
+                emitter.onError(e -> remove.run());
+            }
+            send(emitter, job);
+            if (job.isFinished()) {
+                emitter.complete();
+            }
+        }
+        return emitter;
+    }
+
+    void running(ScanJob job) {
+        synchronized (job) {
+            job.running();
+            publish(job);
+        }
+    }
+
+    void storing(ScanJob job) {
+        synchronized (job) {
+            job.storing();
+            publish(job);
+        }
+    }
+
+    void completed(ScanJob job, Long documentId) {
+        synchronized (job) {
+            job.completed(documentId);
+            publish(job);
+        }
+    }
+
+    void completed(ScanJob job, List<Long> documentIds) {
+        synchronized (job) {
+            job.completed(documentIds);
+            publish(job);
+        }
+    }
+
+    void failed(ScanJob job, String message) {
+        synchronized (job) {
+            job.failed(message);
+            publish(job);
+        }
+    }
+
+    void timedOut(ScanJob job) {
+        synchronized (job) {
+            job.timedOut();
+            publish(job);
+        }
+    }
+
+    private ProfileQueue queue(String profileName) {
+        return queues.computeIfAbsent(profileName, name -> {
+            ProfileQueue queue = new ProfileQueue(name);
+            Gauge.builder("scan.queue.depth", queue, q -> q.depth())
+                    .description("Scan jobs waiting for the scanner profile")
+                    .tag("profile", name)
+                    .register(meterRegistry);
+            return queue;
+        });
+    }
+
+    private void schedule(ProfileQueue queue) {
+        try {
+            scanExecutor.execute(() -> runNext(queue));
+        } catch (RejectedExecutionException e) {
+            // Only happens while shutting down
+            log.warn("Scan executor rejected profile {}: {}", queue.profileName, e.getMessage());
+        }
+    }
+
+    /**
+     * Runs the oldest waiting job of the profile, then reschedules the profile if more are waiting
+     */
+    private void runNext(ProfileQueue queue) {
+        QueuedScan next;
+        List<ScanJob> stillWaiting;
+        synchronized (queue) {
+            next = queue.waiting.poll();
+            if (next == null) {
+                queue.scheduled = false;
+                return;
+            }
+            queue.running = next;
+            queue.runningSince = Instant.now();
+            stillWaiting = queue.waitingJobs();
+        }
+        // Everyone behind moved up one place
+        stillWaiting.forEach(this::publishPosition);
+
+        long started = System.nanoTime();
+        try {
+            next.task.run();
+        } catch (RuntimeException e) {
+            log.error("Scan job {} failed unexpectedly", next.job.getJobId(), e);
+            if (!next.job.isFinished()) {
+                failed(next.job, "Scan failed: " + e.getMessage());
+            }
+        } finally {
+            long elapsed = System.nanoTime() - started;
+            Timer.builder("scan.duration")
+                    .description("Time a scanner profile was busy with one scan job")
+                    .tag("profile", queue.profileName)
+                    .tag("outcome", next.job.getStatus())
+                    .register(meterRegistry)
+                    .record(Duration.ofNanos(elapsed));
+            synchronized (queue) {
+                queue.running = null;
+                queue.runningSince = null;
+                if (ScanJob.STATUS_COMPLETED.equals(next.job.getStatus())) {
+                    queue.recordDuration(Duration.ofNanos(elapsed).toMillis());
+                }
+            }
+            schedule(queue);
+        }
+    }
+
+    private void publishPosition(ScanJob job) {
+        synchronized (job) {
+            if (!job.isFinished()) {
+                publish(job);
+            }
+        }
+    }
+
+    private void publish(ScanJob job) {
+        List<SseEmitter> emitters = job.isFinished()
+                ? subscribers.remove(job.getJobId())
+                : subscribers.get(job.getJobId());
+        if (emitters == null) {
+            return;
+        }
+        for (SseEmitter emitter : emitters) {
+            send(emitter, job);
+            if (job.isFinished()) {
+                emitter.complete();
+            }
+        }
+    }
+
+    private void send(SseEmitter emitter, ScanJob job) {
+        try {
+            emitter.send(SseEmitter.event().name(STATUS_EVENT).data(describe(job)));
+        } catch (IOException | IllegalStateException e) {
+            // The client went away; the emitter's own callbacks unregister it
+            log.debug("Could not send scan job {} update: {}", job.getJobId(), e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${scan.jobs.cleanup-interval:PT5M}")
+    public void evictFinishedJobs() {
+        Instant cutoff = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(cutoff));
+    }
+
+    private record QueuedScan(ScanJob job, Runnable task) {
+    }
+
+    /**
+     * The jobs of one scanner profile. Guarded by its own monitor.
+     */
+    private static class ProfileQueue {
+        private final String profileName;
+        private final Deque<QueuedScan> waiting = new ArrayDeque<>();
+        // True while the profile is queued on, or running in, the executor
+        private boolean scheduled;
+        private QueuedScan running;
+        private Instant runningSince;
+        private long averageDurationMillis = -1;
+
+        ProfileQueue(String profileName) {
+            this.profileName = profileName;
+        }
+
+        synchronized int depth() {
+            return waiting.size();
+        }
+
+        List<ScanJob> waitingJobs() {
+            List<ScanJob> result = new ArrayList<>(waiting.size());
+            waiting.forEach(queued -> result.add(queued.job));
+            return result;
+        }
+
+        void recordDuration(long millis) {
+            averageDurationMillis = averageDurationMillis < 0
+                    ? millis
+                    : Math.round(DURATION_SMOOTHING * millis + (1 - DURATION_SMOOTHING) * averageDurationMillis);
+        }
+
+        long averageDurationMillis(Duration fallback) {
+            return averageDurationMillis < 0 ? fallback.toMillis() : averageDurationMillis;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.bkb.scanner.service;
+
+import com.bkb.scanner.util.PageTasks;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Splits the PDF of a batch scan into one PDF per document.
+ *
+ * Pages are processed in parallel on the scan page pool. PDFBox documents are not
+ * thread safe, so every task opens its own view of the source file; page content is
+ * cached in temp files rather than on the heap, which keeps large colour scans out
+ * of memory.
+ */
+@Slf4j
+@Service
+public class ScanPageSplitter {
+
+    // Rendering resolution for blank page detection: enough to see text, cheap to render
+    private static final float BLANK_DETECTION_DPI = 24f;
+    // Grey levels below this count as ink
+    private static final int INK_THRESHOLD = 160;
+
+    @Autowired
+    @Qualifier("scanPagePool")
+    private ForkJoinPool scanPagePool;
+
+    // A page with a smaller share of ink pixels is treated as a blank separator sheet
+    @Value("${scan.batch.blank-page-max-ink:0.002}")
+    private double blankPageMaxInk;
+
+    public int countPages(Path pdf) throws IOException {
+        try (PDDocument document = load(pdf)) {
+            return document.getNumberOfPages();
+        }
+    }
+
+    /**
+     * Writes one PDF per entry of pageCounts, taking the pages in order. The counts
+     * must add up to the number of pages in the scan.
+     */
+    public List<Path> splitByPageCounts(Path pdf, List<Integer> pageCounts, Path dir, String prefix) throws IOException {
+        int pages = countPages(pdf);
+        int expected = pageCounts.stream().mapToInt(Integer::intValue).sum();
+        if (pages != expected) {
+            throw new IOException("The scan has " + pages + " pages but the batch describes " + expected);
+        }
+
+        List<int[]> ranges = new ArrayList<>();
+        int from = 0;
+        for (int count : pageCounts) {
+            ranges.add(new int[]{from, from + count});
+            from += count;
+        }
+        return writeRanges(pdf, ranges, dir, prefix);
+    }
+
+    /**
+     * Writes one PDF per run of pages between blank separator sheets. The blank
+     * sheets themselves are dropped.
+     */
+    public List<Path> splitOnBlankPages(Path pdf, Path dir, String prefix) throws IOException {
+        boolean[] blank = findBlankPages(pdf);
+
+        List<int[]> ranges = new ArrayList<>();
+        int start = -1;
+        for (int page = 0; page <= blank.length; page++) {
+            boolean separator = page == blank.length || blank[page];
+            if (separator && start >= 0) {
+                ranges.add(new int[]{start, page});
+                start = -1;
+            } else if (!separator && start < 0) {
+                start = page;
+            }
+        }
+        log.debug("Found {} blank pages in {}, giving {} documents", blank.length - pageCount(ranges),
+                pdf.getFileName(), ranges.size());
+        return writeRanges(pdf, ranges, dir, prefix);
+    }
+
+    /**
+     * Renders every page at low resolution, one slice of the document per task
+     */
+    boolean[] findBlankPages(Path pdf) throws IOException {
+        int pages = countPages(pdf);
+        boolean[] blank = new boolean[pages];
+        int slices = Math.min(pages, scanPagePool.getParallelism());
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int slice = 0; slice < slices; slice++) {
+            int from = pages * slice / slices;
+            int to = pages * (slice + 1) / slices;
+            tasks.add(() -> {
+                try (PDDocument document = load(pdf)) {
+                    PDFRenderer renderer = new PDFRenderer(document);
+                    for (int page = from; page < to; page++) {
+                        BufferedImage image = renderer.renderImageWithDPI(page, BLANK_DETECTION_DPI, ImageType.GRAY);
+                        blank[page] = isBlank(image, blankPageMaxInk);
+                    }
+                }
+                return null;
+            });
+        }
+        PageTasks.runAll(scanPagePool, tasks);
+        return blank;
+    }
+
+    static boolean isBlank(BufferedImage image, double maxInk) {
+        Raster raster = image.getRaster();
+        long ink = 0;
+        for (int y = 0; y < raster.getHeight(); y++) {
+            for (int x = 0; x < raster.getWidth(); x++) {
+                if (raster.getSample(x, y, 0) < INK_THRESHOLD) {
+                    ink++;
+                }
+            }
+        }
+        return ink <= maxInk * raster.getWidth() * raster.getHeight();
+    }
+
+    /**
+     * Writes each page range to its own file in parallel. Nothing is left behind if any range fails.
+     */
+    private List<Path> writeRanges(Path pdf, List<int[]> ranges, Path dir, String prefix) throws IOException {
+        List<Path> outputs = new ArrayList<>();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < ranges.size(); i++) {
+            int[] range = ranges.get(i);
+            Path output = dir.resolve(String.format("%s%03d.pdf", prefix, i + 1));
+            outputs.add(output);
+            tasks.add(() -> {
+                try (PDDocument source = load(pdf);
+                     PDDocument target = new PDDocument(IOUtils.createTempFileOnlyStreamCache())) {
+                    for (int page = range[0]; page < range[1]; page++) {
+                        target.importPage(source.getPage(page));
+                    }
+                    target.save(output.toFile());
+                }
+                return null;
+            });
+        }
+        try {
+            PageTasks.runAll(scanPagePool, tasks);
+        } catch (IOException | RuntimeException e) {
+            for (Path output : outputs) {
+                Files.deleteIfExists(output);
+            }
+            throw e;
+        }
+        return outputs;
+    }
+
+    private static int pageCount(List<int[]> ranges) {
+        return ranges.stream().mapToInt(range -> range[1] - range[0]).sum();
+    }
+
+    private static PDDocument load(Path pdf) throws IOException {
+        return Loader.loadPDF(pdf.toFile(), IOUtils.createTempFileOnlyStreamCache());
+    }
+}
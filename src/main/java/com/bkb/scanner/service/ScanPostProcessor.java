@@ -0,0 +1,312 @@
+package com.bkb.scanner.service;
+
+import com.bkb.scanner.util.PageTasks;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceGray;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.w3c.dom.Node;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Shrinks the pages of a PNG scan before they are stored.
+ *
+ * Every page is downsampled to the target resolution, optionally converted to greyscale
+ * and recompressed losslessly, one page per task on the scan page pool. A scan of more
+ * than one page is combined into a single PDF; each task writes its page as a one-page
+ * PDF so the expensive image compression also runs in parallel, and the pages are then
+ * only copied into the final document.
+ */
+@Slf4j
+@Service
+public class ScanPostProcessor {
+
+    private static final String PNG_METADATA_FORMAT = "javax_imageio_png_1.0";
+    private static final double METERS_PER_INCH = 0.0254;
+    // Page size of scans that carry no resolution, neither in the file nor in the profile
+    private static final int UNKNOWN_DPI = 300;
+
+    @Autowired
+    @Qualifier("scanPagePool")
+    private ForkJoinPool scanPagePool;
+
+    @Value("${scan.post-processing.enabled:true}")
+    private boolean enabled;
+
+    // Pages scanned at a higher resolution are scaled down to this; 0 keeps the scanner resolution
+    @Value("${scan.post-processing.target-dpi:200}")
+    private int targetDpi;
+
+    @Value("${scan.post-processing.greyscale:false}")
+    private boolean greyscale;
+
+    // Store single page PNG scans as PDF too; scans of several pages always become one PDF
+    @Value("${scan.post-processing.single-page-pdf:false}")
+    private boolean singlePagePdf;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Processes the pages in parallel and returns the one file to store: the PNG of a single
+     * page scan or a PDF of all pages in order. The page files themselves are left in place.
+     *
+     * @param profileDpi resolution of the scanner profile, used when a page does not record its own
+     */
+    public Path process(List<Path> pages, Path dir, String prefix, Integer profileDpi) throws IOException {
+        boolean toPdf = singlePagePdf || pages.size() > 1;
+        List<Path> outputs = new ArrayList<>(pages.size());
+        List<Callable<Path>> tasks = new ArrayList<>(pages.size());
+        for (int i = 0; i < pages.size(); i++) {
+            Path page = pages.get(i);
+            Path output = dir.resolve(String.format("%s_page%03d.%s", prefix, i + 1, toPdf ? "pdf" : "png"));
+            outputs.add(output);
+            tasks.add(() -> processPage(page, output, profileDpi, toPdf));
+        }
+
+        long started = System.nanoTime();
+        try {
+            PageTasks.runAll(scanPagePool, tasks);
+            Path result = dir.resolve(prefix + (toPdf ? ".pdf" : ".png"));
+            if (toPdf) {
+                combine(outputs, result);
+            } else {
+                Files.move(outputs.get(0), result);
+            }
+            log.debug("Post-processed {} pages of {} in {} ms", pages.size(), prefix,
+                    (System.nanoTime() - started) / 1_000_000);
+            return result;
+        } finally {
+            for (Path output : outputs) {
+                Files.deleteIfExists(output);
+            }
+        }
+    }
+
+    private Path processPage(Path page, Path output, Integer profileDpi, boolean toPdf) throws IOException {
+        BufferedImage image;
+        Double recordedDpi;
+        try (ImageInputStream input = ImageIO.createImageInputStream(page.toFile())) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("Scanned page " + page.getFileName() + " is not a readable image");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, false);
+                image = reader.read(0);
+                recordedDpi = readDpi(reader.getImageMetadata(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+
+        double dpi = recordedDpi != null ? recordedDpi : profileDpi != null ? profileDpi : UNKNOWN_DPI;
+        // Before scaling, so only a third of the samples has to be interpolated
+        if (greyscale && image.getColorModel().getNumComponents() > 1) {
+            image = toGrey(image);
+        }
+        if (targetDpi > 0 && dpi > targetDpi) {
+            image = downsample(image, targetDpi / dpi, image.getColorModel().getNumComponents() == 1);
+            dpi = targetDpi;
+        }
+
+        if (toPdf) {
+            writePdfPage(image, dpi, output);
+        } else {
+            writePng(image, dpi, output);
+        }
+        return output;
+    }
+
+    /**
+     * Halves the image until it is within a factor of two of the target, then scales the rest
+     * of the way. Bilinear steps of at most 2x keep text sharp without the cost of bicubic.
+     */
+    static BufferedImage downsample(BufferedImage image, double scale, boolean grey) {
+        int type = grey ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_INT_RGB;
+        int targetWidth = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int targetHeight = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        BufferedImage current = image;
+        while (current.getWidth() / 2 >= targetWidth && current.getHeight() / 2 >= targetHeight) {
+            current = redraw(current, current.getWidth() / 2, current.getHeight() / 2, type);
+        }
+        if (current.getWidth() != targetWidth || current.getHeight() != targetHeight || current.getType() != type) {
+            current = redraw(current, targetWidth, targetHeight, type);
+        }
+        return current;
+    }
+
+    /**
+     * Luma of the sRGB values. Drawing into a TYPE_BYTE_GRAY image would convert through
+     * a linear grey space instead, which washes out dark text.
+     */
+    static BufferedImage toGrey(BufferedImage image) {
+        int width = image.getWidth();
+        BufferedImage grey = new BufferedImage(width, image.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+        WritableRaster raster = grey.getRaster();
+        int[] rgb = new int[width];
+        int[] luma = new int[width];
+        for (int y = 0; y < image.getHeight(); y++) {
+            image.getRGB(0, y, width, 1, rgb, 0, width);
+            for (int x = 0; x < width; x++) {
+                int pixel = rgb[x];
+                luma[x] = (77 * ((pixel >> 16) & 0xff) + 150 * ((pixel >> 8) & 0xff) + 29 * (pixel & 0xff)) >> 8;
+            }
+            raster.setPixels(0, y, width, 1, luma);
+        }
+        return grey;
+    }
+
+    private static BufferedImage redraw(BufferedImage image, int width, int height, int type) {
+        BufferedImage result = new BufferedImage(width, height, type);
+        Graphics2D graphics = result.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return result;
+    }
+
+    private static void writePdfPage(BufferedImage image, double dpi, Path output) throws IOException {
+        try (PDDocument document = new PDDocument(IOUtils.createTempFileOnlyStreamCache())) {
+            float width = (float) (image.getWidth() * 72 / dpi);
+            float height = (float) (image.getHeight() * 72 / dpi);
+            PDPage page = new PDPage(new PDRectangle(width, height));
+            document.addPage(page);
+            PDImageXObject xObject = image.getType() == BufferedImage.TYPE_BYTE_GRAY
+                    ? greyImage(document, image)
+                    : LosslessFactory.createFromImage(document, image);
+            try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                content.drawImage(xObject, 0, 0, width, height);
+            }
+            document.save(output.toFile());
+        }
+    }
+
+    /**
+     * LosslessFactory reads grey images through getRGB, which treats the samples as linear
+     * grey and lightens them, so the samples are deflated as they are instead.
+     */
+    private static PDImageXObject greyImage(PDDocument document, BufferedImage image) throws IOException {
+        int width = image.getWidth();
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try (DeflaterOutputStream out = new DeflaterOutputStream(encoded, deflater)) {
+            byte[] row = new byte[width];
+            for (int y = 0; y < image.getHeight(); y++) {
+                image.getRaster().getDataElements(0, y, width, 1, row);
+                out.write(row);
+            }
+        } finally {
+            deflater.end();
+        }
+        return new PDImageXObject(document, new ByteArrayInputStream(encoded.toByteArray()), COSName.FLATE_DECODE,
+                width, image.getHeight(), 8, PDDeviceGray.INSTANCE);
+    }
+
+    /**
+     * Writes a PNG and records its resolution in the pHYs chunk
+     */
+    static void writePng(BufferedImage image, double dpi, Path output) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(output.toFile())) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            // Deflate level 6: the higher levels cost several times the CPU on noisy scans for a few percent
+            param.setCompressionQuality(0.25f);
+
+            IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image), param);
+            String pixelsPerMeter = Long.toString(Math.round(dpi / METERS_PER_INCH));
+            IIOMetadataNode physical = new IIOMetadataNode("pHYs");
+            physical.setAttribute("pixelsPerUnitXAxis", pixelsPerMeter);
+            physical.setAttribute("pixelsPerUnitYAxis", pixelsPerMeter);
+            physical.setAttribute("unitSpecifier", "meter");
+            IIOMetadataNode root = new IIOMetadataNode(PNG_METADATA_FORMAT);
+            root.appendChild(physical);
+            metadata.mergeTree(PNG_METADATA_FORMAT, root);
+
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, metadata), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * Resolution from the PNG pHYs chunk, or null when the file does not record one
+     */
+    private static Double readDpi(IIOMetadata metadata) {
+        if (metadata == null || !List.of(metadata.getMetadataFormatNames()).contains(PNG_METADATA_FORMAT)) {
+            return null;
+        }
+        for (Node node = metadata.getAsTree(PNG_METADATA_FORMAT).getFirstChild(); node != null; node = node.getNextSibling()) {
+            if ("pHYs".equals(node.getNodeName())) {
+                IIOMetadataNode physical = (IIOMetadataNode) node;
+                if (!"meter".equals(physical.getAttribute("unitSpecifier"))) {
+                    return null;
+                }
+                double pixelsPerMeter = Double.parseDouble(physical.getAttribute("pixelsPerUnitXAxis"));
+                return pixelsPerMeter > 0 ? pixelsPerMeter * METERS_PER_INCH : null;
+            }
+        }
+        return null;
+    }
+
+    private static void combine(List<Path> pagePdfs, Path output) throws IOException {
+        List<PDDocument> sources = new ArrayList<>(pagePdfs.size());
+        try (PDDocument target = new PDDocument(IOUtils.createTempFileOnlyStreamCache())) {
+            for (Path pagePdf : pagePdfs) {
+                PDDocument source = Loader.loadPDF(pagePdf.toFile(), IOUtils.createTempFileOnlyStreamCache());
+                sources.add(source);
+                target.importPage(source.getPage(0));
+            }
+            target.save(output.toFile());
+        } finally {
+            for (PDDocument source : sources) {
+                source.close();
+            }
+        }
+    }
+}
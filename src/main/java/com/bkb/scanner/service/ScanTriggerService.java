@@ -1,36 +1,74 @@
 package com.bkb.scanner.service;
 
+import com.bkb.scanner.dto.ScanBatchItem;
+import com.bkb.scanner.dto.ScanBatchRequest;
+import com.bkb.scanner.dto.ScanTriggerRequest;
 import com.bkb.scanner.entity.Document;
+import com.bkb.scanner.entity.ScannerProfile;
 import com.bkb.scanner.entity.User;
+import com.bkb.scanner.exception.BadRequestException;
+import com.bkb.scanner.exception.NotFoundException;
 import com.bkb.scanner.repository.CaseRepository;
 import com.bkb.scanner.repository.DocumentRepository;
 import com.bkb.scanner.repository.PartyRepository;
+import com.bkb.scanner.repository.ScannerProfileRepository;
 import com.bkb.scanner.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.text.SimpleDateFormat;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
-import java.util.Scanner;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
+/**
+ * Scans documents with NAPS2.
+ *
+ * A scan is submitted as a job and runs on the scan executor, so neither an HTTP worker
+ * nor a database connection is held while the scanner works. The database transaction
+ * is only opened once the scanner has written its output file.
+ */
+@Slf4j
 @Service
 public class ScanTriggerService {
 
+    private static final int MAX_ERROR_DETAILS = 2000;
+    private static final Duration KILL_GRACE = Duration.ofSeconds(5);
+    private static final String SCAN_FILE_GLOB = "scan_*";
+    private static final int MAX_BATCH_DOCUMENTS = 50;
+    private static final List<String> BATCH_SEPARATORS = List.of(ScanBatchRequest.SEPARATOR_PAGE_COUNT,
+            ScanBatchRequest.SEPARATOR_BLANK_PAGE, ScanBatchRequest.SEPARATOR_PATCH_T);
+
     @Autowired private DocumentRepository documentRepository;
     @Autowired private CaseRepository caseRepository;
     @Autowired private PartyRepository partyRepository;
     @Autowired private UserRepository userRepository;
+    @Autowired private DocumentStorageService documentStorageService;
+    @Autowired private DocumentVersionService documentVersionService;
+    @Autowired private ScannerProfileRepository scannerProfileRepository;
+    @Autowired private ScanJobService scanJobService;
+    @Autowired private ScanPageSplitter scanPageSplitter;
+    @Autowired private ScanPostProcessor scanPostProcessor;
+    @Autowired private DocumentBatchUploadService documentBatchUploadService;
+    @Autowired private PlatformTransactionManager transactionManager;
 
     @Value("${naps2.path.windows}")
     private String naps2PathWindows;
@@ -38,43 +76,209 @@ public class ScanTriggerService {
     @Value("${naps2.path.mac}")
     private String naps2PathMac;
 
-    private int getNextVersionNumber(String ownerType, String ownerId, String documentType) {
-        List<Document> existingDocs = documentRepository.findByOwnerTypeAndOwnerIdAndDocumentType(
-                ownerType, ownerId, documentType
-        );
+    // Used for profiles without their own scan timeout
+    @Value("${scan.timeout.default:PT5M}")
+    private Duration defaultTimeout;
+
+    // Where NAPS2 writes its output; defaults to the system temp directory. On the same
+    // filesystem as the blob store, finished scans are renamed into place instead of copied.
+    @Value("${scan.work-dir:}")
+    private String workDir;
+
+    // Scan files older than this are left over from a crash and removed by the sweep
+    @Value("${scan.work-file-max-age:PT24H}")
+    private Duration workFileMaxAge;
+
+    /**
+     * Validates the request and queues the scan. Returns as soon as the job is queued.
+     */
+    public ScanJob submitScan(ScanTriggerRequest request) {
+        if (request.getProfileName() == null || request.getProfileName().isBlank()) {
+            throw new BadRequestException("profileName is required");
+        }
+        if (request.getDocumentType() == null || request.getDocumentType().isBlank()) {
+            throw new BadRequestException("documentType is required");
+        }
+        String ownerType = validateOwner(request.getOwnerType(), request.getOwnerId());
+        ScannerProfile profile = resolveProfile(request.getProfileName());
 
-        if (existingDocs.isEmpty()) {
-            return 1;
+        ScanJob job = new ScanJob(profile.getName(), ownerType, request.getOwnerId(), request.getDocumentType(),
+                request.getFormat(), currentUsername(), timeoutFor(profile), profileDpi(profile));
+        return scanJobService.submit(job, this::runScan);
+    }
+
+    /**
+     * Queues a batch scan: one pass through the ADF that is split into several documents
+     */
+    public ScanJob submitBatchScan(ScanBatchRequest request) {
+        if (request.getProfileName() == null || request.getProfileName().isBlank()) {
+            throw new BadRequestException("profileName is required");
+        }
+        String separator = request.getSeparator() != null ? request.getSeparator().toUpperCase() : null;
+        if (!BATCH_SEPARATORS.contains(separator)) {
+            throw new BadRequestException("separator must be one of " + BATCH_SEPARATORS);
+        }
+        List<ScanBatchItem> items = request.getDocuments();
+        if (items == null || items.isEmpty()) {
+            throw new BadRequestException("A batch scan needs at least one document");
+        }
+        if (items.size() > MAX_BATCH_DOCUMENTS) {
+            throw new BadRequestException("At most " + MAX_BATCH_DOCUMENTS + " documents can be scanned in one batch");
         }
+        for (ScanBatchItem item : items) {
+            if (item.getDocumentType() == null || item.getDocumentType().isBlank()) {
+                throw new BadRequestException("documentType is required for every document");
+            }
+            if (ScanBatchRequest.SEPARATOR_PAGE_COUNT.equals(separator)
+                    && (item.getPageCount() == null || item.getPageCount() < 1)) {
+                throw new BadRequestException("pageCount is required for every document when splitting by page count");
+            }
+        }
+        String ownerType = validateOwner(request.getOwnerType(), request.getOwnerId());
+        ScannerProfile profile = resolveProfile(request.getProfileName());
+
+        ScanJob job = new ScanJob(profile.getName(), ownerType, request.getOwnerId(), currentUsername(),
+                timeoutFor(profile), profileDpi(profile), separator, items);
+        return scanJobService.submit(job, this::runScan);
+    }
+
+    public ScanJob getJob(String jobId) {
+        return scanJobService.getJob(jobId, currentUsername());
+    }
+
+    private String validateOwner(String requestedOwnerType, String ownerId) {
+        String ownerType = requestedOwnerType != null ? requestedOwnerType.toUpperCase() : null;
+        if ("CASE".equals(ownerType)) {
+            if (!caseRepository.existsById(ownerId)) {
+                throw new NotFoundException("Case not found with id: " + ownerId);
+            }
+        } else if ("PARTY".equals(ownerType)) {
+            if (!partyRepository.existsById(ownerId)) {
+                throw new NotFoundException("Party not found with id: " + ownerId);
+            }
+        } else {
+            throw new BadRequestException("ownerType must be CASE or PARTY");
+        }
+        return ownerType;
+    }
+
+    /**
+     * Only configured profiles are queued: every profile name gets its own queue and gauge
+     */
+    private ScannerProfile resolveProfile(String profileName) {
+        return scannerProfileRepository.findByName(profileName)
+                .orElseThrow(() -> new NotFoundException("Scanner profile not found: " + profileName));
+    }
+
+    private Duration timeoutFor(ScannerProfile profile) {
+        return profile.getScanTimeoutSeconds() != null
+                ? Duration.ofSeconds(profile.getScanTimeoutSeconds())
+                : defaultTimeout;
+    }
+
+    /**
+     * Runs on a scan worker: drives NAPS2, writes the result to the blob store and then
+     * saves the documents in one short transaction.
+     * The job's files are removed before its final state is published, so a client that
+     * sees the job finish never finds them still in the work directory.
+     */
+    void runScan(ScanJob job) {
+        scanJobService.running(job);
+        Runnable publishOutcome;
+        try {
+            if (job.isBatch()) {
+                List<Path> parts = scanBatch(job);
 
-        int maxVersion = existingDocs.stream()
-                .mapToInt(Document::getVersion)
-                .max()
-                .orElse(0);
+                scanJobService.storing(job);
+                List<Document> documents = storeBatch(job, parts);
+                List<Long> documentIds = persist(documents, status -> persistBatch(job, documents));
+                log.info("Scan job {} stored {} documents", job.getJobId(), documentIds.size());
+                publishOutcome = () -> scanJobService.completed(job, documentIds);
+            } else {
+                Path outputFile = scan(job);
 
-        System.out.println("Found " + existingDocs.size() + " existing versions, max version: " + maxVersion);
-        return maxVersion + 1;
+                scanJobService.storing(job);
+                Document stored = storeScan(job, outputFile);
+                Document saved = persist(List.of(stored), status -> persistScan(job, stored));
+                log.info("Scan job {} stored document {}", job.getJobId(), saved.getId());
+                publishOutcome = () -> scanJobService.completed(job, saved.getId());
+            }
+        } catch (ScanTimeoutException e) {
+            log.warn("Scan job {} on profile {} timed out after {}", job.getJobId(), job.getProfileName(), job.getTimeout());
+            publishOutcome = () -> scanJobService.timedOut(job);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            publishOutcome = () -> scanJobService.failed(job, "Scan was interrupted");
+        } catch (Exception e) {
+            log.warn("Scan job {} failed: {}", job.getJobId(), e.getMessage());
+            publishOutcome = () -> scanJobService.failed(job, "Scan failed: " + e.getMessage());
+        } finally {
+            // Whatever is left over (partial output, split parts not moved into storage)
+            deleteJobFiles(job);
+        }
+        publishOutcome.run();
     }
 
-    @Transactional
-    public Document triggerNaps2Scan(String profileName, String ownerType, String ownerId,
-                                     String documentType, String format) throws IOException, InterruptedException {
+    /**
+     * Runs NAPS2 for the job and returns the file to store. PNG scans come out one file per
+     * page and go through the post-processor, which returns a single PNG or PDF.
+     */
+    private Path scan(ScanJob job) throws IOException, InterruptedException {
+        Path dir = workDir();
+        Files.createDirectories(dir);
+        String prefix = filePrefix(job);
+        if (job.isPng() && scanPostProcessor.isEnabled()) {
+            runNaps2(job, dir.resolve(prefix + "_$(nnn).png"), List.of());
+            List<Path> pages = numberedFiles(dir, prefix, "png");
+            if (pages.isEmpty()) {
+                throw new IOException("NAPS2 finished without writing any pages");
+            }
+            return scanPostProcessor.process(pages, dir, prefix, job.getDpi());
+        }
 
-        if ("CASE".equalsIgnoreCase(ownerType) && !caseRepository.existsById(ownerId)) {
-            throw new RuntimeException("Case not found with id: " + ownerId);
-        } else if ("PARTY".equalsIgnoreCase(ownerType) && !partyRepository.existsById(ownerId)) {
-            throw new RuntimeException("Party not found with id: " + ownerId);
+        Path outputFile = dir.resolve(prefix + (job.isPng() ? ".png" : ".pdf"));
+        runNaps2(job, outputFile, List.of());
+        if (!Files.exists(outputFile)) {
+            throw new IOException("NAPS2 finished without writing " + outputFile.getFileName());
         }
+        return outputFile;
+    }
 
-        // Get current user
-        User currentUser = getCurrentUser();
+    /**
+     * Runs NAPS2 for a batch job and returns one PDF per document of the batch, in feed order
+     */
+    private List<Path> scanBatch(ScanJob job) throws IOException, InterruptedException {
+        Path dir = workDir();
+        Files.createDirectories(dir);
+        String prefix = filePrefix(job);
+        List<ScanBatchItem> items = job.getBatchItems();
 
-        String tempDir = System.getProperty("java.io.tmpdir");
-        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
+        List<Path> parts;
+        if (ScanBatchRequest.SEPARATOR_PATCH_T.equals(job.getSeparator())) {
+            // NAPS2 recognises the separator sheets itself and writes one numbered file per document
+            runNaps2(job, dir.resolve(prefix + "_$(nnn).pdf"), List.of("--splitpatcht"));
+            parts = numberedFiles(dir, prefix, "pdf");
+        } else {
+            Path outputFile = dir.resolve(prefix + ".pdf");
+            runNaps2(job, outputFile, List.of());
+            if (!Files.exists(outputFile)) {
+                throw new IOException("NAPS2 finished without writing " + outputFile.getFileName());
+            }
+            parts = ScanBatchRequest.SEPARATOR_PAGE_COUNT.equals(job.getSeparator())
+                    ? scanPageSplitter.splitByPageCounts(outputFile,
+                            items.stream().map(ScanBatchItem::getPageCount).toList(), dir, prefix + "_doc")
+                    : scanPageSplitter.splitOnBlankPages(outputFile, dir, prefix + "_doc");
+            Files.deleteIfExists(outputFile);
+        }
+
+        if (parts.size() != items.size()) {
+            throw new IOException("Found " + parts.size() + " documents in the scan but the batch describes " + items.size());
+        }
+        return parts;
+    }
 
-        String fileExtension = (format != null && format.equalsIgnoreCase("png")) ? ".png" : ".pdf";
-        String fileName = "scan_" + ownerId + "_" + timestamp + fileExtension;
-        Path outputFilePath = Paths.get(tempDir, fileName);
+    private void runNaps2(ScanJob job, Path output, List<String> extraArgs) throws IOException, InterruptedException {
+        Path logFile = workDir().resolve(filePrefix(job) + ".log");
 
         List<String> command = new ArrayList<>();
         String osName = System.getProperty("os.name").toLowerCase();
@@ -87,68 +291,254 @@ public class ScanTriggerService {
         }
 
         command.add("-p");
-        command.add(profileName);
+        command.add(job.getProfileName());
         command.add("-o");
-        command.add(outputFilePath.toString());
+        command.add(output.toString());
+        command.addAll(extraArgs);
         command.add("--force");
 
-        ProcessBuilder processBuilder = new ProcessBuilder(command);
-        System.out.println("Executing command: " + String.join(" ", processBuilder.command()));
-        Process process = processBuilder.start();
-        int exitCode = process.waitFor();
+        // Output goes to a file so a chatty scanner can never block on a full pipe
+        ProcessBuilder processBuilder = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(logFile.toFile());
+        log.debug("Scan job {} executing: {}", job.getJobId(), String.join(" ", processBuilder.command()));
+        try {
+            Process process = processBuilder.start();
+            boolean exited;
+            try {
+                exited = process.waitFor(job.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                kill(process);
+                throw e;
+            }
+            if (!exited) {
+                kill(process);
+                throw new ScanTimeoutException();
+            }
 
-        if (exitCode != 0) {
-            InputStream errorStream = process.getErrorStream();
-            String errorDetails;
-            try (Scanner s = new Scanner(errorStream).useDelimiter("\\A")) {
-                errorDetails = s.hasNext() ? s.next() : "No details available.";
+            int exitCode = process.exitValue();
+            if (exitCode != 0) {
+                throw new IOException("NAPS2 process failed with exit code " + exitCode + ". Details: " + readDetails(logFile));
             }
-            throw new IOException("NAPS2 process failed with exit code " + exitCode + ". Details: " + errorDetails);
+        } finally {
+            Files.deleteIfExists(logFile);
         }
+    }
 
-        byte[] fileContent = Files.readAllBytes(outputFilePath);
+    /**
+     * The files NAPS2 numbered with $(nnn), in order
+     */
+    private static List<Path> numberedFiles(Path dir, String prefix, String extension) throws IOException {
+        String pattern = Pattern.quote(prefix) + "_\\d+\\." + extension;
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.getFileName().toString().matches(pattern))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * The profile's resolution, e.g. 300 for "300dpi", or null when it is not set
+     */
+    private static Integer profileDpi(ScannerProfile profile) {
+        return Optional.ofNullable(profile.getResolution())
+                .map(resolution -> resolution.replaceAll("\\D", ""))
+                .filter(digits -> !digits.isEmpty())
+                .map(Integer::valueOf)
+                .orElse(null);
+    }
+
+    private static String filePrefix(ScanJob job) {
+        return "scan_" + job.getJobId();
+    }
 
+    private void deleteJobFiles(ScanJob job) {
+        Path dir = workDir();
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, filePrefix(job) + "*")) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            log.warn("Could not clean up files of scan job {}", job.getJobId(), e);
+        }
+    }
+
+    /**
+     * Removes scan output and logs that outlived their job, e.g. after the server was killed
+     * in the middle of a scan. Running scans never get near the age limit.
+     */
+    @Scheduled(fixedDelayString = "${scan.work-dir-cleanup-interval:PT1H}")
+    public void removeStaleScanFiles() {
+        Path dir = workDir();
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        Instant cutoff = Instant.now().minus(workFileMaxAge);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, SCAN_FILE_GLOB)) {
+            for (Path file : files) {
+                if (Files.isRegularFile(file) && Files.getLastModifiedTime(file).toInstant().isBefore(cutoff)) {
+                    Files.deleteIfExists(file);
+                    log.info("Removed stale scan file {}", file);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not sweep scan work directory {}", dir, e);
+        }
+    }
+
+    private Path workDir() {
+        return workDir == null || workDir.isBlank()
+                ? Paths.get(System.getProperty("java.io.tmpdir"))
+                : Paths.get(workDir);
+    }
+
+    /**
+     * Stops a hung NAPS2 together with any helper processes it started, so the device is released
+     */
+    private static void kill(Process process) throws InterruptedException {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+        process.waitFor(KILL_GRACE.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes the scan output to the blob store, before any transaction is opened
+     */
+    private Document storeScan(ScanJob job, Path outputFile) {
+        Document doc = newDocument(job, job.getDocumentType(), outputFile,
+                outputFile.getFileName().toString().endsWith(".png") ? "image/png" : "application/pdf");
+        try {
+            documentStorageService.storeFile(doc, outputFile);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to store scan output: " + e.getMessage(), e);
+        }
+        documentVersionService.createMissingCounters(job.getOwnerType(), job.getOwnerId(),
+                List.of(job.getDocumentType()));
+        return doc;
+    }
+
+    /**
+     * Writes every document of a batch scan to the blob store, before any transaction is
+     * opened. If one cannot be stored, the ones stored before it are released again.
+     */
+    private List<Document> storeBatch(ScanJob job, List<Path> parts) {
+        List<Document> documents = new ArrayList<>();
+        try {
+            for (int i = 0; i < parts.size(); i++) {
+                Document doc = newDocument(job, job.getBatchItems().get(i).getDocumentType(), parts.get(i),
+                        "application/pdf");
+                try {
+                    documentStorageService.storeFile(doc, parts.get(i));
+                } catch (IOException e) {
+                    throw new RuntimeException("Failed to store scanned document " + (i + 1) + ": " + e.getMessage(), e);
+                }
+                documents.add(doc);
+            }
+            documentVersionService.createMissingCounters(job.getOwnerType(), job.getOwnerId(),
+                    documents.stream().map(Document::getDocumentType).distinct().toList());
+        } catch (RuntimeException e) {
+            documents.forEach(documentStorageService::releaseStored);
+            throw e;
+        }
+        return documents;
+    }
+
+    private static Document newDocument(ScanJob job, String documentType, Path file, String mimeType) {
         Document doc = new Document();
         doc.setName(documentType);
-        doc.setOwnerType(ownerType.toUpperCase());
-        doc.setOwnerId(ownerId);
+        doc.setOwnerType(job.getOwnerType());
+        doc.setOwnerId(job.getOwnerId());
         doc.setDocumentType(documentType);
-        doc.setOriginalFilename(fileName);
-        doc.setMimeType(format != null && format.equalsIgnoreCase("png") ? "image/png" : "application/pdf");
-        doc.setSizeInBytes(fileContent.length);
-        doc.setContent(fileContent);
+        doc.setOriginalFilename(file.getFileName().toString());
+        doc.setMimeType(mimeType);
+        return doc;
+    }
+
+    /**
+     * Saves stored documents in a short transaction, releasing their payloads if it fails
+     */
+    private <T> T persist(List<Document> stored, TransactionCallback<T> callback) {
+        try {
+            return new TransactionTemplate(transactionManager).execute(callback);
+        } catch (RuntimeException e) {
+            stored.forEach(documentStorageService::releaseStored);
+            throw e;
+        }
+    }
+
+    private Document persistScan(ScanJob job, Document doc) {
+        String ownerType = job.getOwnerType();
+        String ownerId = job.getOwnerId();
+        String documentType = job.getDocumentType();
+        User currentUser = userRepository.findByUsername(job.getSubmittedBy())
+                .orElseThrow(() -> new RuntimeException("User not found: " + job.getSubmittedBy()));
+
         doc.setStatus("Submitted");
-        doc.setUploadedByUser(currentUser);  // Changed from setUploadedBy(String)
+        doc.setUploadedByUser(currentUser);
 
-        int nextVersion = getNextVersionNumber(ownerType.toUpperCase(), ownerId, documentType);
+        int nextVersion = documentVersionService.allocateNextVersion(ownerType, ownerId, documentType);
         doc.setVersion(nextVersion);
 
+        documentRepository.clearCurrentVersion(ownerType, ownerId, documentType);
         doc.setIsCurrentForCase(true);
 
-        if ("CASE".equalsIgnoreCase(ownerType)) {
+        if ("CASE".equals(ownerType)) {
             doc.setOwnerCase(caseRepository.getReferenceById(ownerId));
         } else {
             doc.setOwnerParty(partyRepository.getReferenceById(ownerId));
         }
 
-        Document savedDoc = documentRepository.save(doc);
+        return documentRepository.save(doc);
+    }
 
-        Files.delete(outputFilePath);
+    private List<Long> persistBatch(ScanJob job, List<Document> documents) {
+        String ownerType = job.getOwnerType();
+        String ownerId = job.getOwnerId();
+        User currentUser = userRepository.findByUsername(job.getSubmittedBy())
+                .orElseThrow(() -> new RuntimeException("User not found: " + job.getSubmittedBy()));
 
-        return savedDoc;
+        for (Document doc : documents) {
+            doc.setStatus("Submitted");
+            doc.setUploadedByUser(currentUser);
+            doc.setIsAdHoc(false);
+            if ("CASE".equals(ownerType)) {
+                doc.setOwnerCase(caseRepository.getReferenceById(ownerId));
+            } else {
+                doc.setOwnerParty(partyRepository.getReferenceById(ownerId));
+            }
+        }
+
+        documentBatchUploadService.saveAll(ownerType, ownerId, documents, job.getSubmittedBy(), true);
+        return documents.stream().map(Document::getId).toList();
     }
 
-    /**
-     * Get current user from Spring Security context
-     */
-    private User getCurrentUser() {
+    private static String readDetails(Path logFile) {
+        try {
+            String details = Files.readString(logFile, StandardCharsets.UTF_8).trim();
+            if (details.isEmpty()) {
+                return "No details available.";
+            }
+            return details.length() > MAX_ERROR_DETAILS ? details.substring(0, MAX_ERROR_DETAILS) : details;
+        } catch (IOException e) {
+            return "No details available.";
+        }
+    }
+
+    private String currentUsername() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication != null && authentication.isAuthenticated() &&
                 !"anonymousUser".equals(authentication.getPrincipal())) {
-            String username = authentication.getName();
-            return userRepository.findByUsername(username)
-                    .orElseThrow(() -> new RuntimeException("User not found: " + username));
+            return authentication.getName();
         }
         throw new RuntimeException("No authenticated user found");
     }
-}
\ No newline at end of file
+
+    private static class ScanTimeoutException extends IOException {
+        ScanTimeoutException() {
+            super("Scan timed out");
+        }
+    }
+}
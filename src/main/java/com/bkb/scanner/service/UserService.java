@@ -26,6 +26,7 @@ public class UserService {
     @Autowired private UserRepository userRepository;
     @Autowired private RoleRepository roleRepository;
     @Autowired private PasswordEncoder passwordEncoder;
+    @Autowired private IdSequenceService idSequenceService;
 
     /**
      * Converts a User entity to a UserDto for sending to the frontend.
@@ -48,20 +49,6 @@ public class UserService {
         return dto;
     }
 
-    /**
-     * Generates the next sequential user ID (e.g., USER-006).
-     */
-    private String getNextUserId() {
-        User lastUser = userRepository.findTopByOrderByUserIdDesc();
-        if (lastUser == null) {
-            return "USER-001"; // This is the first user in the system.
-        }
-        String lastId = lastUser.getUserId();
-        int lastNumber = Integer.parseInt(lastId.substring(5));
-        int newNumber = lastNumber + 1;
-        return String.format("USER-%03d", newNumber);
-    }
-
     @Transactional(readOnly = true)
     public List<UserDto> findAllUsers() {
         return userRepository.findAll().stream()
@@ -94,7 +81,7 @@ public class UserService {
 
         User newUser = new User();
 
-        newUser.setUserId(getNextUserId());
+        newUser.setUserId(idSequenceService.nextUserId());
         newUser.setUsername(request.getEmail().split("@")[0]);
         newUser.setPassword(passwordEncoder.encode(request.getPassword()));
         newUser.setName(request.getName());
@@ -0,0 +1,58 @@
+package com.bkb.scanner.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Storage for document payloads. Documents keep only the key of their payload in
+ * the database; the bytes live in the blob store.
+ * Keys are write-once: a stored blob is never modified in place.
+ */
+public interface BlobStore {
+
+    /**
+     * Stores the stream under the given key and returns the number of bytes written.
+     * The blob only becomes visible once it has been written completely.
+     */
+    long put(String key, InputStream content) throws IOException;
+
+    /**
+     * Stores a local file under the given key and returns its size. The source file is
+     * gone afterwards: file based stores move it into place, others copy and delete it.
+     */
+    default long putFile(String key, Path source) throws IOException {
+        long written;
+        try (InputStream content = Files.newInputStream(source)) {
+            written = put(key, content);
+        }
+        Files.delete(source);
+        return written;
+    }
+
+    /**
+     * Opens the blob for reading. The caller must close the stream.
+     */
+    InputStream open(String key) throws IOException;
+
+    boolean exists(String key);
+
+    long size(String key) throws IOException;
+
+    /**
+     * Deletes the blob, returning false if it did not exist.
+     */
+    boolean delete(String key) throws IOException;
+
+    /**
+     * Returns the local file backing the blob, if the store is file based.
+     */
+    Optional<Path> localPath(String key);
+
+    default String newKey() {
+        return UUID.randomUUID().toString().replace("-", "");
+    }
+}
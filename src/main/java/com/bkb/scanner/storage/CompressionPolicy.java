@@ -0,0 +1,50 @@
+package com.bkb.scanner.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Decides per MIME type whether a payload is compressed at rest.
+ * Formats that are already compressed (PDF, JPEG, zip-based office files) are
+ * stored as-is; only the configured types are deflated.
+ * Entries ending in "/*" match a whole top-level type.
+ */
+@Component
+public class CompressionPolicy {
+
+    private final boolean enabled;
+    private final List<String> compressibleTypes;
+
+    public CompressionPolicy(
+            @Value("${storage.compression.enabled:true}") boolean enabled,
+            @Value("${storage.compression.types:image/png,image/bmp,image/tiff,text/*,application/msword,application/vnd.ms-excel,application/rtf,application/xml,application/json}")
+            List<String> compressibleTypes) {
+        this.enabled = enabled;
+        this.compressibleTypes = compressibleTypes.stream()
+                .map(type -> type.trim().toLowerCase(Locale.ROOT))
+                .filter(type -> !type.isEmpty())
+                .toList();
+    }
+
+    public ContentCodec codecFor(String mimeType) {
+        if (!enabled || mimeType == null) {
+            return ContentCodec.IDENTITY;
+        }
+        String type = mimeType.toLowerCase(Locale.ROOT);
+        int params = type.indexOf(';');
+        if (params >= 0) {
+            type = type.substring(0, params).trim();
+        }
+        for (String candidate : compressibleTypes) {
+            if (candidate.endsWith("/*")
+                    ? type.startsWith(candidate.substring(0, candidate.length() - 1))
+                    : type.equals(candidate)) {
+                return ContentCodec.DEFLATE;
+            }
+        }
+        return ContentCodec.IDENTITY;
+    }
+}
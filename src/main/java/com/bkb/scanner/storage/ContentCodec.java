@@ -0,0 +1,84 @@
+package com.bkb.scanner.storage;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * How a payload is encoded at rest. The name is what gets stored on the document.
+ */
+public enum ContentCodec {
+
+    IDENTITY("identity") {
+        @Override
+        public InputStream encode(InputStream in) {
+            return in;
+        }
+
+        @Override
+        public InputStream decode(InputStream in) {
+            return in;
+        }
+    },
+
+    /**
+     * Deflate at its fastest level: most of the gain on scans and office files
+     * for a fraction of the CPU of the default level.
+     */
+    DEFLATE("deflate") {
+        @Override
+        public InputStream encode(InputStream in) {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            return new FilterInputStream(new DeflaterInputStream(in, deflater)) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        deflater.end();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public InputStream decode(InputStream in) {
+            return new InflaterInputStream(in);
+        }
+    };
+
+    private final String encodingName;
+
+    ContentCodec(String encodingName) {
+        this.encodingName = encodingName;
+    }
+
+    public String getEncodingName() {
+        return encodingName;
+    }
+
+    /**
+     * Wraps a stream of raw bytes so that reading it yields the encoded bytes.
+     */
+    public abstract InputStream encode(InputStream in);
+
+    /**
+     * Wraps a stream of stored bytes so that reading it yields the raw bytes.
+     */
+    public abstract InputStream decode(InputStream in);
+
+    public static ContentCodec fromEncodingName(String name) {
+        if (name == null) {
+            return IDENTITY;
+        }
+        for (ContentCodec codec : values()) {
+            if (codec.encodingName.equals(name)) {
+                return codec;
+            }
+        }
+        throw new IllegalArgumentException("Unknown content encoding: " + name);
+    }
+}
@@ -0,0 +1,93 @@
+package com.bkb.scanner.storage;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+/**
+ * Pass-through stream that computes size and SHA-256 of everything read through it
+ * and keeps the first bytes for MIME sniffing, so a payload only has to be read once.
+ * Reading more than maxBytes fails the stream.
+ */
+public class ContentInspectingInputStream extends FilterInputStream {
+
+    private final MessageDigest digest;
+    private final long maxBytes;
+    private final byte[] header = new byte[MimeTypeSniffer.HEADER_SIZE];
+    private int headerLength;
+    private long count;
+
+    public ContentInspectingInputStream(InputStream in, long maxBytes) {
+        super(in);
+        this.maxBytes = maxBytes;
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public ContentInspectingInputStream(InputStream in) {
+        this(in, Long.MAX_VALUE);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            update(new byte[]{(byte) b}, 0, 1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            update(b, off, n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        throw new IOException("skip is not supported while inspecting content");
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void update(byte[] b, int off, int len) throws IOException {
+        count += len;
+        if (count > maxBytes) {
+            throw new IOException("Content exceeds the maximum size of " + maxBytes + " bytes");
+        }
+        if (headerLength < MimeTypeSniffer.HEADER_SIZE) {
+            int n = Math.min(len, MimeTypeSniffer.HEADER_SIZE - headerLength);
+            System.arraycopy(b, off, header, headerLength, n);
+            headerLength += n;
+        }
+        digest.update(b, off, len);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Hex SHA-256 of the bytes read so far. Only call once the stream is fully consumed.
+     */
+    public String getSha256() {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public byte[] getHeader() {
+        return Arrays.copyOf(header, headerLength);
+    }
+}
@@ -0,0 +1,112 @@
+package com.bkb.scanner.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Blob store on the local filesystem.
+ * Blobs are sharded two levels deep by key prefix (root/ab/cd/abcd...) so no single
+ * directory grows unbounded. Writes go to a temp file under root/.tmp first and are
+ * then renamed into place, so readers never see a partially written blob.
+ */
+@Slf4j
+@Component
+public class LocalFileSystemBlobStore implements BlobStore {
+
+    private static final Pattern KEY_PATTERN = Pattern.compile("[A-Za-z0-9_-]{4,128}");
+
+    private final Path root;
+    private final Path tmpDir;
+
+    public LocalFileSystemBlobStore(@Value("${storage.local.root:./data/blobs}") String root) throws IOException {
+        this.root = Paths.get(root).toAbsolutePath().normalize();
+        this.tmpDir = this.root.resolve(".tmp");
+        Files.createDirectories(this.tmpDir);
+        log.info("Local blob store rooted at {}", this.root);
+    }
+
+    @Override
+    public long put(String key, InputStream content) throws IOException {
+        Path target = resolve(key);
+        Path tmp = Files.createTempFile(tmpDir, "blob-", ".part");
+        try {
+            long written = Files.copy(content, tmp, StandardCopyOption.REPLACE_EXISTING);
+            Files.createDirectories(target.getParent());
+            moveIntoPlace(tmp, target);
+            return written;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Renames the file into place when it is on the same filesystem as the store.
+     * Otherwise it is copied through root/.tmp like any other payload.
+     */
+    @Override
+    public long putFile(String key, Path source) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+        long size = Files.size(source);
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+            return size;
+        } catch (AtomicMoveNotSupportedException e) {
+            log.debug("{} is on another filesystem than the blob store, copying it", source);
+            return BlobStore.super.putFile(key, source);
+        }
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        return Files.newInputStream(resolve(key));
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.exists(resolve(key));
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        return Files.size(resolve(key));
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        return Files.deleteIfExists(resolve(key));
+    }
+
+    @Override
+    public Optional<Path> localPath(String key) {
+        Path path = resolve(key);
+        return Files.exists(path) ? Optional.of(path) : Optional.empty();
+    }
+
+    Path resolve(String key) {
+        if (key == null || !KEY_PATTERN.matcher(key).matches()) {
+            throw new IllegalArgumentException("Invalid blob key: " + key);
+        }
+        return root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+
+    private void moveIntoPlace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            log.warn("Atomic move not supported for {}, falling back to plain move", target);
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.bkb.scanner.storage;
+
+/**
+ * Detects the MIME type of a payload from its leading magic bytes.
+ * Only covers the formats we actually receive from scanners and uploads.
+ */
+public final class MimeTypeSniffer {
+
+    public static final String DEFAULT_MIME_TYPE = "application/octet-stream";
+
+    /**
+     * Number of leading bytes needed to recognise every supported format.
+     */
+    public static final int HEADER_SIZE = 16;
+
+    private MimeTypeSniffer() {
+    }
+
+    /**
+     * Returns the detected type, or null if the header is not recognised.
+     */
+    public static String sniff(byte[] header) {
+        if (startsWith(header, 0x25, 0x50, 0x44, 0x46)) {
+            return "application/pdf";
+        }
+        if (startsWith(header, 0x89, 0x50, 0x4E, 0x47, 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return "image/png";
+        }
+        if (startsWith(header, 0xFF, 0xD8, 0xFF)) {
+            return "image/jpeg";
+        }
+        if (startsWith(header, 0x47, 0x49, 0x46, 0x38)) {
+            return "image/gif";
+        }
+        if (startsWith(header, 0x49, 0x49, 0x2A, 0x00) || startsWith(header, 0x4D, 0x4D, 0x00, 0x2A)) {
+            return "image/tiff";
+        }
+        return null;
+    }
+
+    /**
+     * Picks the type to record for an upload: the sniffed type wins over what the
+     * client declared, since browsers often send a generic type for scans.
+     */
+    public static String resolve(byte[] header, String declaredType) {
+        String sniffed = sniff(header);
+        if (sniffed != null) {
+            return sniffed;
+        }
+        if (declaredType != null && !declaredType.isBlank()) {
+            return declaredType;
+        }
+        return DEFAULT_MIME_TYPE;
+    }
+
+    private static boolean startsWith(byte[] header, int... magic) {
+        if (header == null || header.length < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if ((header[i] & 0xFF) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,25 @@
+package com.bkb.scanner.storage;
+
+import lombok.Getter;
+
+/**
+ * Rendered previews kept for a payload. They are stored in the blob store beside the
+ * payload under its key plus a suffix, so deduplicated payloads share their previews.
+ * Listed largest first: each size is scaled down from the previous one.
+ */
+@Getter
+public enum PreviewSize {
+    PAGE(1280),
+    THUMBNAIL(240);
+
+    // Longest edge in pixels
+    private final int maxPixels;
+
+    PreviewSize(int maxPixels) {
+        this.maxPixels = maxPixels;
+    }
+
+    public String key(String storageKey) {
+        return storageKey + "_" + name().toLowerCase();
+    }
+}
@@ -0,0 +1,41 @@
+package com.bkb.scanner.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the per-page tasks of a scan on the page pool and returns their results in task
+ * order. The first failure is rethrown as the IOException the task raised.
+ */
+public final class PageTasks {
+
+    private PageTasks() {
+    }
+
+    public static <T> List<T> runAll(ForkJoinPool pool, List<Callable<T>> tasks) throws IOException {
+        List<T> results = new ArrayList<>(tasks.size());
+        for (Future<T> future : pool.invokeAll(tasks)) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while processing scanned pages", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException io) {
+                    throw io;
+                }
+                if (e.getCause() instanceof UncheckedIOException io) {
+                    throw io.getCause();
+                }
+                throw new IOException("Failed to process scanned pages: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,63 @@
+package com.bkb.scanner.util;
+
+import com.bkb.scanner.exception.BadRequestException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Base64;
+
+/**
+ * Keyset pagination cursor: the sort a page was read with plus the sort key and ID of
+ * its last row. Clients get it as an opaque URL-safe token and hand it back for the
+ * next page.
+ */
+@Getter
+@AllArgsConstructor
+public final class SearchCursor {
+
+    private static final int FORMAT = 1;
+
+    private final String sortBy;
+    private final boolean descending;
+    // Sort key of the last row, null when that row has no value for it
+    private final String key;
+    private final String id;
+
+    public String encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT);
+            out.writeUTF(sortBy);
+            out.writeBoolean(descending);
+            out.writeBoolean(key != null);
+            if (key != null) {
+                out.writeUTF(key);
+            }
+            out.writeUTF(id);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    public static SearchCursor decode(String token) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)))) {
+            if (in.readByte() != FORMAT) {
+                throw new BadRequestException("Unsupported cursor");
+            }
+            String sortBy = in.readUTF();
+            boolean descending = in.readBoolean();
+            String key = in.readBoolean() ? in.readUTF() : null;
+            String id = in.readUTF();
+            return new SearchCursor(sortBy, descending, key, id);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new BadRequestException("Malformed cursor");
+        }
+    }
+}
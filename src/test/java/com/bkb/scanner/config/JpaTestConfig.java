@@ -0,0 +1,17 @@
+package com.bkb.scanner.config;
+
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.AuditorAware;
+
+/**
+ * The auditor JPA auditing needs, for @DataJpaTest slices that do not scan config beans.
+ */
+@TestConfiguration
+public class JpaTestConfig {
+
+    @Bean
+    AuditorAware<String> auditorAwareImpl() {
+        return new AuditorAwareImpl();
+    }
+}
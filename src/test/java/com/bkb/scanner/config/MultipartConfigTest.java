@@ -0,0 +1,64 @@
+package com.bkb.scanner.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockPart;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.multipart.MultipartHttpServletRequest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MultipartConfigTest {
+
+    private static final int MAX_REQUEST_SIZE = 1024;
+    private static final int BATCH_MAX_REQUEST_SIZE = 4096;
+
+    private final MultipartConfig.RequestSizeLimitingMultipartResolver resolver =
+            new MultipartConfig.RequestSizeLimitingMultipartResolver(MAX_REQUEST_SIZE, BATCH_MAX_REQUEST_SIZE);
+
+    @Test
+    void requestAboveTheGlobalLimitIsRejectedBeforeItIsRead() {
+        MockHttpServletRequest request = multipart("/api/documents/upload/case/CASE-202601-0001", 2048);
+
+        assertThatThrownBy(() -> resolver.resolveMultipart(request))
+                .isInstanceOf(MaxUploadSizeExceededException.class);
+    }
+
+    @Test
+    void batchUploadsMayUseTheLargerLimit() {
+        MultipartHttpServletRequest resolved = resolver.resolveMultipart(
+                multipart("/api/documents/upload/party/PARTY-001/batch", 2048));
+
+        assertThat(resolved.getFiles("files")).hasSize(1);
+        assertThatThrownBy(() -> resolver.resolveMultipart(
+                multipart("/api/documents/upload/party/PARTY-001/batch", 8192)))
+                .isInstanceOf(MaxUploadSizeExceededException.class);
+    }
+
+    @Test
+    void requestWithoutALengthIsCheckedAgainstItsParts() {
+        MockHttpServletRequest request = multipart("/api/documents/upload/case/CASE-202601-0001", 0);
+        request.setContent(null);
+        request.addPart(file(2048));
+
+        assertThatThrownBy(() -> resolver.resolveMultipart(request))
+                .isInstanceOf(MaxUploadSizeExceededException.class);
+    }
+
+    private static MockHttpServletRequest multipart(String uri, int size) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", uri);
+        request.setContextPath("/api");
+        request.setContentType("multipart/form-data; boundary=batch");
+        request.setContent(new byte[size]);
+        request.addPart(file(size));
+        return request;
+    }
+
+    private static MockPart file(int size) {
+        MockPart part = new MockPart("files", "scan.pdf", new byte[size]);
+        part.getHeaders().setContentType(MediaType.APPLICATION_PDF);
+        return part;
+    }
+}
@@ -0,0 +1,205 @@
+package com.bkb.scanner.repository;
+
+import com.bkb.scanner.config.JpaTestConfig;
+import com.bkb.scanner.dto.CaseSummaryDto;
+import com.bkb.scanner.entity.Case;
+import com.bkb.scanner.entity.CaseEntityData;
+import com.bkb.scanner.entity.Document;
+import com.bkb.scanner.entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({JpaTestConfig.class, CaseSearchRepository.class})
+class CaseRepositoryTest {
+
+    @Autowired
+    private CaseRepository caseRepository;
+
+    @Autowired
+    private CaseSearchRepository caseSearchRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private User officer;
+
+    @BeforeEach
+    void setUp() {
+        officer = new User();
+        officer.setUserId("USER-001");
+        officer.setUsername("officer");
+        officer.setPassword("secret");
+        officer.setName("Case Officer");
+        officer.setEmail("officer@example.com");
+        officer.setRole("Officer");
+        entityManager.persist(officer);
+    }
+
+    @Test
+    void summariesCarryAssigneeAndCurrentDocumentCounts() {
+        Case acme = kycCase("CASE-202601-0001", "Acme Pte Ltd", "High", officer);
+        kycCase("CASE-202601-0002", "Beta Holdings", "Low", null);
+        document(acme, "Business Registration", 1, "Verified", false);
+        document(acme, "Business Registration", 2, "Verified", true);
+        document(acme, "Passport", 1, "Expired", true);
+        document(acme, "Tax Return", 1, "Submitted", true);
+        entityManager.flush();
+        entityManager.clear();
+
+        List<CaseSummaryDto> all = caseRepository.findAllSummaries();
+
+        assertThat(all).extracting(CaseSummaryDto::getCaseId)
+                .containsExactlyInAnyOrder("CASE-202601-0001", "CASE-202601-0002");
+        CaseSummaryDto summary = all.stream().filter(c -> c.getCaseId().equals("CASE-202601-0001")).findFirst().orElseThrow();
+        assertThat(summary.getEntity().getEntityName()).isEqualTo("Acme Pte Ltd");
+        assertThat(summary.getEntity().getEntityType()).isEqualTo("Private Limited");
+        assertThat(summary.getAssignedTo()).isEqualTo("USER-001");
+        assertThat(summary.getAssignedToName()).isEqualTo("Case Officer");
+        assertThat(summary.getDocumentCount()).isEqualTo(3);
+        assertThat(summary.getVerifiedDocumentCount()).isEqualTo(1);
+        assertThat(summary.getExpiredDocumentCount()).isEqualTo(1);
+        assertThat(summary.getRelatedPartyLinks()).isNull();
+
+        CaseSummaryDto empty = all.stream().filter(c -> c.getCaseId().equals("CASE-202601-0002")).findFirst().orElseThrow();
+        assertThat(empty.getAssignedToName()).isNull();
+        assertThat(empty.getDocumentCount()).isZero();
+    }
+
+    @Test
+    void searchIsFilteredSortedAndPagedOverCasesNotDocuments() {
+        for (int i = 1; i <= 5; i++) {
+            Case kycCase = kycCase("CASE-202601-000" + i, "Entity " + i, i % 2 == 0 ? "Low" : "High", officer);
+            document(kycCase, "Passport", 1, "Verified", true);
+            document(kycCase, "Tax Return", 1, "Verified", true);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        Page<CaseSummaryDto> page = caseRepository.findCaseSummariesWithFilters(
+                "entity", false, List.of(), true, List.of("High"), false, List.of(),
+                PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "entityData.entityName")));
+
+        assertThat(page.getTotalElements()).isEqualTo(3);
+        assertThat(page.getContent()).extracting(CaseSummaryDto::getCaseId)
+                .containsExactly("CASE-202601-0005", "CASE-202601-0003");
+        assertThat(page.getContent()).allSatisfy(summary -> assertThat(summary.getDocumentCount()).isEqualTo(2));
+    }
+
+    @Test
+    void facetCountsComeFromOneGroupedRowSet() {
+        for (int i = 1; i <= 6; i++) {
+            Case kycCase = kycCase("CASE-202601-000" + i, (i <= 4 ? "Acme " : "Beta ") + i,
+                    i % 2 == 0 ? "Low" : "High", i <= 2 ? officer : null);
+            kycCase.setStatus(i == 1 ? "Approved" : "KYC Review");
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        List<Object[]> rows = caseRepository.countFacetsWithFilters(
+                "acme", false, List.of(), false, List.of(), false, List.of());
+
+        assertThat(rows.stream().mapToLong(row -> (Long) row[6]).sum()).isEqualTo(4);
+        assertThat(rows.stream().filter(row -> "High".equals(row[0])).mapToLong(row -> (Long) row[6]).sum())
+                .isEqualTo(2);
+        assertThat(rows.stream().filter(row -> "USER-001".equals(row[4])).mapToLong(row -> (Long) row[6]).sum())
+                .isEqualTo(2);
+        assertThat(rows).filteredOn(row -> "USER-001".equals(row[4])).allMatch(row -> "Case Officer".equals(row[5]));
+
+        // The ID filter narrows the counts the same way the index does for a search
+        List<Object[]> byId = caseRepository.countFacetsWithFilters(
+                null, true, List.of("CASE-202601-0001", "CASE-202601-0005"), false, List.of(), false, List.of());
+        assertThat(byId.stream().mapToLong(row -> (Long) row[6]).sum()).isEqualTo(2);
+    }
+
+    @Test
+    void seekingPageByPageVisitsEveryCaseOnceInSortOrder() {
+        String[] names = {"Beta", null, "Acme", "Beta", null, "Gamma", "Acme", "Beta", null, "Delta"};
+        for (int i = 0; i < names.length; i++) {
+            Case kycCase = kycCase(String.format("CASE-202601-%04d", 10 - i), names[i], i % 3 == 0 ? "Low" : "High", null);
+            kycCase.setStatus(i % 2 == 0 ? "KYC Review" : "Approved");
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        for (String property : List.of("caseId", "entityData.entityName", "riskLevel", "status", "createdDate")) {
+            for (boolean descending : new boolean[]{false, true}) {
+                List<String> expected = caseSearchRepository.findIdsAfter(
+                        null, null, List.of(), List.of(), property, descending, null, null, 100);
+
+                List<String> visited = new ArrayList<>();
+                List<String> page = caseSearchRepository.findIdsAfter(
+                        null, null, List.of(), List.of(), property, descending, null, null, 3);
+                while (!page.isEmpty()) {
+                    visited.addAll(page);
+                    String last = page.get(page.size() - 1);
+                    page = caseSearchRepository.findIdsAfter(null, null, List.of(), List.of(), property, descending,
+                            sortKey(last, property), last, 3);
+                }
+
+                assertThat(visited).as(property + (descending ? " desc" : " asc")).isEqualTo(expected);
+                assertThat(expected).hasSize(names.length).doesNotHaveDuplicates();
+            }
+        }
+
+        // Nulls sort lowest and ties are broken by case ID
+        assertThat(caseSearchRepository.findIdsAfter(null, null, List.of(), List.of(), "entityData.entityName", false,
+                null, null, 4)).containsExactly("CASE-202601-0002", "CASE-202601-0006", "CASE-202601-0009",
+                "CASE-202601-0004");
+        assertThat(caseSearchRepository.countUpTo(null, null, List.of("High"), List.of(), 4)).isEqualTo(4);
+    }
+
+    private Object sortKey(String caseId, String property) {
+        Case kycCase = caseRepository.findById(caseId).orElseThrow();
+        return switch (property) {
+            case "entityData.entityName" -> kycCase.getEntityData().getEntityName();
+            case "riskLevel" -> kycCase.getRiskLevel();
+            case "status" -> kycCase.getStatus();
+            case "createdDate" -> kycCase.getCreatedDate();
+            default -> caseId;
+        };
+    }
+
+    private Case kycCase(String caseId, String entityName, String riskLevel, User assignee) {
+        CaseEntityData entity = new CaseEntityData();
+        entity.setEntityName(entityName);
+        entity.setEntityType("Private Limited");
+        Case kycCase = new Case();
+        kycCase.setCaseId(caseId);
+        kycCase.setStatus("KYC Review");
+        kycCase.setRiskLevel(riskLevel);
+        kycCase.setEntityData(entity);
+        kycCase.setAssignedTo(assignee);
+        entityManager.persist(kycCase);
+        return kycCase;
+    }
+
+    private void document(Case kycCase, String type, int version, String status, boolean current) {
+        Document document = new Document();
+        document.setName(type);
+        document.setDocumentType(type);
+        document.setOwnerType("CASE");
+        document.setOwnerId(kycCase.getCaseId());
+        document.setStatus(status);
+        document.setVersion(version);
+        document.setIsCurrentForCase(current);
+        document.setUploadedByUser(officer);
+        entityManager.persist(document);
+    }
+}
@@ -0,0 +1,156 @@
+package com.bkb.scanner.repository;
+
+import com.bkb.scanner.config.JpaTestConfig;
+import com.bkb.scanner.dto.DocumentListItem;
+import com.bkb.scanner.dto.DocumentSummaryProjection;
+import com.bkb.scanner.entity.Document;
+import com.bkb.scanner.entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({JpaTestConfig.class, DocumentBatchRepository.class})
+class DocumentRepositoryTest {
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private DocumentBatchRepository documentBatchRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private User uploader;
+
+    @BeforeEach
+    void setUp() {
+        uploader = new User();
+        uploader.setUserId("USER-001");
+        uploader.setUsername("uploader");
+        uploader.setPassword("secret");
+        uploader.setName("Uploader");
+        uploader.setEmail("uploader@example.com");
+        uploader.setRole("Officer");
+        entityManager.persist(uploader);
+    }
+
+    @Test
+    void switchingTheCurrentVersionLeavesExactlyOneCurrent() {
+        Document v1 = persist(1, true);
+        Document v2 = persist(2, false);
+        Document v3 = persist(3, false);
+
+        documentRepository.clearCurrentVersionExcept("CASE", "CASE-202601-0001", "Passport", v3.getId());
+        documentRepository.markCurrentVersion(v3.getId());
+        entityManager.clear();
+
+        assertThat(documentRepository.findById(v1.getId()).orElseThrow().getIsCurrentForCase()).isFalse();
+        assertThat(documentRepository.findById(v2.getId()).orElseThrow().getIsCurrentForCase()).isFalse();
+        assertThat(documentRepository.findById(v3.getId()).orElseThrow().getIsCurrentForCase()).isTrue();
+    }
+
+    @Test
+    void secondCurrentVersionOfTheSameTypeIsRejected() {
+        persist(1, true);
+
+        assertThatThrownBy(() -> persist(2, true))
+                .hasMessageContaining("UK_DOCUMENT_CURRENT_VERSION");
+    }
+
+    @Test
+    void listItemsCarryUserDetailsAndHonourFilters() {
+        persist(1, false);
+        Document v2 = persist(2, true);
+
+        List<DocumentListItem> all = documentRepository.findListItemsByOwner("CASE", "CASE-202601-0001");
+        assertThat(all).hasSize(2);
+        assertThat(all.get(0).getUploadedByName()).isEqualTo("Uploader");
+        assertThat(all.get(0).getVerifiedByUserId()).isNull();
+
+        Page<DocumentListItem> current = documentRepository.findListItemsByOwner(
+                "CASE", "CASE-202601-0001",
+                true, List.of("Verified"),
+                false, List.of(),
+                true,
+                PageRequest.of(0, 10));
+        assertThat(current.getTotalElements()).isEqualTo(1);
+        assertThat(current.getContent().get(0).getId()).isEqualTo(v2.getId());
+    }
+
+    @Test
+    void statusSummariesAreGroupedPerOwner() {
+        persist(1, false);
+        Document expiring = persist(2, true);
+        expiring.setStatus("Submitted");
+        expiring.setExpiryDate(Instant.now().plus(5, ChronoUnit.DAYS));
+        entityManager.flush();
+
+        List<DocumentSummaryProjection> rows = documentRepository.getStatusSummariesByOwners(
+                "CASE", List.of("CASE-202601-0001", "CASE-202601-0002"), Instant.now().plus(30, ChronoUnit.DAYS));
+
+        assertThat(rows).hasSize(1);
+        DocumentSummaryProjection summary = rows.get(0);
+        assertThat(summary.getCaseId()).isEqualTo("CASE-202601-0001");
+        assertThat(summary.getTotalCount()).isEqualTo(2);
+        assertThat(summary.getVerifiedCount()).isEqualTo(1);
+        assertThat(summary.getSubmittedCount()).isEqualTo(1);
+        assertThat(summary.getExpiringSoonCount()).isEqualTo(1);
+    }
+
+    @Test
+    void batchInsertAssignsIdsInOrder() {
+        List<Document> documents = List.of(newDocument(1, false), newDocument(2, false), newDocument(3, false));
+        Instant now = Instant.now();
+        documents.forEach(document -> {
+            document.setCreatedBy("uploader");
+            document.setCreatedDate(now);
+        });
+
+        documentBatchRepository.insertAll(documents);
+        entityManager.clear();
+
+        for (Document inserted : documents) {
+            Document loaded = documentRepository.findById(inserted.getId()).orElseThrow();
+            assertThat(loaded.getVersion()).isEqualTo(inserted.getVersion());
+            assertThat(loaded.getUploadedByUser().getUserId()).isEqualTo("USER-001");
+        }
+    }
+
+    private Document persist(int version, boolean current) {
+        Document document = newDocument(version, current);
+        entityManager.persist(document);
+        entityManager.flush();
+        return document;
+    }
+
+    private Document newDocument(int version, boolean current) {
+        Document document = new Document();
+        document.setName("Passport");
+        document.setDocumentType("Passport");
+        document.setOwnerType("CASE");
+        document.setOwnerId("CASE-202601-0001");
+        document.setStatus("Verified");
+        document.setVersion(version);
+        document.setIsCurrentForCase(current);
+        document.setUploadedByUser(uploader);
+        return document;
+    }
+}
@@ -0,0 +1,104 @@
+package com.bkb.scanner.service;
+
+import com.bkb.scanner.config.JpaTestConfig;
+import com.bkb.scanner.entity.Case;
+import com.bkb.scanner.entity.CaseEntityData;
+import com.bkb.scanner.repository.CaseRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Milliseconds per search term through the trigram index and through the LIKE filter,
+ * both fetching the first page of list rows, on H2.
+ * Run with: mvn test -Dtest=CaseSearchIndexBenchmark -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.jdbc.batch_size=500",
+        "cases.search-index.max-candidates=1000"
+})
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({JpaTestConfig.class, CaseSearchIndex.class})
+class CaseSearchIndexBenchmark {
+
+    private static final int CASES = 50_000;
+    private static final int ROUNDS = 20;
+    private static final List<String> TERMS = List.of("acme", "holdings pte", "0042", "zz", "b-12345");
+    private static final String[] WORDS = {"Acme", "Global", "Holdings", "Trading", "Pte", "Ltd", "Asia",
+            "Pacific", "Capital", "Ventures", "Logistics", "Marine", "Foods", "Tech", "Partners"};
+
+    @Autowired
+    private CaseRepository caseRepository;
+
+    @Autowired
+    private CaseSearchIndex caseSearchIndex;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void millisecondsPerSearch() {
+        Random random = new Random(42);
+        for (int i = 1; i <= CASES; i++) {
+            CaseEntityData entity = new CaseEntityData();
+            entity.setEntityName(WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]
+                    + " " + WORDS[random.nextInt(WORDS.length)]);
+            entity.setEntityType("Private Limited");
+            entity.setBasicNumber("B-" + (10_000 + random.nextInt(90_000)));
+            entity.setCisNumber("CIS-" + i);
+            Case kycCase = new Case();
+            kycCase.setCaseId(String.format("CASE-%06d-%04d", 202001 + i / 10_000, i % 10_000));
+            kycCase.setStatus("KYC Review");
+            kycCase.setRiskLevel("Low");
+            kycCase.setEntityData(entity);
+            entityManager.persist(kycCase);
+            if (i % 500 == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        caseSearchIndex.rebuild();
+
+        PageRequest firstPage = PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "createdDate", "caseId"));
+        for (String term : TERMS) {
+            int indexed = caseSearchIndex.search(term).orElseThrow().caseIds().size();
+            long liked = caseRepository.countWithFilters(term, false, List.of(), false, List.of(), false, List.of());
+            assertThat(indexed).as(term).isEqualTo((int) Math.min(liked, 1000));
+
+            double like = time(() -> caseRepository.findCaseSummarySliceWithFilters(
+                    term, false, List.of(), false, List.of(), false, List.of(), firstPage).getContent());
+            double index = time(() -> {
+                List<String> ids = caseSearchIndex.search(term).orElseThrow().caseIds();
+                return ids.isEmpty() ? List.of() : caseRepository.findSummariesByCaseIds(ids.subList(0, Math.min(20, ids.size())));
+            });
+            System.out.printf("%-14s %6d matches  LIKE %8.2f ms  index %8.2f ms%n", term, liked, like, index);
+        }
+    }
+
+    private static double time(Supplier<List<?>> search) {
+        // One warm-up round, then the measured ones
+        search.get();
+        long started = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            search.get();
+        }
+        return (System.nanoTime() - started) / 1e6 / ROUNDS;
+    }
+}
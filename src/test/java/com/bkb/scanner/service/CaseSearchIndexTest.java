@@ -0,0 +1,111 @@
+package com.bkb.scanner.service;
+
+import com.bkb.scanner.repository.CaseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CaseSearchIndexTest {
+
+    private final CaseRepository caseRepository = mock(CaseRepository.class);
+    private CaseSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new CaseSearchIndex();
+        ReflectionTestUtils.setField(index, "caseRepository", caseRepository);
+        ReflectionTestUtils.setField(index, "maxCandidates", 3);
+        ReflectionTestUtils.setField(index, "refreshOverlap", Duration.ofMinutes(5));
+    }
+
+    @Test
+    void emptyUntilBuilt() {
+        assertThat(index.search("acme")).isEmpty();
+    }
+
+    @Test
+    void ranksExactThenPrefixThenWordThenInnerMatches() {
+        when(caseRepository.findSearchFields()).thenReturn(List.of(
+                new Object[]{"CASE-202601-0001", "Pacme Trading", null, null},
+                new Object[]{"CASE-202601-0002", "Global Acme Holdings", "B-77", null},
+                new Object[]{"CASE-202601-0003", "ACME", null, "CIS-1"},
+                new Object[]{"CASE-202601-0004", "Acme Pte Ltd", null, null},
+                new Object[]{"CASE-202601-0005", "Beta Holdings", null, null}));
+        index.rebuild();
+
+        assertThat(index.search(" acme ").orElseThrow().caseIds())
+                .containsExactly("CASE-202601-0003", "CASE-202601-0004", "CASE-202601-0002");
+        assertThat(index.search("acme").orElseThrow().truncated()).isTrue();
+        assertThat(index.search("cis-1").orElseThrow().caseIds()).containsExactly("CASE-202601-0003");
+        assertThat(index.search("0005").orElseThrow().caseIds()).containsExactly("CASE-202601-0005");
+        assertThat(index.search("holdingz").orElseThrow().caseIds()).isEmpty();
+        // Shorter than a trigram
+        assertThat(index.search("77").orElseThrow().caseIds()).containsExactly("CASE-202601-0002");
+    }
+
+    @Test
+    void reindexingACaseReplacesItsOldTerms() {
+        when(caseRepository.findSearchFields()).thenReturn(List.<Object[]>of(
+                new Object[]{"CASE-202601-0001", "Acme Pte Ltd", null, null}));
+        index.rebuild();
+
+        index.indexAfterCommit("CASE-202601-0001", "Zenith Pte Ltd", null, null);
+        index.indexAfterCommit("CASE-202601-0002", "Acme Asia", null, null);
+
+        assertThat(index.search("zenith").orElseThrow().caseIds()).containsExactly("CASE-202601-0001");
+        assertThat(index.search("acme").orElseThrow().caseIds()).containsExactly("CASE-202601-0002");
+        assertThat(index.search("pte ltd").orElseThrow().caseIds()).containsExactly("CASE-202601-0001");
+    }
+
+    @Test
+    void casesIndexedWhileARebuildReadsTheDatabaseSurviveIt() {
+        when(caseRepository.findSearchFields()).thenAnswer(invocation -> {
+            // Commits land while the rows are read, too late to be part of them
+            index.indexAfterCommit("CASE-202601-0002", "Acme Asia", null, null);
+            index.indexAfterCommit("CASE-202601-0001", "Zenith Pte Ltd", null, null);
+            return List.<Object[]>of(new Object[]{"CASE-202601-0001", "Acme Pte Ltd", null, null});
+        });
+        index.rebuild();
+
+        assertThat(index.search("acme").orElseThrow().caseIds()).containsExactly("CASE-202601-0002");
+        assertThat(index.search("zenith").orElseThrow().caseIds()).containsExactly("CASE-202601-0001");
+
+        // Only puts made during a rebuild are replayed
+        when(caseRepository.findSearchFields()).thenReturn(List.<Object[]>of(
+                new Object[]{"CASE-202601-0001", "Zenith Pte Ltd", null, null}));
+        index.rebuild();
+        assertThat(index.search("acme").orElseThrow().caseIds()).isEmpty();
+    }
+
+    @Test
+    void refreshPicksUpCasesModifiedElsewhereSinceTheRebuild() {
+        index.refresh();
+        verify(caseRepository, never()).findSearchFieldsModifiedSince(any());
+
+        Instant beforeRebuild = Instant.now();
+        when(caseRepository.findSearchFields()).thenReturn(List.<Object[]>of(
+                new Object[]{"CASE-202601-0001", "Acme Pte Ltd", null, null}));
+        index.rebuild();
+        when(caseRepository.findSearchFieldsModifiedSince(any())).thenAnswer(invocation -> {
+            assertThat(invocation.<Instant>getArgument(0))
+                    .isBetween(beforeRebuild.minus(Duration.ofMinutes(5)), Instant.now().minus(Duration.ofMinutes(5)));
+            return List.<Object[]>of(new Object[]{"CASE-202601-0002", "Acme Asia", null, "CIS-9"});
+        });
+        index.refresh();
+
+        assertThat(index.search("acme").orElseThrow().caseIds())
+                .containsExactly("CASE-202601-0002", "CASE-202601-0001");
+        assertThat(index.search("cis-9").orElseThrow().caseIds()).containsExactly("CASE-202601-0002");
+    }
+}
@@ -0,0 +1,248 @@
+package com.bkb.scanner.service;
+
+import com.bkb.scanner.config.JpaTestConfig;
+import com.bkb.scanner.dto.ChecklistDocumentDto;
+import com.bkb.scanner.dto.ChecklistDto;
+import com.bkb.scanner.dto.ChecklistSectionDto;
+import com.bkb.scanner.entity.Case;
+import com.bkb.scanner.entity.CaseEntityData;
+import com.bkb.scanner.entity.Document;
+import com.bkb.scanner.entity.DocumentRequirement;
+import com.bkb.scanner.entity.Party;
+import com.bkb.scanner.entity.RelatedParty;
+import com.bkb.scanner.entity.TemplateCategory;
+import com.bkb.scanner.entity.TemplateType;
+import com.bkb.scanner.entity.User;
+import com.bkb.scanner.mapper.DocumentMapperImpl;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({JpaTestConfig.class, ChecklistService.class, TemplateService.class, DocumentMapperImpl.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ChecklistServiceTest {
+
+    @Autowired
+    private ChecklistService checklistService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate tx;
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            if (entityManager.find(User.class, "USER-001") != null) {
+                return;
+            }
+            User uploader = new User();
+            uploader.setUserId("USER-001");
+            uploader.setUsername("uploader");
+            uploader.setPassword("secret");
+            uploader.setName("Uploader");
+            uploader.setEmail("uploader@example.com");
+            uploader.setRole("Officer");
+            entityManager.persist(uploader);
+
+            template("entityTemplates", "Private Limited",
+                    requirement("Business Registration", "CUSTOMER", true),
+                    requirement("Board Resolution", "CUSTOMER", false));
+            template("riskBasedDocuments", "High",
+                    requirement("Source of Wealth", "BANK_MANDATORY", true));
+            template("individualTemplates", "Director",
+                    requirement("Passport", "CUSTOMER", true));
+            template("individualTemplates", "Shareholder",
+                    requirement("Passport", "CUSTOMER", true),
+                    requirement("Proof of Address", "CUSTOMER", true));
+        });
+    }
+
+    @Test
+    void requirementsAreMatchedAgainstCurrentDocuments() {
+        tx.executeWithoutResult(status -> {
+            User uploader = entityManager.find(User.class, "USER-001");
+            Case kycCase = kycCase("CASE-202601-0001", "High");
+            party(kycCase, "PARTY-001", "Jane Tan", "Director");
+            party(kycCase, "PARTY-001", "Jane Tan", "Shareholder");
+
+            document(uploader, "CASE", "CASE-202601-0001", "Business Registration", 1, "Rejected", false, null);
+            document(uploader, "CASE", "CASE-202601-0001", "Business Registration", 2, "Verified", true,
+                    Instant.now().plus(10, ChronoUnit.DAYS));
+            document(uploader, "PARTY", "PARTY-001", "Passport", 1, "Submitted", true, null);
+            document(uploader, "PARTY", "PARTY-001", "Proof of Address", 1, "Expired", true,
+                    Instant.now().minus(1, ChronoUnit.DAYS));
+            document(uploader, "CASE", "CASE-202601-0001", "Annual Report", 1, "Submitted", true, null);
+        });
+
+        ChecklistDto checklist = checklistService.getChecklist("CASE-202601-0001");
+
+        assertThat(checklist.getChecklist()).extracting(ChecklistSectionDto::getCategory)
+                .containsExactly("CUSTOMER", "BANK_MANDATORY", ChecklistService.AD_HOC_CATEGORY);
+        List<ChecklistDocumentDto> customer = checklist.getChecklist().get(0).getDocuments();
+        // The party's Passport is asked for by both of its roles but listed once
+        assertThat(customer).extracting(ChecklistDocumentDto::getId).containsExactly(
+                "CASE-202601-0001:Business Registration", "CASE-202601-0001:Board Resolution",
+                "PARTY-001:Passport", "PARTY-001:Proof of Address");
+
+        ChecklistDocumentDto registration = customer.get(0);
+        assertThat(registration.getStatus()).isEqualTo("Verified");
+        assertThat(registration.getVersion()).isEqualTo(2);
+        assertThat(registration.getOwnerName()).isEqualTo("Acme Pte Ltd");
+        assertThat(registration.getUploadedBy().getName()).isEqualTo("Uploader");
+        assertThat(registration.getAllVersions()).hasSize(2);
+        assertThat(customer.get(1).getStatus()).isEqualTo("Missing");
+        assertThat(customer.get(1).isRequired()).isFalse();
+        assertThat(customer.get(3).getOwnerName()).isEqualTo("Jane Tan");
+
+        ChecklistDocumentDto adHoc = checklist.getChecklist().get(2).getDocuments().get(0);
+        assertThat(adHoc.getName()).isEqualTo("Annual Report");
+        assertThat(adHoc.isAdHoc()).isTrue();
+
+        // Required: registration, passport, proof of address, source of wealth; two provided
+        assertThat(checklist.getProgress().getPercentage()).isEqualTo(50);
+        assertThat(checklist.getProgress().getMissingDocs()).extracting(ChecklistDocumentDto::getId)
+                .containsExactly("CASE-202601-0001:Source of Wealth", "PARTY-001:Proof of Address");
+        assertThat(checklist.getProgress().getExpiringDocs()).extracting(ChecklistDocumentDto::getId)
+                .containsExactly("CASE-202601-0001:Business Registration");
+    }
+
+    @Test
+    void queryCountDoesNotGrowWithPartiesAndDocuments() {
+        tx.executeWithoutResult(status -> {
+            User uploader = entityManager.find(User.class, "USER-001");
+            Case small = kycCase("CASE-202601-0002", "Low");
+            party(small, "PARTY-002", "Party 2", "Director");
+            document(uploader, "PARTY", "PARTY-002", "Passport", 1, "Verified", true, null);
+
+            Case large = kycCase("CASE-202601-0003", "High");
+            for (int i = 3; i < 9; i++) {
+                party(large, "PARTY-00" + i, "Party " + i, i % 2 == 0 ? "Director" : "Shareholder");
+                document(uploader, "PARTY", "PARTY-00" + i, "Passport", 1, "Verified", true, null);
+                document(uploader, "PARTY", "PARTY-00" + i, "Passport", 2, "Submitted", false, null);
+            }
+        });
+
+        long small = statementsFor("CASE-202601-0002");
+        long large = statementsFor("CASE-202601-0003");
+
+        assertThat(large).isEqualTo(small);
+    }
+
+    private long statementsFor(String caseId) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        checklistService.getChecklist(caseId);
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void template(String categoryKey, String typeKey, DocumentRequirement... requirements) {
+        TemplateCategory category = entityManager
+                .createQuery("SELECT c FROM TemplateCategory c WHERE c.categoryKey = :key", TemplateCategory.class)
+                .setParameter("key", categoryKey)
+                .getResultStream()
+                .findFirst()
+                .orElseGet(() -> {
+                    TemplateCategory created = new TemplateCategory();
+                    created.setCategoryKey(categoryKey);
+                    created.setDisplayName(categoryKey);
+                    created.setTypes(new ArrayList<>());
+                    entityManager.persist(created);
+                    return created;
+                });
+        TemplateType type = new TemplateType();
+        type.setCategory(category);
+        type.setTypeKey(typeKey);
+        type.setDisplayName(typeKey);
+        type.setDocumentRequirements(new ArrayList<>());
+        category.getTypes().add(type);
+        entityManager.persist(type);
+        int order = 0;
+        for (DocumentRequirement requirement : requirements) {
+            requirement.setTemplateType(type);
+            requirement.setDisplayOrder(order++);
+            type.getDocumentRequirements().add(requirement);
+            entityManager.persist(requirement);
+        }
+    }
+
+    private static DocumentRequirement requirement(String name, String category, boolean required) {
+        DocumentRequirement requirement = new DocumentRequirement();
+        requirement.setName(name);
+        requirement.setCategory(category);
+        requirement.setRequired(required);
+        return requirement;
+    }
+
+    private Case kycCase(String caseId, String riskLevel) {
+        CaseEntityData entity = new CaseEntityData();
+        entity.setEntityName("Acme Pte Ltd");
+        entity.setEntityType("Private Limited");
+        Case kycCase = new Case();
+        kycCase.setCaseId(caseId);
+        kycCase.setStatus("KYC Review");
+        kycCase.setRiskLevel(riskLevel);
+        kycCase.setEntityData(entity);
+        entityManager.persist(kycCase);
+        return kycCase;
+    }
+
+    private void party(Case kycCase, String partyId, String name, String role) {
+        Party party = entityManager.find(Party.class, partyId);
+        if (party == null) {
+            party = new Party();
+            party.setPartyId(partyId);
+            party.setName(name);
+            entityManager.persist(party);
+        }
+        RelatedParty relation = new RelatedParty();
+        relation.setParty(party);
+        relation.setRelationshipType(role);
+        kycCase.addRelatedParty(relation);
+        entityManager.persist(relation);
+    }
+
+    private void document(User uploader, String ownerType, String ownerId, String type, int version,
+                          String status, boolean current, Instant expiryDate) {
+        Document document = new Document();
+        document.setName(type);
+        document.setDocumentType(type);
+        document.setOwnerType(ownerType);
+        document.setOwnerId(ownerId);
+        document.setStatus(status);
+        document.setVersion(version);
+        document.setIsCurrentForCase(current);
+        document.setExpiryDate(expiryDate);
+        document.setUploadedByUser(uploader);
+        entityManager.persist(document);
+    }
+}
@@ -0,0 +1,205 @@
+package com.bkb.scanner.service;
+
+import com.bkb.scanner.dto.DocumentDto;
+import com.bkb.scanner.dto.UploadSessionDto;
+import com.bkb.scanner.dto.UploadSessionRequest;
+import com.bkb.scanner.entity.Document;
+import com.bkb.scanner.entity.UploadSession;
+import com.bkb.scanner.exception.BadRequestException;
+import com.bkb.scanner.exception.ConflictException;
+import com.bkb.scanner.repository.CaseRepository;
+import com.bkb.scanner.repository.PartyRepository;
+import com.bkb.scanner.repository.UploadSessionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class ChunkedUploadServiceTest {
+
+    private static final byte[] PAYLOAD = "%PDF-1.7 a multi-page KYC pack".getBytes(StandardCharsets.US_ASCII);
+
+    @TempDir
+    Path spoolDir;
+
+    private final UploadSessionRepository uploadSessionRepository = mock(UploadSessionRepository.class);
+    private final DocumentService documentService = mock(DocumentService.class);
+    private final CaseRepository caseRepository = mock(CaseRepository.class);
+    private final DocumentStorageService documentStorageService = mock(DocumentStorageService.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final List<UploadSession> sessions = new ArrayList<>();
+    private ChunkedUploadService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new ChunkedUploadService();
+        ReflectionTestUtils.setField(service, "uploadSessionRepository", uploadSessionRepository);
+        ReflectionTestUtils.setField(service, "documentService", documentService);
+        ReflectionTestUtils.setField(service, "documentStorageService", documentStorageService);
+        ReflectionTestUtils.setField(service, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(service, "caseRepository", caseRepository);
+        ReflectionTestUtils.setField(service, "partyRepository", mock(PartyRepository.class));
+        ReflectionTestUtils.setField(service, "spoolDir", spoolDir.toString());
+        ReflectionTestUtils.setField(service, "maxUploadSize", DataSize.ofMegabytes(1));
+        ReflectionTestUtils.setField(service, "defaultChunkSize", DataSize.ofBytes(8));
+        ReflectionTestUtils.setField(service, "maxChunkSize", DataSize.ofBytes(8));
+        ReflectionTestUtils.setField(service, "sessionTtl", Duration.ofHours(1));
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("alice", null, List.of()));
+        when(caseRepository.existsById("CASE-202601-0001")).thenReturn(true);
+        when(uploadSessionRepository.save(any(UploadSession.class))).thenAnswer(invocation -> {
+            UploadSession session = invocation.getArgument(0);
+            session.setCreatedBy("alice");
+            sessions.add(session);
+            return session;
+        });
+        when(uploadSessionRepository.findById(anyString())).thenAnswer(invocation -> find(invocation.getArgument(0)));
+        when(uploadSessionRepository.findByIdForUpdate(anyString())).thenAnswer(invocation -> find(invocation.getArgument(0)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void chunksSentOutOfOrderAreAssembledInOrder() throws Exception {
+        UploadSessionDto session = service.createSession(request());
+        assertThat(session.getTotalChunks()).isEqualTo(4);
+
+        for (int index : new int[]{3, 1, 0, 2}) {
+            service.putChunk(session.getSessionId(), index, chunk(index), sha256(slice(index)));
+        }
+        assertThat(service.getSession(session.getSessionId()).getMissingChunks()).isEmpty();
+
+        AtomicReference<byte[]> assembled = new AtomicReference<>();
+        Document stored = storesPayload(assembled);
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> {
+            // The payload is written before the transaction starts
+            assertThat(assembled.get()).isNotNull();
+            return null;
+        });
+        when(documentService.saveUploadedDocument(eq(stored), any(), any(), any()))
+                .thenReturn(DocumentDto.builder().id(42L).contentSha256(sha256(PAYLOAD)).build());
+
+        DocumentDto document = service.commit(session.getSessionId());
+
+        assertThat(document.getId()).isEqualTo(42L);
+        assertThat(assembled.get()).isEqualTo(PAYLOAD);
+        assertThat(sessions.get(0).getStatus()).isEqualTo(UploadSession.STATUS_COMMITTED);
+        assertThat(spoolDir.resolve(session.getSessionId())).doesNotExist();
+        verify(documentStorageService, never()).releaseStored(any());
+    }
+
+    @Test
+    void assembledFileNotMatchingTheAnnouncedChecksumIsReleased() throws Exception {
+        UploadSessionDto session = service.createSession(request());
+        for (int index = 0; index < 4; index++) {
+            service.putChunk(session.getSessionId(), index, chunk(index), null);
+        }
+        Document stored = storesPayload(new AtomicReference<>());
+        stored.setContentSha256(sha256("something else".getBytes(StandardCharsets.US_ASCII)));
+
+        assertThatThrownBy(() -> service.commit(session.getSessionId()))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessageContaining("Checksum mismatch");
+
+        verify(documentStorageService).releaseStored(stored);
+        verifyNoInteractions(transactionManager);
+        assertThat(sessions.get(0).getStatus()).isEqualTo(UploadSession.STATUS_OPEN);
+    }
+
+    @Test
+    void corruptedChunkIsRejectedAndCanBeResent() throws Exception {
+        UploadSessionDto session = service.createSession(request());
+
+        assertThatThrownBy(() -> service.putChunk(session.getSessionId(), 1,
+                new ByteArrayInputStream("XXXXXXXX".getBytes(StandardCharsets.US_ASCII)), sha256(slice(1))))
+                .isInstanceOf(BadRequestException.class);
+        assertThat(service.getSession(session.getSessionId()).getMissingChunks()).contains(1);
+
+        UploadSessionDto resent = service.putChunk(session.getSessionId(), 1, chunk(1), sha256(slice(1)));
+        assertThat(resent.getReceivedChunks()).containsExactly(1);
+    }
+
+    @Test
+    void commitWithMissingChunksIsRefused() throws Exception {
+        UploadSessionDto session = service.createSession(request());
+        service.putChunk(session.getSessionId(), 0, chunk(0), null);
+
+        assertThatThrownBy(() -> service.commit(session.getSessionId()))
+                .isInstanceOf(ConflictException.class)
+                .hasMessageContaining("[1, 2, 3]");
+        assertThat(sessions.get(0).getStatus()).isEqualTo(UploadSession.STATUS_OPEN);
+    }
+
+    private Document storesPayload(AtomicReference<byte[]> assembled) throws Exception {
+        Document stored = new Document();
+        stored.setContentSha256(sha256(PAYLOAD));
+        when(documentService.storeUploadedPayload(eq("CASE"), eq("CASE-202601-0001"), eq("KYC Pack"),
+                any(InputStream.class), any(), any())).thenAnswer(invocation -> {
+            assembled.set(invocation.<InputStream>getArgument(3).readAllBytes());
+            return stored;
+        });
+        return stored;
+    }
+
+    private UploadSessionRequest request() throws Exception {
+        UploadSessionRequest request = new UploadSessionRequest();
+        request.setOwnerType("CASE");
+        request.setOwnerId("CASE-202601-0001");
+        request.setDocumentType("KYC Pack");
+        request.setOriginalFilename("kyc-pack.pdf");
+        request.setTotalSize((long) PAYLOAD.length);
+        request.setSha256(sha256(PAYLOAD));
+        return request;
+    }
+
+    private Optional<UploadSession> find(String sessionId) {
+        return sessions.stream().filter(s -> s.getSessionId().equals(sessionId)).findFirst();
+    }
+
+    private static byte[] slice(int index) {
+        int from = index * 8;
+        byte[] slice = new byte[Math.min(8, PAYLOAD.length - from)];
+        System.arraycopy(PAYLOAD, from, slice, 0, slice.length);
+        return slice;
+    }
+
+    private static InputStream chunk(int index) {
+        return new ByteArrayInputStream(slice(index));
+    }
+
+    private static String sha256(byte[] bytes) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+    }
+}
@@ -0,0 +1,229 @@
+package com.bkb.scanner.service;
+
+import com.bkb.scanner.config.JpaTestConfig;
+import com.bkb.scanner.dto.BatchUploadItem;
+import com.bkb.scanner.dto.BatchUploadResultDto;
+import com.bkb.scanner.entity.Document;
+import com.bkb.scanner.entity.Party;
+import com.bkb.scanner.entity.User;
+import com.bkb.scanner.exception.NotFoundException;
+import com.bkb.scanner.mapper.DocumentMapperImpl;
+import com.bkb.scanner.repository.DocumentBatchRepository;
+import com.bkb.scanner.repository.DocumentBlobRepository;
+import com.bkb.scanner.storage.CompressionPolicy;
+import com.bkb.scanner.storage.LocalFileSystemBlobStore;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+
+@DataJpaTest(properties = "storage.local.root=" + DocumentBatchUploadServiceTest.BLOB_ROOT)
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({JpaTestConfig.class, DocumentBatchUploadService.class, DocumentStorageService.class,
+        DocumentVersionService.class, LocalFileSystemBlobStore.class, CompressionPolicy.class,
+        DocumentMapperImpl.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DocumentBatchUploadServiceTest {
+
+    static final String BLOB_ROOT = "target/test-blobs/batch-upload";
+
+    private static final AtomicInteger PARTIES = new AtomicInteger();
+
+    @Autowired
+    private DocumentBatchUploadService documentBatchUploadService;
+
+    @Autowired
+    private DocumentBlobRepository documentBlobRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @SpyBean
+    private DocumentBatchRepository documentBatchRepository;
+
+    @MockBean
+    private DocumentPreviewService documentPreviewService;
+
+    private TransactionTemplate tx;
+
+    private String partyId;
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+        partyId = "PARTY-" + PARTIES.incrementAndGet();
+        tx.executeWithoutResult(status -> {
+            if (entityManager.find(User.class, "USER-001") == null) {
+                User uploader = new User();
+                uploader.setUserId("USER-001");
+                uploader.setUsername("uploader");
+                uploader.setPassword("secret");
+                uploader.setName("Uploader");
+                uploader.setEmail("uploader@example.com");
+                uploader.setRole("Officer");
+                entityManager.persist(uploader);
+            }
+            Party party = new Party();
+            party.setPartyId(partyId);
+            party.setName("Jane Tan");
+            entityManager.persist(party);
+        });
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("uploader", null, List.of()));
+    }
+
+    @AfterEach
+    void clearAuthentication() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void versionsAreAllocatedPerTypeAcrossTheBatch() {
+        documentBatchUploadService.uploadForParty(partyId,
+                List.of(pdf("passport-front"), pdf("address-proof"), pdf("passport-back")),
+                List.of(item("Passport"), item("Proof of Address"), item("Passport")));
+        BatchUploadResultDto second = documentBatchUploadService.uploadForParty(partyId,
+                List.of(pdf("passport-renewed"), pdf("address-proof-2")),
+                List.of(item("Passport"), item("Proof of Address")));
+
+        assertThat(second.getResults()).extracting(r -> r.getDocument().getVersion())
+                .containsExactly(3, 2);
+        assertThat(documents()).extracting(Document::getDocumentType, Document::getVersion,
+                        Document::getOriginalFilename)
+                .containsExactly(
+                        tuple("Passport", 1, "passport-front.pdf"),
+                        tuple("Passport", 2, "passport-back.pdf"),
+                        tuple("Passport", 3, "passport-renewed.pdf"),
+                        tuple("Proof of Address", 1, "address-proof.pdf"),
+                        tuple("Proof of Address", 2, "address-proof-2.pdf"));
+    }
+
+    @Test
+    void fileThatCannotBeStoredFailsAlone() {
+        MultipartFile unreadable = new MockMultipartFile("files", "broken.pdf", "application/pdf", new byte[0]) {
+            @Override
+            public InputStream getInputStream() throws IOException {
+                throw new IOException("connection reset");
+            }
+        };
+
+        BatchUploadResultDto result = documentBatchUploadService.uploadForParty(partyId,
+                List.of(pdf("passport"), unreadable, pdf("untyped")),
+                List.of(item("Passport"), item("Proof of Address"), item(" ")));
+
+        assertThat(result.getSucceeded()).isEqualTo(1);
+        assertThat(result.getFailed()).isEqualTo(2);
+        assertThat(result.getResults()).extracting(BatchUploadResultDto.FileResult::isSuccess)
+                .containsExactly(true, false, false);
+        assertThat(result.getResults().get(1).getError()).contains("connection reset");
+        assertThat(result.getResults().get(2).getError()).isEqualTo("documentType is required");
+        assertThat(documents()).extracting(Document::getOriginalFilename).containsExactly("passport.pdf");
+    }
+
+    @Test
+    void failedInsertRollsBackTheBatchAndReleasesItsPayloads() throws Exception {
+        doThrow(new DataIntegrityViolationException("duplicate version"))
+                .when(documentBatchRepository).insertAll(anyList());
+        long blobFilesBefore = countBlobFiles();
+
+        assertThatThrownBy(() -> documentBatchUploadService.uploadForParty(partyId,
+                List.of(pdf("rolled-back-passport"), pdf("rolled-back-proof")),
+                List.of(item("Passport"), item("Proof of Address"))))
+                .isInstanceOf(DataIntegrityViolationException.class);
+
+        assertThat(documents()).isEmpty();
+        assertThat(documentBlobRepository.findById(sha256(pdfBytes("rolled-back-passport")))).isEmpty();
+        assertThat(documentBlobRepository.findById(sha256(pdfBytes("rolled-back-proof")))).isEmpty();
+        assertThat(countBlobFiles()).isEqualTo(blobFilesBefore);
+    }
+
+    @Test
+    void unknownOwnerIsRejectedAndItsStoredPayloadsReleased() throws Exception {
+        long blobFilesBefore = countBlobFiles();
+
+        assertThatThrownBy(() -> documentBatchUploadService.uploadForParty("PARTY-UNKNOWN",
+                List.of(pdf("orphaned-passport")), List.of(item("Passport"))))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessageContaining("PARTY-UNKNOWN");
+
+        assertThat(documentBlobRepository.findById(sha256(pdfBytes("orphaned-passport")))).isEmpty();
+        assertThat(countBlobFiles()).isEqualTo(blobFilesBefore);
+    }
+
+    @Test
+    void uploadRefusesToRunInsideTheCallersTransaction() {
+        assertThatThrownBy(() -> tx.execute(status -> documentBatchUploadService.uploadForParty(partyId,
+                List.of(pdf("nested")), List.of(item("Passport")))))
+                .isInstanceOf(IllegalTransactionStateException.class);
+    }
+
+    private List<Document> documents() {
+        return tx.execute(status -> entityManager.createQuery(
+                        "select d from Document d where d.ownerId = :ownerId order by d.documentType, d.version",
+                        Document.class)
+                .setParameter("ownerId", partyId)
+                .getResultList());
+    }
+
+    private static MockMultipartFile pdf(String name) {
+        return new MockMultipartFile("files", name + ".pdf", "application/pdf", pdfBytes(name));
+    }
+
+    private static byte[] pdfBytes(String name) {
+        return ("%PDF-1.7 " + name).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static BatchUploadItem item(String documentType) {
+        BatchUploadItem item = new BatchUploadItem();
+        item.setDocumentType(documentType);
+        return item;
+    }
+
+    private static String sha256(byte[] bytes) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+    }
+
+    private static long countBlobFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(Path.of(BLOB_ROOT))) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.bkb.scanner.service;
+
+import com.bkb.scanner.config.JpaTestConfig;
+import com.bkb.scanner.entity.ActivityLog;
+import com.bkb.scanner.entity.Case;
+import com.bkb.scanner.entity.Document;
+import com.bkb.scanner.entity.Party;
+import com.bkb.scanner.entity.RelatedParty;
+import com.bkb.scanner.entity.User;
+import com.bkb.scanner.repository.ActivityLogRepository;
+import com.bkb.scanner.repository.DocumentRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = "documents.expiry-sweep.batch-size=2")
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({JpaTestConfig.class, DocumentExpiryService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DocumentExpiryServiceTest {
+
+    @Autowired
+    private DocumentExpiryService documentExpiryService;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private ActivityLogRepository activityLogRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void dueDocumentsExpireInBatchesWithOneLogPerCase() {
+        Instant now = Instant.now();
+        Instant past = now.minus(1, ChronoUnit.DAYS);
+        Instant future = now.plus(10, ChronoUnit.DAYS);
+        List<Long> ids = new TransactionTemplate(transactionManager).execute(status -> {
+            User uploader = new User();
+            uploader.setUserId("USER-001");
+            uploader.setUsername("uploader");
+            uploader.setPassword("secret");
+            uploader.setName("Uploader");
+            uploader.setEmail("uploader@example.com");
+            uploader.setRole("Officer");
+            entityManager.persist(uploader);
+
+            Case kycCase = new Case();
+            kycCase.setCaseId("CASE-202601-0001");
+            kycCase.setStatus("Active");
+            kycCase.setRiskLevel("Low");
+            entityManager.persist(kycCase);
+
+            Party director = new Party();
+            director.setPartyId("PARTY-001");
+            director.setName("Director");
+            entityManager.persist(director);
+
+            RelatedParty relation = new RelatedParty();
+            relation.setParty(director);
+            relation.setRelationshipType("Director");
+            kycCase.addRelatedParty(relation);
+            entityManager.persist(relation);
+
+            return List.of(
+                    document(uploader, "CASE", "CASE-202601-0001", "Business Registration", "Verified", past),
+                    document(uploader, "CASE", "CASE-202601-0001", "Trade License", "Submitted", past),
+                    document(uploader, "PARTY", "PARTY-001", "Passport", "Verified", past),
+                    document(uploader, "CASE", "CASE-202601-0001", "Bank Statement", "Verified", future),
+                    document(uploader, "CASE", "CASE-202601-0001", "Tax Return", "Rejected", past),
+                    // A case that has since been deleted gets no log
+                    document(uploader, "CASE", "CASE-202601-0002", "Passport", "Verified", past));
+        });
+
+        int expired = documentExpiryService.expireDueDocuments(now);
+
+        assertThat(expired).isEqualTo(4);
+        assertThat(ids).extracting(id -> documentRepository.findById(id).orElseThrow().getStatus())
+                .containsExactly("Expired", "Expired", "Expired", "Verified", "Rejected", "Expired");
+        assertThat(documentRepository.findById(ids.get(0)).orElseThrow().getLastModifiedBy()).isEqualTo("SYSTEM");
+
+        List<ActivityLog> logs = activityLogRepository.findAll();
+        assertThat(logs).hasSize(1);
+        assertThat(logs.get(0).getType()).isEqualTo("DOCUMENTS_EXPIRED");
+        assertThat(logs.get(0).getCreatedBy()).isEqualTo("SYSTEM");
+        assertThat(logs.get(0).getDetails())
+                .startsWith("3 documents expired")
+                .contains("Business Registration", "Trade License", "Passport of party PARTY-001");
+
+        // Nothing left to do on the next run
+        assertThat(documentExpiryService.expireDueDocuments(now)).isZero();
+        assertThat(activityLogRepository.count()).isEqualTo(1);
+    }
+
+    private Long document(User uploader, String ownerType, String ownerId, String type, String status,
+                          Instant expiryDate) {
+        Document document = new Document();
+        document.setName(type);
+        document.setDocumentType(type);
+        document.setOwnerType(ownerType);
+        document.setOwnerId(ownerId);
+        document.setStatus(status);
+        document.setExpiryDate(expiryDate);
+        document.setIsCurrentForCase(true);
+        document.setUploadedByUser(uploader);
+        entityManager.persist(document);
+        return document.getId();
+    }
+}
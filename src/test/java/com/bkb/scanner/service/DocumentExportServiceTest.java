@@ -0,0 +1,218 @@
+package com.bkb.scanner.service;
+
+import com.bkb.scanner.config.JpaTestConfig;
+import com.bkb.scanner.dto.DocumentContentRef;
+import com.bkb.scanner.entity.Case;
+import com.bkb.scanner.entity.CaseEntityData;
+import com.bkb.scanner.entity.Document;
+import com.bkb.scanner.entity.Party;
+import com.bkb.scanner.entity.RelatedParty;
+import com.bkb.scanner.entity.User;
+import com.bkb.scanner.storage.CompressionPolicy;
+import com.bkb.scanner.storage.ContentCodec;
+import com.bkb.scanner.storage.LocalFileSystemBlobStore;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Exports documents stored through DocumentStorageService, so payloads come back from a
+ * real blob store: deflated at rest, shared between documents, or stored as-is.
+ */
+@DataJpaTest(properties = "storage.local.root=target/test-blobs/export")
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({JpaTestConfig.class, DocumentExportService.class, DocumentStorageService.class,
+        LocalFileSystemBlobStore.class, CompressionPolicy.class, ObjectMapper.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DocumentExportServiceTest {
+
+    private static final String CASE_ID = "CASE-202601-0001";
+    private static final byte[] PDF = "%PDF-1.7 signed passport scan".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] REGISTRATION_V1 = "Registration, first filing\n".repeat(200)
+            .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] REGISTRATION_V2 = "Registration, amended filing\n".repeat(200)
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Autowired
+    private DocumentExportService documentExportService;
+
+    @Autowired
+    private DocumentStorageService documentStorageService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockBean
+    private DocumentService documentService;
+
+    @MockBean
+    private DocumentPreviewService documentPreviewService;
+
+    private TransactionTemplate tx;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(documentService.openContent(any(DocumentContentRef.class))).thenAnswer(invocation -> {
+            DocumentContentRef ref = invocation.getArgument(0);
+            return documentStorageService.open(ref.getStorageKey(), ref.getContentEncoding());
+        });
+
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            if (entityManager.find(Case.class, CASE_ID) != null) {
+                return;
+            }
+            User uploader = new User();
+            uploader.setUserId("USER-001");
+            uploader.setUsername("uploader");
+            uploader.setPassword("secret");
+            uploader.setName("Uploader");
+            uploader.setEmail("uploader@example.com");
+            uploader.setRole("Officer");
+            entityManager.persist(uploader);
+
+            CaseEntityData entity = new CaseEntityData();
+            entity.setEntityName("Acme Pte Ltd");
+            entity.setEntityType("Private Limited");
+            Case kycCase = new Case();
+            kycCase.setCaseId(CASE_ID);
+            kycCase.setStatus("KYC Review");
+            kycCase.setRiskLevel("Low");
+            kycCase.setEntityData(entity);
+            entityManager.persist(kycCase);
+
+            Party party = new Party();
+            party.setPartyId("PARTY-001");
+            party.setName("Jane Tan");
+            entityManager.persist(party);
+            RelatedParty relation = new RelatedParty();
+            relation.setParty(party);
+            relation.setRelationshipType("Director");
+            kycCase.addRelatedParty(relation);
+            entityManager.persist(relation);
+
+            document(uploader, "CASE", CASE_ID, "Business Registration", 1, false,
+                    "registration.txt", "text/plain", REGISTRATION_V1);
+            document(uploader, "CASE", CASE_ID, "Business Registration", 2, true,
+                    "registration.txt", "text/plain", REGISTRATION_V2);
+            document(uploader, "PARTY", "PARTY-001", "Passport", 1, true, "passport.pdf", "application/pdf", PDF);
+            // Same bytes as the passport: shares its blob
+            document(uploader, "CASE", CASE_ID, "Director ID", 1, true, "director/id?.pdf", "application/pdf", PDF);
+        });
+    }
+
+    @Test
+    void currentDocumentsAreExportedUnderReadableNamesWithTheirOriginalBytes() throws Exception {
+        tx.executeWithoutResult(status -> {
+            List<Document> documents = entityManager
+                    .createQuery("select d from Document d order by d.documentType, d.version", Document.class)
+                    .getResultList();
+            assertThat(documents).extracting(Document::getContentEncoding).containsExactly(
+                    ContentCodec.DEFLATE.getEncodingName(), ContentCodec.DEFLATE.getEncodingName(),
+                    ContentCodec.IDENTITY.getEncodingName(), ContentCodec.IDENTITY.getEncodingName());
+            assertThat(documents.get(2).getStorageKey()).isEqualTo(documents.get(3).getStorageKey());
+        });
+        Map<String, ZipEntryContent> zip = export(false);
+
+        assertThat(zip.keySet()).containsExactly(
+                "case/Business Registration/v2_registration.txt",
+                "case/Director ID/v1_director_id_.pdf",
+                "parties/PARTY-001/Passport/v1_passport.pdf",
+                DocumentExportService.MANIFEST_NAME);
+        // Deflated at rest, inflated on the way out and deflated again for the archive
+        ZipEntryContent registration = zip.get("case/Business Registration/v2_registration.txt");
+        assertThat(registration.bytes()).isEqualTo(REGISTRATION_V2);
+        assertThat(registration.compressedSize()).isLessThan(REGISTRATION_V2.length);
+        // Deduplicated payload, stored without recompression in both entries
+        assertThat(zip.get("case/Director ID/v1_director_id_.pdf").bytes()).isEqualTo(PDF);
+        assertThat(zip.get("parties/PARTY-001/Passport/v1_passport.pdf").bytes()).isEqualTo(PDF);
+        assertThat(zip.get("parties/PARTY-001/Passport/v1_passport.pdf").compressedSize())
+                .isGreaterThanOrEqualTo(PDF.length);
+
+        JsonNode manifest = new ObjectMapper().readTree(zip.get(DocumentExportService.MANIFEST_NAME).bytes());
+        assertThat(manifest.get("caseId").asText()).isEqualTo(CASE_ID);
+        assertThat(manifest.get("includesHistory").asBoolean()).isFalse();
+        assertThat(manifest.get("documentCount").asInt()).isEqualTo(3);
+    }
+
+    @Test
+    void historyAddsSupersededVersions() throws Exception {
+        Map<String, ZipEntryContent> zip = export(true);
+
+        assertThat(zip.keySet()).contains(
+                "case/Business Registration/v2_registration.txt",
+                "case/Business Registration/v1_registration.txt");
+        assertThat(zip.get("case/Business Registration/v1_registration.txt").bytes()).isEqualTo(REGISTRATION_V1);
+        assertThat(zip).hasSize(5);
+    }
+
+    private Map<String, ZipEntryContent> export(boolean includeHistory) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        documentExportService.writeZip(documentExportService.planCaseExport(CASE_ID, includeHistory), true, out);
+
+        Map<String, ZipEntryContent> entries = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                byte[] bytes = zip.readAllBytes();
+                // Sizes of streamed entries are only known once the entry has been read
+                entries.put(entry.getName(), new ZipEntryContent(bytes, entry.getCompressedSize()));
+            }
+        }
+        return entries;
+    }
+
+    private void document(User uploader, String ownerType, String ownerId, String type, int version,
+                          boolean current, String filename, String mimeType, byte[] content) {
+        Document document = new Document();
+        document.setName(type);
+        document.setDocumentType(type);
+        document.setOwnerType(ownerType);
+        document.setOwnerId(ownerId);
+        document.setStatus("Submitted");
+        document.setVersion(version);
+        document.setIsCurrentForCase(current);
+        document.setOriginalFilename(filename);
+        document.setMimeType(mimeType);
+        document.setUploadedByUser(uploader);
+        try {
+            documentStorageService.store(document, new ByteArrayInputStream(content));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        entityManager.persist(document);
+    }
+
+    private record ZipEntryContent(byte[] bytes, long compressedSize) {
+    }
+}
@@ -0,0 +1,152 @@
+package com.bkb.scanner.service;
+
+import com.bkb.scanner.dto.DocumentContentRef;
+import com.bkb.scanner.storage.ContentCodec;
+import com.bkb.scanner.storage.LocalFileSystemBlobStore;
+import com.bkb.scanner.storage.PreviewSize;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class DocumentPreviewServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private LocalFileSystemBlobStore blobStore;
+    private DocumentPreviewService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        blobStore = new LocalFileSystemBlobStore(tempDir.toString());
+        service = new DocumentPreviewService(DataSize.ofMegabytes(1));
+        ReflectionTestUtils.setField(service, "blobStore", blobStore);
+        ReflectionTestUtils.setField(service, "previewExecutor", executor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void pdfPreviewsAreRenderedInTheBackgroundAndStoredBesideTheBlob() throws Exception {
+        blobStore.put("pdfblob01", new ByteArrayInputStream(a4Pdf()));
+
+        service.generateAfterCommit("pdfblob01", "identity", "application/pdf");
+
+        await().atMost(Duration.ofSeconds(10)).until(() -> blobStore.exists(PreviewSize.THUMBNAIL.key("pdfblob01")));
+        assertThat(blobStore.localPath(PreviewSize.PAGE.key("pdfblob01")).orElseThrow().getParent())
+                .isEqualTo(blobStore.localPath("pdfblob01").orElseThrow().getParent());
+
+        BufferedImage page = ImageIO.read(new ByteArrayInputStream(service.getPreview(ref("pdfblob01", "identity",
+                "application/pdf"), PreviewSize.PAGE).orElseThrow()));
+        assertThat(page.getHeight()).isEqualTo(1280);
+        assertThat(page.getWidth()).isBetween(900, 910);
+        BufferedImage thumbnail = ImageIO.read(new ByteArrayInputStream(service.getPreview(ref("pdfblob01", "identity",
+                "application/pdf"), PreviewSize.THUMBNAIL).orElseThrow()));
+        assertThat(thumbnail.getHeight()).isEqualTo(240);
+
+        // Served from the cache from now on
+        blobStore.delete(PreviewSize.THUMBNAIL.key("pdfblob01"));
+        assertThat(service.getPreview(ref("pdfblob01", "identity", "application/pdf"), PreviewSize.THUMBNAIL)).isPresent();
+    }
+
+    @Test
+    void missingPreviewIsRenderedOnRequestWhenTheQueueRejectedIt() throws Exception {
+        executor.shutdownNow();
+        // A compressed transparent PNG: decoded on the way in and flattened onto white
+        BufferedImage image = new BufferedImage(3000, 2000, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.BLACK);
+        graphics.fillRect(0, 0, 1500, 2000);
+        graphics.dispose();
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+        blobStore.put("pngblob01", ContentCodec.DEFLATE.encode(new ByteArrayInputStream(png.toByteArray())));
+
+        service.generateAfterCommit("pngblob01", "deflate", "image/png");
+        assertThat(blobStore.exists(PreviewSize.PAGE.key("pngblob01"))).isFalse();
+
+        BufferedImage page = ImageIO.read(new ByteArrayInputStream(service.getPreview(ref("pngblob01", "deflate",
+                "image/png"), PreviewSize.PAGE).orElseThrow()));
+        assertThat(page.getWidth()).isEqualTo(1280);
+        assertThat(page.getRGB(100, 100) & 0xff).isLessThan(32);
+        assertThat(page.getRGB(1200, 100) & 0xff).isGreaterThan(224);
+        assertThat(blobStore.exists(PreviewSize.THUMBNAIL.key("pngblob01"))).isTrue();
+    }
+
+    @Test
+    void documentsWithoutPreviewGetNone() throws Exception {
+        assertThat(service.getPreview(ref("docblob01", "deflate", "application/msword"), PreviewSize.PAGE)).isEmpty();
+        assertThat(service.getPreview(ref(null, null, "application/pdf"), PreviewSize.PAGE)).isEmpty();
+        // Not actually a PDF
+        blobStore.put("badblob01", new ByteArrayInputStream("not a pdf".getBytes()));
+        assertThat(service.getPreview(ref("badblob01", "identity", "application/pdf"), PreviewSize.PAGE)).isEmpty();
+    }
+
+    @Test
+    void cacheEvictsLeastRecentlyUsedEntriesToStayWithinItsByteBound() {
+        PreviewCache cache = new PreviewCache(100);
+        cache.put("a", new byte[40]);
+        cache.put("b", new byte[40]);
+        cache.get("a");
+        cache.put("c", new byte[40]);
+
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.get("a")).isNotNull();
+        assertThat(cache.get("c")).isNotNull();
+        assertThat(cache.bytes()).isEqualTo(80);
+
+        cache.put("huge", new byte[101]);
+        assertThat(cache.get("huge")).isNull();
+        assertThat(cache.bytes()).isEqualTo(80);
+    }
+
+    private static byte[] a4Pdf() throws Exception {
+        try (PDDocument document = new PDDocument()) {
+            for (int i = 0; i < 3; i++) {
+                PDPage page = new PDPage(PDRectangle.A4);
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.addRect(50, 600, 300, 100);
+                    content.fill();
+                }
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            document.save(bytes);
+            return bytes.toByteArray();
+        }
+    }
+
+    private static DocumentContentRef ref(String storageKey, String contentEncoding, String mimeType) {
+        DocumentContentRef ref = new DocumentContentRef();
+        ref.setId(1L);
+        ref.setStorageKey(storageKey);
+        ref.setContentEncoding(contentEncoding);
+        ref.setMimeType(mimeType);
+        return ref;
+    }
+}
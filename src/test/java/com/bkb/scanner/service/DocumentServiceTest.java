@@ -0,0 +1,143 @@
+package com.bkb.scanner.service;
+
+import com.bkb.scanner.config.JpaTestConfig;
+import com.bkb.scanner.dto.DocumentDto;
+import com.bkb.scanner.entity.Case;
+import com.bkb.scanner.entity.CaseEntityData;
+import com.bkb.scanner.entity.Document;
+import com.bkb.scanner.entity.User;
+import com.bkb.scanner.mapper.DocumentMapperImpl;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@DataJpaTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({JpaTestConfig.class, DocumentService.class, DocumentVersionService.class, DocumentMapperImpl.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DocumentServiceTest {
+
+    private static final String CASE_ID = "CASE-202601-0001";
+    private static final byte[] PDF = "%PDF-1.7 signed mandate".getBytes(StandardCharsets.US_ASCII);
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockBean
+    private DocumentStorageService documentStorageService;
+
+    private final AtomicBoolean storedInTransaction = new AtomicBoolean();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            if (entityManager.find(Case.class, CASE_ID) != null) {
+                return;
+            }
+            User uploader = new User();
+            uploader.setUserId("USER-001");
+            uploader.setUsername("uploader");
+            uploader.setPassword("secret");
+            uploader.setName("Uploader");
+            uploader.setEmail("uploader@example.com");
+            uploader.setRole("Officer");
+            entityManager.persist(uploader);
+
+            CaseEntityData entity = new CaseEntityData();
+            entity.setEntityName("Acme Pte Ltd");
+            entity.setEntityType("Private Limited");
+            Case kycCase = new Case();
+            kycCase.setCaseId(CASE_ID);
+            kycCase.setStatus("KYC Review");
+            kycCase.setRiskLevel("Low");
+            kycCase.setEntityData(entity);
+            entityManager.persist(kycCase);
+        });
+        doAnswer(invocation -> {
+            storedInTransaction.set(TransactionSynchronizationManager.isActualTransactionActive());
+            Document document = invocation.getArgument(0);
+            invocation.<InputStream>getArgument(1).readAllBytes();
+            document.setStorageKey("blob-" + System.nanoTime());
+            document.setContentSha256("sha-" + System.nanoTime());
+            return null;
+        }).when(documentStorageService).store(any(Document.class), any(InputStream.class));
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("uploader", null, List.of()));
+    }
+
+    @AfterEach
+    void clearAuthentication() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void payloadIsStoredBeforeAnyTransactionStarts() throws Exception {
+        DocumentDto first = documentService.uploadDocumentForCase(CASE_ID, "Mandate", new ByteArrayInputStream(PDF),
+                "mandate.pdf", "application/pdf", "2027-01-31", "Signed copy", false);
+        DocumentDto second = documentService.uploadDocumentForCase(CASE_ID, "Mandate", new ByteArrayInputStream(PDF),
+                "mandate-v2.pdf", "application/pdf", null, null, null);
+
+        assertThat(storedInTransaction).isFalse();
+        assertThat(first.getVersion()).isEqualTo(1);
+        assertThat(first.getComments()).isEqualTo("Signed copy");
+        assertThat(second.getVersion()).isEqualTo(2);
+        verify(documentStorageService, never()).releaseStored(any());
+    }
+
+    @Test
+    void payloadIsReleasedWhenTheDocumentCannotBeSaved() {
+        assertThatThrownBy(() -> documentService.uploadDocumentForCase("CASE-209901-9999", "Mandate",
+                new ByteArrayInputStream(PDF), "mandate.pdf", "application/pdf", null, null, false))
+                .hasMessageContaining("Case not found");
+
+        verify(documentStorageService).releaseStored(any(Document.class));
+    }
+
+    @Test
+    void uploadsRefuseToRunInsideTheCallersTransaction() {
+        assertThatThrownBy(() -> new TransactionTemplate(transactionManager).execute(status -> {
+            try {
+                return documentService.uploadDocumentForCase(CASE_ID, "Mandate", new ByteArrayInputStream(PDF),
+                        "mandate.pdf", "application/pdf", null, null, false);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        })).isInstanceOf(IllegalTransactionStateException.class);
+    }
+}
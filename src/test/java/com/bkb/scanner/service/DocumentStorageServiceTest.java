@@ -0,0 +1,367 @@
+package com.bkb.scanner.service;
+
+import com.bkb.scanner.entity.Document;
+import com.bkb.scanner.entity.DocumentBlob;
+import com.bkb.scanner.repository.DocumentBlobRepository;
+import com.bkb.scanner.storage.CompressionPolicy;
+import com.bkb.scanner.storage.LocalFileSystemBlobStore;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Ingesting uploads from a stream and scanner output from a file, against a real blob
+ * store on disk.
+ */
+class DocumentStorageServiceTest {
+
+    private static final byte[] PDF = "%PDF-1.7 600 dpi colour scan".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PNG_MAGIC = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    @TempDir
+    Path tempDir;
+
+    private final DocumentBlobRepository documentBlobRepository = mock(DocumentBlobRepository.class);
+    private final EntityManager entityManager = mock(EntityManager.class);
+    private final DocumentPreviewService documentPreviewService = mock(DocumentPreviewService.class);
+    private final Map<String, DocumentBlob> blobs = new ConcurrentHashMap<>();
+    private final NoOpTransactionManager transactionManager = new NoOpTransactionManager();
+    private DocumentStorageService service;
+    private Path blobRoot;
+    private Path workDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        blobRoot = tempDir.resolve("blobs");
+        workDir = Files.createDirectory(tempDir.resolve("scans"));
+
+        service = new DocumentStorageService();
+        ReflectionTestUtils.setField(service, "blobStore", new LocalFileSystemBlobStore(blobRoot.toString()));
+        ReflectionTestUtils.setField(service, "documentBlobRepository", documentBlobRepository);
+        ReflectionTestUtils.setField(service, "compressionPolicy", new CompressionPolicy(true, List.of("image/png")));
+        ReflectionTestUtils.setField(service, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(service, "entityManager", entityManager);
+        ReflectionTestUtils.setField(service, "maxUploadSize", DataSize.ofMegabytes(1));
+        ReflectionTestUtils.setField(service, "documentPreviewService", documentPreviewService);
+
+        // A tiny in-memory stand-in for csob_document_blobs
+        doAnswer(invocation -> {
+            DocumentBlob blob = invocation.getArgument(0);
+            blobs.put(blob.getSha256(), blob);
+            return null;
+        }).when(entityManager).persist(any(DocumentBlob.class));
+        when(documentBlobRepository.findById(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(blobs.get(invocation.<String>getArgument(0))));
+        when(documentBlobRepository.incrementRefCount(anyString())).thenAnswer(invocation -> {
+            DocumentBlob blob = blobs.get(invocation.<String>getArgument(0));
+            if (blob == null) {
+                return 0;
+            }
+            blob.setRefCount(blob.getRefCount() + 1);
+            return 1;
+        });
+        when(documentBlobRepository.decrementRefCount(anyString())).thenAnswer(invocation -> {
+            DocumentBlob blob = blobs.get(invocation.<String>getArgument(0));
+            blob.setRefCount(blob.getRefCount() - 1);
+            return 1;
+        });
+        when(documentBlobRepository.deleteIfUnreferenced(anyString())).thenAnswer(invocation -> {
+            DocumentBlob blob = blobs.get(invocation.<String>getArgument(0));
+            return blob != null && blob.getRefCount() == 0 && blobs.remove(blob.getSha256()) != null ? 1 : 0;
+        });
+    }
+
+    @Test
+    void uploadIsSniffedFromItsHeaderAndCompressedOnTheWayToStorage() throws Exception {
+        byte[] png = new byte[64 * 1024];
+        System.arraycopy(PNG_MAGIC, 0, png, 0, PNG_MAGIC.length);
+        Document document = new Document();
+        document.setMimeType("application/octet-stream");
+
+        // A client trickling a few bytes per read still gets its header sniffed
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> upload(document, trickle(png)));
+
+        assertThat(document.getMimeType()).isEqualTo("image/png");
+        assertThat(document.getContentEncoding()).isEqualTo("deflate");
+        assertThat(document.getSizeInBytes()).isEqualTo(png.length);
+        assertThat(document.getStoredSizeInBytes()).isLessThan(png.length / 10);
+        assertThat(document.getContentSha256()).isEqualTo(sha256(png));
+        assertThat(document.isDeduplicated()).isFalse();
+        try (InputStream stored = service.openContent(document)) {
+            assertThat(stored.readAllBytes()).isEqualTo(png);
+        }
+    }
+
+    @Test
+    void sniffedTypeWinsOverTheDeclaredOneAndIncompressibleTypesAreStoredAsIs() throws Exception {
+        Document document = new Document();
+        document.setMimeType("image/png");
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> upload(document, trickle(PDF)));
+
+        assertThat(document.getMimeType()).isEqualTo("application/pdf");
+        assertThat(document.getContentEncoding()).isEqualTo("identity");
+        assertThat(blobFiles()).singleElement().satisfies(file -> assertThat(file).hasBinaryContent(PDF));
+    }
+
+    @Test
+    void oversizedUploadIsRejectedMidStream() throws Exception {
+        ReflectionTestUtils.setField(service, "maxUploadSize", DataSize.ofKilobytes(1));
+        byte[] content = new byte[1024 * 1024];
+        AtomicLong read = new AtomicLong();
+        InputStream counting = new FilterInputStream(new ByteArrayInputStream(content)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                read.addAndGet(Math.max(n, 0));
+                return n;
+            }
+        };
+
+        assertThatThrownBy(() -> service.store(new Document(), counting)).hasMessageContaining("maximum size");
+
+        assertThat(read.get()).isLessThan(content.length / 4);
+        assertThat(blobs).isEmpty();
+        assertThat(blobFiles()).isEmpty();
+        try (Stream<Path> tmp = Files.list(blobRoot.resolve(".tmp"))) {
+            assertThat(tmp).isEmpty();
+        }
+    }
+
+    @Test
+    void identicalPayloadsShareOneBlobUntilTheLastReferenceIsReleased() throws Exception {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Document first = new Document();
+        Document second = new Document();
+        tx.executeWithoutResult(status -> upload(first, new ByteArrayInputStream(PDF)));
+        tx.executeWithoutResult(status -> upload(second, new ByteArrayInputStream(PDF)));
+
+        assertThat(first.isDeduplicated()).isFalse();
+        assertThat(second.isDeduplicated()).isTrue();
+        assertThat(second.getStorageKey()).isEqualTo(first.getStorageKey());
+        assertThat(blobs).containsOnlyKeys(sha256(PDF));
+        assertThat(blobs.get(sha256(PDF)).getRefCount()).isEqualTo(2);
+        assertThat(blobFiles()).hasSize(1);
+
+        service.releaseAfterCommit(List.of(sha256(PDF)));
+
+        assertThat(blobs.get(sha256(PDF)).getRefCount()).isEqualTo(1);
+        try (InputStream stored = service.openContent(second)) {
+            assertThat(stored.readAllBytes()).isEqualTo(PDF);
+        }
+        verify(documentPreviewService, never()).delete(anyString());
+
+        service.releaseAfterCommit(List.of(sha256(PDF)));
+
+        assertThat(blobs).isEmpty();
+        assertThat(blobFiles()).isEmpty();
+        verify(documentPreviewService).delete(first.getStorageKey());
+    }
+
+    @Test
+    void uploadLosingTheRaceToRegisterAPayloadSharesTheWinnersBlob() throws Exception {
+        // Another upload of the same bytes commits its blob row between our probe and our insert
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Document winner = new Document();
+        tx.executeWithoutResult(status -> upload(winner, new ByteArrayInputStream(PDF)));
+        DocumentBlob winnersBlob = blobs.remove(sha256(PDF));
+        doAnswer(invocation -> {
+            blobs.put(winnersBlob.getSha256(), winnersBlob);
+            throw new DataIntegrityViolationException("Duplicate entry for key PRIMARY");
+        }).when(entityManager).persist(any(DocumentBlob.class));
+
+        Document loser = new Document();
+        tx.executeWithoutResult(status -> upload(loser, new ByteArrayInputStream(PDF)));
+
+        assertThat(loser.isDeduplicated()).isTrue();
+        assertThat(loser.getStorageKey()).isEqualTo(winner.getStorageKey());
+        assertThat(winnersBlob.getRefCount()).isEqualTo(2);
+        assertThat(blobFiles()).hasSize(1);
+        try (Stream<Path> tmp = Files.list(blobRoot.resolve(".tmp"))) {
+            assertThat(tmp).isEmpty();
+        }
+    }
+
+    @Test
+    void scanOutputIsMovedIntoTheStoreAndHashedOnTheWay() throws Exception {
+        Path scan = Files.write(workDir.resolve("scan_1.pdf"), PDF);
+        Document document = new Document();
+        document.setMimeType("application/pdf");
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> store(document, scan));
+
+        assertThat(scan).doesNotExist();
+        assertThat(document.getContentSha256()).isEqualTo(sha256(PDF));
+        assertThat(document.getSizeInBytes()).isEqualTo(PDF.length);
+        assertThat(document.getContentEncoding()).isEqualTo("identity");
+        try (InputStream stored = service.openContent(document)) {
+            assertThat(stored.readAllBytes()).isEqualTo(PDF);
+        }
+        assertThat(blobFiles()).hasSize(1);
+    }
+
+    @Test
+    void compressibleScanIsDeflatedWhileItIsHashedAndARepeatIsDropped() throws Exception {
+        byte[] png = new byte[64 * 1024];
+        System.arraycopy(PNG_MAGIC, 0, png, 0, PNG_MAGIC.length);
+        Document first = new Document();
+        Document repeat = new Document();
+
+        store(first, Files.write(workDir.resolve("scan_4.png"), png));
+        store(repeat, Files.write(workDir.resolve("scan_5.png"), png));
+
+        assertThat(first.getContentEncoding()).isEqualTo("deflate");
+        assertThat(first.getContentSha256()).isEqualTo(sha256(png));
+        assertThat(first.getStoredSizeInBytes()).isLessThan(png.length / 10);
+        assertThat(repeat.isDeduplicated()).isTrue();
+        assertThat(repeat.getStorageKey()).isEqualTo(first.getStorageKey());
+        assertThat(blobs.get(sha256(png)).getRefCount()).isEqualTo(2);
+        assertThat(blobFiles()).hasSize(1);
+        try (Stream<Path> tmp = Files.list(blobRoot.resolve(".tmp"))) {
+            assertThat(tmp).isEmpty();
+        }
+    }
+
+    @Test
+    void failedTransactionLeavesNoPayloadOrTempFileBehind() throws Exception {
+        Path scan = Files.write(workDir.resolve("scan_2.pdf"), PDF);
+        Document document = new Document();
+        document.setMimeType("application/pdf");
+
+        assertThatThrownBy(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            store(document, scan);
+            throw new IllegalStateException("document insert failed");
+        })).hasMessage("document insert failed");
+
+        assertThat(blobs).isEmpty();
+        assertThat(blobFiles()).isEmpty();
+        try (Stream<Path> tmp = Files.list(blobRoot.resolve(".tmp"))) {
+            assertThat(tmp).isEmpty();
+        }
+    }
+
+    @Test
+    void payloadStoredOutsideATransactionIsKeptUntilTheCallerReleasesIt() throws Exception {
+        Document kept = new Document();
+        Document dropped = new Document();
+        upload(kept, new ByteArrayInputStream(PDF));
+        upload(dropped, new ByteArrayInputStream(PDF));
+        assertThat(blobs.get(sha256(PDF)).getRefCount()).isEqualTo(2);
+
+        // The document could not be saved
+        service.releaseStored(dropped);
+
+        assertThat(blobs.get(sha256(PDF)).getRefCount()).isEqualTo(1);
+        service.releaseStored(kept);
+        assertThat(blobs).isEmpty();
+        assertThat(blobFiles()).isEmpty();
+    }
+
+    @Test
+    void oversizedScanIsRejectedBeforeAnythingIsStored() throws Exception {
+        ReflectionTestUtils.setField(service, "maxUploadSize", DataSize.ofBytes(8));
+        Path scan = Files.write(workDir.resolve("scan_3.pdf"), PDF);
+
+        assertThatThrownBy(() -> service.storeFile(new Document(), scan)).hasMessageContaining("maximum size");
+
+        assertThat(scan).exists();
+        assertThat(blobs).isEmpty();
+        assertThat(blobFiles()).isEmpty();
+    }
+
+    private void upload(Document document, InputStream content) {
+        try {
+            service.store(document, content);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Hands out at most three bytes per read, like a slow client
+     */
+    private static InputStream trickle(byte[] bytes) {
+        return new FilterInputStream(new ByteArrayInputStream(bytes)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 3));
+            }
+        };
+    }
+
+    private void store(Document document, Path scan) {
+        try {
+            service.storeFile(document, scan);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private List<Path> blobFiles() throws Exception {
+        try (Stream<Path> files = Files.walk(blobRoot)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(file -> !file.getParent().getFileName().toString().equals(".tmp"))
+                    .toList();
+        }
+    }
+
+    private static String sha256(byte[] bytes) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+    }
+
+    /**
+     * Real transaction synchronization without a database, so rollback callbacks run
+     */
+    private static class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
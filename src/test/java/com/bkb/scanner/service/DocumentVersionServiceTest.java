@@ -0,0 +1,134 @@
+package com.bkb.scanner.service;
+
+import com.bkb.scanner.config.JpaTestConfig;
+import com.bkb.scanner.entity.DocumentVersionCounter;
+import com.bkb.scanner.repository.DocumentVersionCounterRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@DataJpaTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({JpaTestConfig.class, DocumentVersionService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DocumentVersionServiceTest {
+
+    private static final int UPLOADS = 64;
+
+    @Autowired
+    private DocumentVersionService documentVersionService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @SpyBean
+    private DocumentVersionCounterRepository counterRepository;
+
+    @Test
+    void parallelUploadsNeverShareAVersion() throws Exception {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Callable<Integer> upload = () -> tx.execute(status ->
+                documentVersionService.allocateNextVersion("CASE", "CASE-202601-0001", "Passport"));
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < UPLOADS; i++) {
+                futures.add(pool.submit(upload));
+            }
+            List<Integer> versions = new ArrayList<>();
+            for (Future<Integer> future : futures) {
+                versions.add(future.get());
+            }
+
+            assertThat(versions).doesNotHaveDuplicates()
+                    .containsExactlyInAnyOrderElementsOf(IntStream.rangeClosed(1, UPLOADS).boxed().toList());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void countersAreIndependentPerDocumentType() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        int passport = tx.execute(s -> documentVersionService.allocateNextVersion("PARTY", "PARTY-1", "Passport"));
+        int bill = tx.execute(s -> documentVersionService.allocateNextVersion("PARTY", "PARTY-1", "Utility Bill"));
+        int passportAgain = tx.execute(s -> documentVersionService.allocateNextVersion("PARTY", "PARTY-1", "Passport"));
+
+        assertThat(passport).isEqualTo(1);
+        assertThat(bill).isEqualTo(1);
+        assertThat(passportAgain).isEqualTo(2);
+    }
+
+    @Test
+    void newCounterIsCreatedBeforeTheCallersTransactionUpdatesIt() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        DocumentVersionCounter.Key key = new DocumentVersionCounter.Key("CASE", "CASE-202601-0002", "Passport");
+
+        int version = tx.execute(status -> {
+            int allocated = documentVersionService.allocateNextVersion("CASE", "CASE-202601-0002", "Passport");
+            // Committed on its own, so nothing in this transaction holds a lock on the new key
+            boolean committed = Boolean.TRUE.equals(new TransactionTemplate(transactionManager, requiresNew())
+                    .execute(inner -> counterRepository.existsById(key)));
+            assertThat(committed).isTrue();
+            return allocated;
+        });
+
+        assertThat(version).isEqualTo(1);
+        // An UPDATE that matches no row would take a gap lock in MySQL; the only one runs after the insert
+        InOrder order = inOrder(counterRepository);
+        order.verify(counterRepository).existsById(key);
+        order.verify(counterRepository).increment(key, 1);
+        verify(counterRepository, times(1)).increment(any(), anyInt());
+    }
+
+    @Test
+    void countersCreatedUpFrontAreCommittedBeforeTheUploadTransaction() {
+        documentVersionService.createMissingCounters("PARTY", "PARTY-2", List.of("Passport", "Utility Bill"));
+
+        assertThat(counterRepository.existsById(new DocumentVersionCounter.Key("PARTY", "PARTY-2", "Passport"))).isTrue();
+        assertThat(counterRepository.existsById(new DocumentVersionCounter.Key("PARTY", "PARTY-2", "Utility Bill")))
+                .isTrue();
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        assertThat(tx.<Integer>execute(s -> documentVersionService.allocateVersions("PARTY", "PARTY-2", "Passport", 2)))
+                .isEqualTo(1);
+        assertThat(tx.<Integer>execute(s -> documentVersionService.allocateNextVersion("PARTY", "PARTY-2", "Utility Bill")))
+                .isEqualTo(1);
+        // Existing counters are left alone
+        documentVersionService.createMissingCounters("PARTY", "PARTY-2", List.of("Passport"));
+        assertThat(tx.<Integer>execute(s -> documentVersionService.allocateNextVersion("PARTY", "PARTY-2", "Passport")))
+                .isEqualTo(3);
+    }
+
+    private static TransactionDefinition requiresNew() {
+        return new DefaultTransactionDefinition(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+}
@@ -0,0 +1,70 @@
+package com.bkb.scanner.service;
+
+import com.bkb.scanner.config.JpaTestConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Case IDs per second from 8 threads, reserving one number at a time and in blocks.
+ * Run with: mvn test -Dtest=IdSequenceServiceBenchmark -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@DataJpaTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({JpaTestConfig.class, IdSequenceService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class IdSequenceServiceBenchmark {
+
+    private static final int THREADS = 8;
+    private static final int IDS_PER_THREAD = 5_000;
+
+    @Autowired
+    private IdSequenceService idSequenceService;
+
+    @Test
+    void idsPerSecond() throws Exception {
+        for (int blockSize : new int[]{1, 50, 500}) {
+            ReflectionTestUtils.setField(idSequenceService, "blockSize", blockSize);
+            Set<String> ids = ConcurrentHashMap.newKeySet();
+            ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+            try {
+                long started = System.nanoTime();
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < THREADS; t++) {
+                    futures.add(pool.submit(() -> {
+                        for (int i = 0; i < IDS_PER_THREAD; i++) {
+                            ids.add(idSequenceService.nextCaseId());
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+                double seconds = (System.nanoTime() - started) / 1e9;
+                assertThat(ids).hasSize(THREADS * IDS_PER_THREAD);
+                System.out.printf("block size %3d: %,10.0f IDs/s%n", blockSize, ids.size() / seconds);
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.bkb.scanner.service;
+
+import com.bkb.scanner.config.JpaTestConfig;
+import com.bkb.scanner.entity.Case;
+import com.bkb.scanner.entity.CaseEntityData;
+import com.bkb.scanner.entity.User;
+import com.bkb.scanner.repository.CaseRepository;
+import com.bkb.scanner.repository.IdSequenceRepository;
+import com.bkb.scanner.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = "ids.block-size=7")
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({JpaTestConfig.class, IdSequenceService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class IdSequenceServiceTest {
+
+    private static final int CREATES = 200;
+
+    @Autowired
+    private IdSequenceService idSequenceService;
+
+    @Autowired
+    private IdSequenceRepository sequenceRepository;
+
+    @Autowired
+    private CaseRepository caseRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void parallelCreatesOnTwoNodesNeverShareACaseId() throws Exception {
+        // A second node: its own blocks, the same sequence table
+        IdSequenceService otherNode = new IdSequenceService();
+        ReflectionTestUtils.setField(otherNode, "sequenceRepository", sequenceRepository);
+        ReflectionTestUtils.setField(otherNode, "caseRepository", caseRepository);
+        ReflectionTestUtils.setField(otherNode, "userRepository", userRepository);
+        ReflectionTestUtils.setField(otherNode, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(otherNode, "entityManager", entityManager);
+        ReflectionTestUtils.setField(otherNode, "blockSize", 5);
+
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<String>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < CREATES; i++) {
+                IdSequenceService node = i % 2 == 0 ? idSequenceService : otherNode;
+                // The insert fails on the primary key if an ID is handed out twice
+                Callable<String> create = () -> tx.execute(status -> caseRepository.save(kycCase(node.nextCaseId())))
+                        .getCaseId();
+                futures.add(pool.submit(create));
+            }
+            List<String> caseIds = new ArrayList<>();
+            for (Future<String> future : futures) {
+                caseIds.add(future.get());
+            }
+
+            assertThat(caseIds).doesNotHaveDuplicates().hasSize(CREATES)
+                    .allMatch(id -> id.matches("CASE-\\d{6}-\\d{4}"));
+            assertThat(caseRepository.count()).isEqualTo(CREATES);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void userSequenceContinuesNumericallyAfterExistingIds() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            userRepository.save(user("USER-999"));
+            userRepository.save(user("USER-1000"));
+            userRepository.save(user("USER-ADMIN"));
+        });
+
+        assertThat(idSequenceService.nextUserId()).isEqualTo("USER-1001");
+        assertThat(idSequenceService.nextUserId()).isEqualTo("USER-1002");
+        // The whole block is reserved in the table
+        assertThat(sequenceRepository.findLastValue("USER")).isEqualTo(1007);
+    }
+
+    private static Case kycCase(String caseId) {
+        CaseEntityData entity = new CaseEntityData();
+        entity.setEntityName("Entity " + caseId);
+        entity.setEntityType("Private Limited");
+        Case kycCase = new Case();
+        kycCase.setCaseId(caseId);
+        kycCase.setStatus("KYC Review");
+        kycCase.setRiskLevel("Low");
+        kycCase.setEntityData(entity);
+        return kycCase;
+    }
+
+    private static User user(String userId) {
+        User user = new User();
+        user.setUserId(userId);
+        user.setUsername(userId.toLowerCase());
+        user.setPassword("secret");
+        user.setName(userId);
+        user.setEmail(userId.toLowerCase() + "@example.com");
+        user.setRole("Officer");
+        return user;
+    }
+}
@@ -0,0 +1,113 @@
+package com.bkb.scanner.service;
+
+import com.bkb.scanner.dto.ScanJobDto;
+import com.bkb.scanner.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+class ScanJobServiceTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Map<String, CountDownLatch> releases = new ConcurrentHashMap<>();
+    private final List<String> started = new CopyOnWriteArrayList<>();
+    private ScanJobService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new ScanJobService();
+        ReflectionTestUtils.setField(service, "scanExecutor", executor);
+        ReflectionTestUtils.setField(service, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(service, "maxQueuedPerProfile", 2);
+        ReflectionTestUtils.setField(service, "defaultScanDuration", Duration.ofSeconds(60));
+        ReflectionTestUtils.setField(service, "retention", Duration.ofHours(1));
+        ReflectionTestUtils.setField(service, "sseTimeout", Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        releases.values().forEach(CountDownLatch::countDown);
+        executor.shutdownNow();
+    }
+
+    @Test
+    void jobsOnOneProfileRunOneAtATimeWhileOtherProfilesRunInParallel() {
+        ScanJob first = submit("ADF-1");
+        ScanJob second = submit("ADF-1");
+        ScanJob other = submit("Flatbed");
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> started.size() == 2);
+        assertThat(started).containsExactlyInAnyOrder(first.getJobId(), other.getJobId());
+        assertThat(second.getStatus()).isEqualTo(ScanJob.STATUS_QUEUED);
+
+        ScanJobDto waiting = service.describe(second);
+        assertThat(waiting.getQueuePosition()).isEqualTo(1);
+        assertThat(waiting.getExpectedWaitSeconds()).isBetween(50L, 60L);
+        assertThat(service.describe(first).getQueuePosition()).isZero();
+        assertThat(meterRegistry.get("scan.queue.depth").tag("profile", "ADF-1").gauge().value()).isEqualTo(1.0);
+
+        release(first);
+        await().atMost(Duration.ofSeconds(5)).until(() -> started.contains(second.getJobId()));
+        assertThat(first.getStatus()).isEqualTo(ScanJob.STATUS_COMPLETED);
+        assertThat(meterRegistry.get("scan.queue.depth").tag("profile", "ADF-1").gauge().value()).isZero();
+
+        release(second);
+        release(other);
+        await().atMost(Duration.ofSeconds(5)).until(() -> second.isFinished() && other.isFinished());
+        await().atMost(Duration.ofSeconds(5)).until(() -> meterRegistry.get("scan.duration").tag("profile", "ADF-1")
+                .tag("outcome", ScanJob.STATUS_COMPLETED).timer().count() == 2);
+    }
+
+    @Test
+    void aFullProfileQueueRejectsNewJobs() {
+        ScanJob running = submit("ADF-1");
+        await().atMost(Duration.ofSeconds(5)).until(() -> started.contains(running.getJobId()));
+        submit("ADF-1");
+        submit("ADF-1");
+
+        assertThatThrownBy(() -> submit("ADF-1")).isInstanceOf(ServiceUnavailableException.class);
+        assertThat(submit("Flatbed").getStatus()).isNotNull();
+    }
+
+    private ScanJob submit(String profile) {
+        ScanJob job = new ScanJob(profile, "CASE", "CASE-202601-0001", "Passport", "pdf", "alice", Duration.ofMinutes(1), null);
+        releases.put(job.getJobId(), new CountDownLatch(1));
+        return service.submit(job, this::work);
+    }
+
+    private void work(ScanJob job) {
+        service.running(job);
+        started.add(job.getJobId());
+        try {
+            if (releases.get(job.getJobId()).await(10, TimeUnit.SECONDS)) {
+                service.completed(job, 1L);
+            } else {
+                service.failed(job, "not released");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            service.failed(job, "interrupted");
+        }
+    }
+
+    private void release(ScanJob job) {
+        releases.get(job.getJobId()).countDown();
+    }
+}
@@ -0,0 +1,133 @@
+package com.bkb.scanner.service;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ScanPageSplitterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ForkJoinPool pool = new ForkJoinPool(3);
+    private ScanPageSplitter splitter;
+
+    @BeforeEach
+    void setUp() {
+        splitter = new ScanPageSplitter();
+        ReflectionTestUtils.setField(splitter, "scanPagePool", pool);
+        ReflectionTestUtils.setField(splitter, "blankPageMaxInk", 0.002);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void splitsByPageCountsInFeedOrder() throws Exception {
+        // Each page carries a bar as many units wide as its number, so pages can be told apart afterwards
+        Path scan = scan("scan.pdf", 1, 2, 3, 4, 5, 6);
+
+        List<Path> parts = splitter.splitByPageCounts(scan, List.of(2, 1, 3), tempDir, "doc");
+
+        assertThat(parts).extracting(part -> part.getFileName().toString())
+                .containsExactly("doc001.pdf", "doc002.pdf", "doc003.pdf");
+        assertThat(pages(parts.get(0))).containsExactly(1, 2);
+        assertThat(pages(parts.get(1))).containsExactly(3);
+        assertThat(pages(parts.get(2))).containsExactly(4, 5, 6);
+    }
+
+    @Test
+    void pageCountsThatDoNotMatchTheScanAreRejected() throws Exception {
+        Path scan = scan("scan.pdf", 1, 2, 3);
+
+        assertThatThrownBy(() -> splitter.splitByPageCounts(scan, List.of(2, 2), tempDir, "doc"))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("3 pages")
+                .hasMessageContaining("describes 4");
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertThat(files).containsExactly(scan);
+        }
+    }
+
+    @Test
+    void blankSheetsSeparateDocumentsAndAreDropped() throws Exception {
+        // 0 is a blank sheet; leading, doubled and trailing separators give no empty documents
+        Path scan = scan("scan.pdf", 0, 1, 2, 0, 0, 3, 0, 4, 5, 6, 0);
+
+        List<Path> parts = splitter.splitOnBlankPages(scan, tempDir, "doc");
+
+        assertThat(parts).hasSize(3);
+        assertThat(pages(parts.get(0))).containsExactly(1, 2);
+        assertThat(pages(parts.get(1))).containsExactly(3);
+        assertThat(pages(parts.get(2))).containsExactly(4, 5, 6);
+    }
+
+    private Path scan(String name, int... bars) throws IOException {
+        Path file = tempDir.resolve(name);
+        try (PDDocument document = new PDDocument()) {
+            for (int bar : bars) {
+                PDPage page = new PDPage(PDRectangle.A4);
+                document.addPage(page);
+                if (bar > 0) {
+                    try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                        content.addRect(50, 500, bar * 40, 200);
+                        content.fill();
+                    }
+                }
+            }
+            document.save(file.toFile());
+        }
+        return file;
+    }
+
+    /**
+     * Reads back the bar number of every page from the width of its bar
+     */
+    private List<Integer> pages(Path pdf) throws IOException {
+        try (PDDocument document = Loader.loadPDF(pdf.toFile())) {
+            return Stream.iterate(0, i -> i < document.getNumberOfPages(), i -> i + 1)
+                    .map(i -> barOf(document, i))
+                    .toList();
+        }
+    }
+
+    private static int barOf(PDDocument document, int page) {
+        try {
+            BufferedImage image = new PDFRenderer(document).renderImageWithDPI(page, 18f, ImageType.GRAY);
+            // The bar spans 500pt to 700pt from the bottom; row 60 at 18 dpi is 600pt
+            long dark = 0;
+            for (int x = 0; x < image.getWidth(); x++) {
+                if ((image.getRGB(x, 60) & 0xff) < 128) {
+                    dark++;
+                }
+            }
+            // One bar unit is 40pt, i.e. 10 pixels at 18 dpi
+            return (int) Math.round(dark / 10.0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
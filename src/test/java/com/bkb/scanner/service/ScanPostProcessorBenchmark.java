@@ -0,0 +1,90 @@
+package com.bkb.scanner.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Pages per second through the post-processor, on one thread and on all cores.
+ * Run with: mvn test -Dtest=ScanPostProcessorBenchmark -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ScanPostProcessorBenchmark {
+
+    // A4 at 300 dpi, colour
+    private static final int WIDTH = 2480;
+    private static final int HEIGHT = 3508;
+    private static final int PAGES = 12;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void pagesPerSecond() throws Exception {
+        Random random = new Random(42);
+        List<Path> pages = new ArrayList<>();
+        for (int i = 1; i <= PAGES; i++) {
+            Path page = tempDir.resolve(String.format("scan_bench_%03d.png", i));
+            ImageIO.write(addSensorNoise(ScanPostProcessorTest.drawPage(WIDTH, HEIGHT, "Page " + i, i * 80), random),
+                    "png", page.toFile());
+            pages.add(page);
+        }
+        long rawBytes = 0;
+        for (Path page : pages) {
+            rawBytes += Files.size(page);
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int parallelism : cores > 1 ? new int[]{1, cores} : new int[]{1}) {
+            for (boolean greyscale : new boolean[]{false, true}) {
+                ForkJoinPool pool = new ForkJoinPool(parallelism);
+                try {
+                    ScanPostProcessor processor = new ScanPostProcessor();
+                    ReflectionTestUtils.setField(processor, "scanPagePool", pool);
+                    ReflectionTestUtils.setField(processor, "targetDpi", 200);
+                    ReflectionTestUtils.setField(processor, "greyscale", greyscale);
+
+                    // One warm-up round for the JIT, then the measured one
+                    Files.delete(processor.process(pages, tempDir, "scan_warmup", 300));
+                    long started = System.nanoTime();
+                    Path result = processor.process(pages, tempDir, "scan_bench", 300);
+                    double seconds = (System.nanoTime() - started) / 1e9;
+
+                    System.out.printf("threads=%d greyscale=%s: %.1f pages/s, %d KB per page (scanner PNG %d KB)%n",
+                            parallelism, greyscale, PAGES / seconds, Files.size(result) / PAGES / 1024,
+                            rawBytes / PAGES / 1024);
+                    Files.delete(result);
+                } finally {
+                    pool.shutdownNow();
+                }
+            }
+        }
+    }
+
+    /**
+     * Real scans are never flat; without some noise the scanner PNGs compress unrealistically well
+     */
+    private static BufferedImage addSensorNoise(BufferedImage image, Random random) {
+        WritableRaster raster = image.getRaster();
+        int[] row = new int[raster.getWidth() * raster.getNumBands()];
+        for (int y = 0; y < raster.getHeight(); y++) {
+            raster.getPixels(0, y, raster.getWidth(), 1, row);
+            for (int i = 0; i < row.length; i++) {
+                row[i] = Math.max(0, Math.min(255, row[i] + random.nextInt(7) - 3));
+            }
+            raster.setPixels(0, y, raster.getWidth(), 1, row);
+        }
+        return image;
+    }
+}
@@ -0,0 +1,155 @@
+package com.bkb.scanner.service;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceGray;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class ScanPostProcessorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ForkJoinPool pool = new ForkJoinPool(3);
+    private ScanPostProcessor processor;
+
+    @BeforeEach
+    void setUp() {
+        processor = new ScanPostProcessor();
+        ReflectionTestUtils.setField(processor, "scanPagePool", pool);
+        ReflectionTestUtils.setField(processor, "enabled", true);
+        ReflectionTestUtils.setField(processor, "targetDpi", 200);
+        ReflectionTestUtils.setField(processor, "greyscale", true);
+        ReflectionTestUtils.setField(processor, "singlePagePdf", false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void pagesAreDownsampledMadeGreyAndCombinedIntoOnePdfInOrder() throws Exception {
+        // 2 x 3 inch pages at 600 dpi
+        List<Path> pages = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            pages.add(page("scan_1_00" + i + ".png", 1200, 1800, 600, "Page " + i, i * 200));
+        }
+
+        Path result = processor.process(pages, tempDir, "scan_1", null);
+
+        assertThat(result.getFileName().toString()).isEqualTo("scan_1.pdf");
+        try (PDDocument pdf = Loader.loadPDF(result.toFile())) {
+            assertThat(pdf.getNumberOfPages()).isEqualTo(4);
+            for (int i = 0; i < 4; i++) {
+                PDPage page = pdf.getPage(i);
+                assertThat(page.getMediaBox().getWidth()).isCloseTo(144f, within(0.5f));
+                assertThat(page.getMediaBox().getHeight()).isCloseTo(216f, within(0.5f));
+                PDImageXObject image = onlyImage(page);
+                assertThat(image.getWidth()).isEqualTo(400);
+                assertThat(image.getHeight()).isEqualTo(600);
+                assertThat(image.getColorSpace()).isEqualTo(PDDeviceGray.INSTANCE);
+                // The marker bar moves right from page to page, so the order is checked too
+                assertThat(image.getRawRaster().getSample((i + 1) * 200 / 3 + 10, 500, 0)).isLessThan(64);
+            }
+        }
+        assertThat(Files.size(result)).isLessThan(pages.stream().mapToLong(ScanPostProcessorTest::size).sum() / 4);
+        // Only the scanner's own pages and the result remain
+        assertThat(list()).containsExactlyInAnyOrderElementsOf(concat(pages, result));
+    }
+
+    @Test
+    void singlePageStaysPngAtTheTargetResolution() throws Exception {
+        ReflectionTestUtils.setField(processor, "greyscale", false);
+        // No resolution in the file: the profile's 300 dpi applies
+        Path page = tempDir.resolve("scan_2_001.png");
+        ImageIO.write(drawPage(900, 1200, "Passport", 300), "png", page.toFile());
+
+        Path result = processor.process(List.of(page), tempDir, "scan_2", 300);
+
+        assertThat(result.getFileName().toString()).isEqualTo("scan_2.png");
+        BufferedImage stored = ImageIO.read(result.toFile());
+        assertThat(stored.getWidth()).isEqualTo(600);
+        assertThat(stored.getHeight()).isEqualTo(800);
+        assertThat(stored.getColorModel().getNumComponents()).isEqualTo(3);
+        assertThat(list()).containsExactlyInAnyOrder(page, result);
+    }
+
+    /**
+     * A scanned page with some text and a dark bar at the given x position
+     */
+    static BufferedImage drawPage(int width, int height, String text, int barX) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setColor(new Color(250, 248, 240));
+            graphics.fillRect(0, 0, width, height);
+            graphics.setColor(new Color(20, 20, 60));
+            graphics.setFont(new Font(Font.SERIF, Font.PLAIN, Math.max(12, width / 40)));
+            for (int y = width / 10; y < height - width / 10; y += width / 25) {
+                graphics.drawString(text + " lorem ipsum dolor sit amet, consectetur adipiscing elit", width / 12, y);
+            }
+            graphics.fillRect(barX, height / 5 * 4, width / 20, height / 10);
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+
+    private Path page(String name, int width, int height, int dpi, String text, int barX) throws IOException {
+        Path file = tempDir.resolve(name);
+        ScanPostProcessor.writePng(drawPage(width, height, text, barX), dpi, file);
+        return file;
+    }
+
+    private static PDImageXObject onlyImage(PDPage page) throws IOException {
+        for (var name : page.getResources().getXObjectNames()) {
+            if (page.getResources().getXObject(name) instanceof PDImageXObject image) {
+                return image;
+            }
+        }
+        throw new AssertionError("Page has no image");
+    }
+
+    private List<Path> list() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.toList();
+        }
+    }
+
+    private static List<Path> concat(List<Path> pages, Path result) {
+        List<Path> all = new ArrayList<>(pages);
+        all.add(result);
+        return all;
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
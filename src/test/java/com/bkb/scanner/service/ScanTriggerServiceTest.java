@@ -0,0 +1,254 @@
+package com.bkb.scanner.service;
+
+import com.bkb.scanner.dto.ScanJobDto;
+import com.bkb.scanner.dto.ScanTriggerRequest;
+import com.bkb.scanner.entity.Document;
+import com.bkb.scanner.entity.ScannerProfile;
+import com.bkb.scanner.entity.User;
+import com.bkb.scanner.exception.NotFoundException;
+import com.bkb.scanner.repository.CaseRepository;
+import com.bkb.scanner.repository.DocumentRepository;
+import com.bkb.scanner.repository.PartyRepository;
+import com.bkb.scanner.repository.ScannerProfileRepository;
+import com.bkb.scanner.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Drives ScanTriggerService against a shell script standing in for the NAPS2 console.
+ */
+@DisabledOnOs(OS.WINDOWS)
+class ScanTriggerServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final DocumentRepository documentRepository = mock(DocumentRepository.class);
+    private final CaseRepository caseRepository = mock(CaseRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final DocumentStorageService documentStorageService = mock(DocumentStorageService.class);
+    private final DocumentVersionService documentVersionService = mock(DocumentVersionService.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final ScannerProfileRepository scannerProfileRepository = mock(ScannerProfileRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newFixedThreadPool(1);
+    private ScanTriggerService service;
+    private Path workDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        workDir = Files.createDirectory(tempDir.resolve("work"));
+
+        ScanJobService scanJobService = new ScanJobService();
+        ReflectionTestUtils.setField(scanJobService, "scanExecutor", executor);
+        ReflectionTestUtils.setField(scanJobService, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(scanJobService, "maxQueuedPerProfile", 10);
+        ReflectionTestUtils.setField(scanJobService, "defaultScanDuration", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(scanJobService, "retention", Duration.ofHours(1));
+        ReflectionTestUtils.setField(scanJobService, "sseTimeout", Duration.ofMinutes(1));
+
+        service = new ScanTriggerService();
+        ReflectionTestUtils.setField(service, "documentRepository", documentRepository);
+        ReflectionTestUtils.setField(service, "caseRepository", caseRepository);
+        ReflectionTestUtils.setField(service, "partyRepository", mock(PartyRepository.class));
+        ReflectionTestUtils.setField(service, "userRepository", userRepository);
+        ReflectionTestUtils.setField(service, "documentStorageService", documentStorageService);
+        ReflectionTestUtils.setField(service, "documentVersionService", documentVersionService);
+        ReflectionTestUtils.setField(service, "scannerProfileRepository", scannerProfileRepository);
+        ReflectionTestUtils.setField(service, "scanJobService", scanJobService);
+        ReflectionTestUtils.setField(service, "defaultTimeout", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(service, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(service, "workDir", workDir.toString());
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("alice", null, List.of()));
+        User alice = new User();
+        alice.setUsername("alice");
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(alice));
+        when(caseRepository.existsById("CASE-202601-0001")).thenReturn(true);
+        ScannerProfile frontDesk = new ScannerProfile();
+        frontDesk.setName("Front desk ADF");
+        when(scannerProfileRepository.findByName("Front desk ADF")).thenReturn(Optional.of(frontDesk));
+        when(documentVersionService.allocateNextVersion("CASE", "CASE-202601-0001", "Passport")).thenReturn(1);
+        when(documentRepository.save(any(Document.class))).thenAnswer(invocation -> {
+            Document document = invocation.getArgument(0);
+            document.setId(42L);
+            return document;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void scanIsQueuedImmediatelyAndStoredOnceTheOutputExists() throws Exception {
+        fakeScanner("sleep 1\nprintf '%%PDF-1.4 scanned page' > \"$out\"\n");
+        AtomicReference<List<Path>> filesWhenTransactionOpened = new AtomicReference<>();
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> {
+            filesWhenTransactionOpened.set(list(workDir));
+            return null;
+        });
+        AtomicReference<String> stored = new AtomicReference<>();
+        doAnswer(invocation -> {
+            // The payload is written before the transaction holds a connection
+            assertThat(filesWhenTransactionOpened.get()).isNull();
+            stored.set(Files.readString(invocation.<Path>getArgument(1), StandardCharsets.US_ASCII));
+            return null;
+        }).when(documentStorageService).storeFile(any(Document.class), any(Path.class));
+
+        ScanJob job = service.submitScan(request());
+
+        assertThat(job.isFinished()).isFalse();
+        await().atMost(Duration.ofSeconds(10)).until(job::isFinished);
+
+        ScanJobDto dto = service.getJob(job.getJobId()).toDto();
+        assertThat(dto.getStatus()).isEqualTo(ScanJob.STATUS_COMPLETED);
+        assertThat(dto.getDocumentId()).isEqualTo(42L);
+        verify(documentStorageService, never()).releaseStored(any());
+        assertThat(stored.get()).isEqualTo("%PDF-1.4 scanned page");
+        assertThat(filesWhenTransactionOpened.get()).hasSize(1);
+        assertThat(list(workDir)).isEmpty();
+    }
+
+    @Test
+    void failingScannerFailsTheJobWithoutTouchingTheDatabase() throws Exception {
+        fakeScanner("echo 'Paper jam in feeder' >&2\nexit 3\n");
+
+        ScanJob job = service.submitScan(request());
+        await().atMost(Duration.ofSeconds(10)).until(job::isFinished);
+
+        assertThat(job.getStatus()).isEqualTo(ScanJob.STATUS_FAILED);
+        assertThat(job.getMessage()).contains("exit code 3").contains("Paper jam in feeder");
+        verifyNoInteractions(transactionManager, documentRepository, documentStorageService);
+        assertThat(list(workDir)).isEmpty();
+    }
+
+    @Test
+    void failureWhileStoringLeavesNoScanFilesBehind() throws Exception {
+        fakeScanner("printf '%%PDF-1.4 scanned page' > \"$out\"\n");
+        when(documentRepository.save(any(Document.class))).thenThrow(new IllegalStateException("database is down"));
+
+        ScanJob job = service.submitScan(request());
+        await().atMost(Duration.ofSeconds(10)).until(job::isFinished);
+
+        assertThat(job.getStatus()).isEqualTo(ScanJob.STATUS_FAILED);
+        assertThat(job.getMessage()).contains("database is down");
+        verify(documentStorageService).releaseStored(any(Document.class));
+        assertThat(list(workDir)).isEmpty();
+    }
+
+    @Test
+    void unknownProfileIsRejectedBeforeAQueueIsCreatedForIt() {
+        ScanTriggerRequest request = request();
+        request.setProfileName("no such scanner");
+
+        assertThatThrownBy(() -> service.submitScan(request))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessageContaining("no such scanner");
+
+        assertThat(meterRegistry.find("scan.queue.depth").gauges()).isEmpty();
+    }
+
+    @Test
+    void staleScanFilesAreSwept() throws Exception {
+        Path stale = Files.writeString(workDir.resolve("scan_left-over.pdf"), "partial");
+        Files.setLastModifiedTime(stale, FileTime.from(Instant.now().minus(Duration.ofDays(2))));
+        Path fresh = Files.writeString(workDir.resolve("scan_in-progress.pdf"), "partial");
+        ReflectionTestUtils.setField(service, "workFileMaxAge", Duration.ofHours(24));
+
+        service.removeStaleScanFiles();
+
+        assertThat(list(workDir)).containsExactly(fresh);
+    }
+
+    @Test
+    void hungScannerIsKilledWhenTheProfileTimeoutExpires() throws Exception {
+        ScannerProfile profile = new ScannerProfile();
+        profile.setName("Front desk ADF");
+        profile.setScanTimeoutSeconds(1);
+        when(scannerProfileRepository.findByName("Front desk ADF")).thenReturn(Optional.of(profile));
+        Path pidFile = tempDir.resolve("sleep.pid");
+        fakeScanner("printf partial > \"$out\"\nsleep 60 &\necho $! > " + pidFile + "\nwait\n");
+
+        ScanJob job = service.submitScan(request());
+        await().atMost(Duration.ofSeconds(15)).until(job::isFinished);
+
+        assertThat(job.getStatus()).isEqualTo(ScanJob.STATUS_TIMED_OUT);
+        long pid = Long.parseLong(Files.readString(pidFile).trim());
+        await().atMost(Duration.ofSeconds(5))
+                .until(() -> ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false), alive -> !alive);
+        verifyNoInteractions(transactionManager);
+        assertThat(list(workDir)).isEmpty();
+        await().atMost(Duration.ofSeconds(5)).until(() -> meterRegistry.find("scan.duration")
+                .tag("profile", "Front desk ADF").tag("outcome", ScanJob.STATUS_TIMED_OUT).timer() != null);
+    }
+
+    /**
+     * Writes an executable that accepts the NAPS2 console arguments and runs the given body
+     * with the -o argument in $out
+     */
+    private void fakeScanner(String body) throws Exception {
+        Path script = tempDir.resolve("naps2");
+        Files.writeString(script, "#!/bin/sh\n"
+                + "out=\"\"\n"
+                + "while [ $# -gt 0 ]; do\n"
+                + "  if [ \"$1\" = \"-o\" ]; then out=\"$2\"; shift; fi\n"
+                + "  shift\n"
+                + "done\n"
+                + body);
+        assertThat(script.toFile().setExecutable(true)).isTrue();
+        ReflectionTestUtils.setField(service, "naps2PathMac", script.toString());
+    }
+
+    private ScanTriggerRequest request() {
+        ScanTriggerRequest request = new ScanTriggerRequest();
+        request.setProfileName("Front desk ADF");
+        request.setOwnerType("case");
+        request.setOwnerId("CASE-202601-0001");
+        request.setDocumentType("Passport");
+        request.setFormat("pdf");
+        return request;
+    }
+
+    private static List<Path> list(Path dir) throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.toList();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.bkb.scanner.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContentCodecTest {
+
+    @Test
+    void deflateRoundTripsAndShrinksRepetitiveContent() throws Exception {
+        byte[] raw = "white scan background ".repeat(5_000).getBytes();
+
+        byte[] stored;
+        try (InputStream encoded = ContentCodec.DEFLATE.encode(new ByteArrayInputStream(raw))) {
+            stored = encoded.readAllBytes();
+        }
+        byte[] decoded;
+        try (InputStream in = ContentCodec.DEFLATE.decode(new ByteArrayInputStream(stored))) {
+            decoded = in.readAllBytes();
+        }
+
+        assertThat(stored.length).isLessThan(raw.length / 10);
+        assertThat(decoded).isEqualTo(raw);
+    }
+
+    @Test
+    void policyPassesThroughAlreadyCompressedTypes() {
+        CompressionPolicy policy = new CompressionPolicy(true, List.of("image/png", "text/*"));
+
+        assertThat(policy.codecFor("image/png")).isEqualTo(ContentCodec.DEFLATE);
+        assertThat(policy.codecFor("text/plain; charset=UTF-8")).isEqualTo(ContentCodec.DEFLATE);
+        assertThat(policy.codecFor("application/pdf")).isEqualTo(ContentCodec.IDENTITY);
+        assertThat(policy.codecFor("image/jpeg")).isEqualTo(ContentCodec.IDENTITY);
+    }
+}
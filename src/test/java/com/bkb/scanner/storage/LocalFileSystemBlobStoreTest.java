@@ -0,0 +1,44 @@
+package com.bkb.scanner.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LocalFileSystemBlobStoreTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void storesBlobUnderShardedPath() throws Exception {
+        LocalFileSystemBlobStore store = new LocalFileSystemBlobStore(root.toString());
+        byte[] payload = "passport scan".getBytes(StandardCharsets.UTF_8);
+
+        long written = store.put("abcdef0123", new ByteArrayInputStream(payload));
+
+        assertThat(written).isEqualTo(payload.length);
+        assertThat(root.resolve("ab/cd/abcdef0123")).exists();
+        try (InputStream in = store.open("abcdef0123")) {
+            assertThat(in.readAllBytes()).isEqualTo(payload);
+        }
+        try (var tmp = Files.list(root.resolve(".tmp"))) {
+            assertThat(tmp).isEmpty();
+        }
+    }
+
+    @Test
+    void rejectsKeysThatEscapeTheRoot() throws Exception {
+        LocalFileSystemBlobStore store = new LocalFileSystemBlobStore(root.toString());
+
+        assertThatThrownBy(() -> store.open("../../etc/passwd"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,64 @@
+package com.bkb.scanner.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HttpRangeSupportTest {
+
+    private static final byte[] PAYLOAD = "0123456789".getBytes(StandardCharsets.US_ASCII);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void servesSingleRangeFromFile() throws Exception {
+        Path file = Files.write(dir.resolve("doc.pdf"), PAYLOAD);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/documents/download/1");
+        request.addHeader("Range", "bytes=2-5");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        HttpRangeSupport.write(request, response, PAYLOAD.length, "\"abc\"", Optional.of(file),
+                () -> { throw new AssertionError("file-backed content must not be streamed"); });
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getHeader("Content-Range")).isEqualTo("bytes 2-5/10");
+        assertThat(response.getContentAsString()).isEqualTo("2345");
+    }
+
+    @Test
+    void ignoresRangeWhenIfRangeDoesNotMatch() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/documents/download/1");
+        request.addHeader("Range", "bytes=2-5");
+        request.addHeader("If-Range", "\"stale\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        HttpRangeSupport.write(request, response, PAYLOAD.length, "\"abc\"", Optional.empty(),
+                () -> new ByteArrayInputStream(PAYLOAD));
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsString()).isEqualTo("0123456789");
+    }
+
+    @Test
+    void rejectsUnsatisfiableRange() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/documents/download/1");
+        request.addHeader("Range", "bytes=20-30");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        HttpRangeSupport.write(request, response, PAYLOAD.length, "\"abc\"", Optional.empty(),
+                () -> new ByteArrayInputStream(PAYLOAD));
+
+        assertThat(response.getStatus()).isEqualTo(416);
+        assertThat(response.getHeader("Content-Range")).isEqualTo("bytes */10");
+    }
+}